@@ -0,0 +1,68 @@
+#!/usr/bin/env bash
+# Time to first request for each startup option.
+#
+#   ./mvnw -Paot package -DskipTests
+#   scripts/startup-benchmark.sh [runs]
+#
+# Every variant runs the extracted jar in target/application: a CDS archive is only used
+# with the classpath it was recorded with. The server listens on a free port, RSocket on
+# a random one. Reported time is from launch until GET /api/users/1 gets any response.
+set -euo pipefail
+
+RUNS="${1:-3}"
+APP_DIR="$(cd "$(dirname "$0")/.." && pwd)/target/application"
+JAR="webflux-demo-0.0.1-SNAPSHOT.jar"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+
+if [[ ! -f "$APP_DIR/$JAR" || ! -f "$APP_DIR/application.jsa" ]]; then
+    echo "Missing $APP_DIR/$JAR or its CDS archive, build with: ./mvnw -Paot package -DskipTests" >&2
+    exit 1
+fi
+
+free_port() {
+    python3 -c 'import socket; s = socket.socket(); s.bind(("127.0.0.1", 0)); print(s.getsockname()[1]); s.close()'
+}
+
+now_ms() {
+    date +%s%3N
+}
+
+# Prints ms until the first response, given the JVM options of the variant
+time_to_first_request() {
+    local port pid start elapsed=""
+    port="$(free_port)"
+    start="$(now_ms)"
+    (cd "$APP_DIR" && exec "$JAVA" "$@" -jar "$JAR" \
+        --server.port="$port" --spring.rsocket.server.port=0 >/dev/null 2>&1) &
+    pid=$!
+    for _ in $(seq 1 1200); do
+        if [[ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$port/api/users/1")" != "000" ]]; then
+            elapsed=$(( $(now_ms) - start ))
+            break
+        fi
+        if ! kill -0 "$pid" 2>/dev/null; then
+            break
+        fi
+        sleep 0.05
+    done
+    kill "$pid" 2>/dev/null || true
+    wait "$pid" 2>/dev/null || true
+    echo "${elapsed:-failed}"
+}
+
+run_variant() {
+    local name="$1"
+    shift
+    local results=()
+    for _ in $(seq 1 "$RUNS"); do
+        results+=("$(time_to_first_request "$@")")
+    done
+    printf '%-12s %s ms\n' "$name" "${results[*]}"
+}
+
+echo "Time to first request, $RUNS runs each"
+run_variant "default"
+run_variant "lazy" -Dspring.main.lazy-initialization=true
+run_variant "aot" -Dspring.aot.enabled=true
+run_variant "cds" -XX:SharedArchiveFile=application.jsa -Xlog:cds=off
+run_variant "aot+cds" -XX:SharedArchiveFile=application.jsa -Xlog:cds=off -Dspring.aot.enabled=true
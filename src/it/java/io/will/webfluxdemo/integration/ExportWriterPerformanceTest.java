@@ -0,0 +1,129 @@
+package io.will.webfluxdemo.integration;
+
+import io.will.webfluxdemo.export.MappedExportWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the memory-mapped export writer with AsynchronousFileChannel and buffered
+ * stream writes for the same workload: 64MB written in 64KB batches.
+ * Prints MB/s per strategy; the assertions only check that every strategy wrote the same bytes.
+ */
+class ExportWriterPerformanceTest {
+
+    private static final int BATCH_BYTES = 64 * 1024;
+    private static final int BATCHES = 1024;
+    private static final long TOTAL_BYTES = (long) BATCH_BYTES * BATCHES;
+
+    @TempDir
+    Path directory;
+
+    private final byte[] batch = batch();
+
+    @Test
+    void compareWriteStrategies() throws Exception {
+        // Warm up each path once so JIT compilation doesn't skew the first measurement
+        mapped(directory.resolve("warmup-mapped"), MappedExportWriter.Durability.NEVER);
+        asyncChannel(directory.resolve("warmup-async"), false);
+        bufferedStream(directory.resolve("warmup-buffered"), false);
+
+        report("mapped, durability=never", () -> mapped(directory.resolve("mapped-never"), MappedExportWriter.Durability.NEVER));
+        report("mapped, durability=per-file", () -> mapped(directory.resolve("mapped-file"), MappedExportWriter.Durability.PER_FILE));
+        report("mapped, durability=per-batch", () -> mapped(directory.resolve("mapped-batch"), MappedExportWriter.Durability.PER_BATCH));
+        report("AsynchronousFileChannel, no fsync", () -> asyncChannel(directory.resolve("async-never"), false));
+        report("AsynchronousFileChannel, fsync per file", () -> asyncChannel(directory.resolve("async-file"), true));
+        report("BufferedOutputStream, no fsync", () -> bufferedStream(directory.resolve("buffered-never"), false));
+        report("BufferedOutputStream, fsync per file", () -> bufferedStream(directory.resolve("buffered-file"), true));
+    }
+
+    private Path mapped(Path file, MappedExportWriter.Durability durability) throws Exception {
+        try (MappedExportWriter writer = new MappedExportWriter(file, 8 * 1024 * 1024, durability)) {
+            for (int i = 0; i < BATCHES; i++) {
+                writer.write(batch);
+                writer.endBatch();
+            }
+        }
+        return file;
+    }
+
+    private Path asyncChannel(Path file, boolean fsync) throws Exception {
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            for (int i = 0; i < BATCHES; i++) {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position).get();
+                }
+            }
+            if (fsync) {
+                channel.force(true);
+            }
+        }
+        return file;
+    }
+
+    private Path bufferedStream(Path file, boolean fsync) throws Exception {
+        try (FileOutputStream fileStream = new FileOutputStream(file.toFile());
+             OutputStream out = new BufferedOutputStream(fileStream, 1024 * 1024)) {
+            for (int i = 0; i < BATCHES; i++) {
+                out.write(batch);
+            }
+            out.flush();
+            if (fsync) {
+                fileStream.getFD().sync();
+            }
+        }
+        return file;
+    }
+
+    private void report(String name, WriteStrategy strategy) throws Exception {
+        long start = System.nanoTime();
+        Path file = strategy.write();
+        long elapsedNanos = System.nanoTime() - start;
+
+        assertEquals(TOTAL_BYTES, Files.size(file), name + " wrote an unexpected number of bytes");
+        assertContent(file, name);
+        double megabytesPerSecond = (TOTAL_BYTES / (1024.0 * 1024.0)) / (elapsedNanos / 1_000_000_000.0);
+        System.out.printf("%-42s %8.1f ms %10.1f MB/s%n", name, elapsedNanos / 1_000_000.0, megabytesPerSecond);
+        Files.delete(file);
+    }
+
+    /**
+     * Compares the file with the expected batches, one batch at a time.
+     */
+    private void assertContent(Path file, String name) throws Exception {
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int i = 0; i < BATCHES; i++) {
+                assertArrayEquals(batch, in.readNBytes(BATCH_BYTES), name + " wrote unexpected bytes in batch " + i);
+            }
+        }
+    }
+
+    // Not a single repeated byte, so data written at a wrong offset shows up in the comparison
+    private static byte[] batch() {
+        byte[] bytes = new byte[BATCH_BYTES];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ('a' + i % 26);
+        }
+        return bytes;
+    }
+
+    @FunctionalInterface
+    private interface WriteStrategy {
+        Path write() throws Exception;
+    }
+}
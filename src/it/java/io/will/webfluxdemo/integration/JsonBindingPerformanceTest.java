@@ -0,0 +1,211 @@
+package io.will.webfluxdemo.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import io.will.webfluxdemo.model.ExportResult;
+import io.will.webfluxdemo.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares JSON encode and decode of the record models against the mutable beans they replaced,
+ * each with Spring's default ObjectMapper (reflection) and with Jackson's Blackbird module, which
+ * generates accessors instead. Blackbird clearly speeds up the beans, but on the records its effect
+ * stayed within run-to-run noise, so the application doesn't register it.
+ * Prints operations per second and bytes allocated per operation; the assertions only check
+ * that every configuration round-trips the same values.
+ */
+class JsonBindingPerformanceTest {
+
+    private static final int OBJECTS = 1_000;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int ROUNDS = 500;
+
+    private final ObjectMapper reflection = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper blackbird = Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new BlackbirdModule())
+            .build();
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void compareUserBinding() throws Exception {
+        List<User> users = IntStream.range(0, OBJECTS)
+                .mapToObj(i -> new User((long) i, "user" + i, "user" + i + "@example.com"))
+                .toList();
+        List<BeanUser> beans = users.stream()
+                .map(user -> new BeanUser(user.id(), user.name(), user.email()))
+                .toList();
+
+        compare("User", beans, BeanUser.class, users, User.class,
+                bean -> new User(bean.getId(), bean.getName(), bean.getEmail()));
+        report("User hashCode, bean", () -> beans.stream().mapToInt(BeanUser::hashCode).sum());
+        report("User hashCode, record", () -> users.stream().mapToInt(User::hashCode).sum());
+    }
+
+    @Test
+    void compareExportResultBinding() throws Exception {
+        Instant completedAt = Instant.parse("2026-01-01T00:00:00Z");
+        List<ExportResult> results = IntStream.range(0, OBJECTS)
+                .mapToObj(i -> new ExportResult(i, "export_" + i + ".csv", "/api/downloads/export_" + i + ".csv",
+                        i * 10L, "COMPLETED", completedAt, i * 100L))
+                .toList();
+        List<BeanExportResult> beans = results.stream()
+                .map(result -> new BeanExportResult(result.taskId(), result.fileName(), result.downloadUrl(),
+                        result.totalRecords(), result.status(), LocalDateTime.of(2026, 1, 1, 0, 0),
+                        result.fileSizeBytes()))
+                .toList();
+
+        compare("ExportResult", beans, BeanExportResult.class, results, ExportResult.class,
+                bean -> new ExportResult(bean.getTaskId(), bean.getFileName(), bean.getDownloadUrl(),
+                        bean.getTotalRecords(), bean.getStatus(), completedAt, bean.getFileSizeBytes()));
+    }
+
+    private <B, R> void compare(String name, List<B> beans, Class<B> beanType, List<R> records, Class<R> recordType,
+                                Function<B, R> toRecord) throws Exception {
+        List<byte[]> beanJson = encodeAll(reflection, beans);
+        List<byte[]> recordJson = encodeAll(reflection, records);
+
+        for (ObjectMapper mapper : List.of(reflection, blackbird)) {
+            assertEquals(records, decodeAll(mapper, beanJson, beanType).stream().map(toRecord).toList());
+            assertEquals(records, decodeAll(mapper, recordJson, recordType));
+        }
+
+        report(name + " encode, bean, reflection", () -> encodeAll(reflection, beans));
+        report(name + " encode, bean, blackbird", () -> encodeAll(blackbird, beans));
+        report(name + " encode, record, reflection", () -> encodeAll(reflection, records));
+        report(name + " encode, record, blackbird", () -> encodeAll(blackbird, records));
+        report(name + " decode, bean, reflection", () -> decodeAll(reflection, beanJson, beanType));
+        report(name + " decode, bean, blackbird", () -> decodeAll(blackbird, beanJson, beanType));
+        report(name + " decode, record, reflection", () -> decodeAll(reflection, recordJson, recordType));
+        report(name + " decode, record, blackbird", () -> decodeAll(blackbird, recordJson, recordType));
+    }
+
+    private static List<byte[]> encodeAll(ObjectMapper mapper, List<?> values) throws Exception {
+        List<byte[]> encoded = new ArrayList<>(values.size());
+        for (Object value : values) {
+            encoded.add(mapper.writeValueAsBytes(value));
+        }
+        return encoded;
+    }
+
+    private static <T> List<T> decodeAll(ObjectMapper mapper, List<byte[]> json, Class<T> type) throws Exception {
+        List<T> decoded = new ArrayList<>(json.size());
+        for (byte[] value : json) {
+            decoded.add(mapper.readValue(value, type));
+        }
+        return decoded;
+    }
+
+    private void report(String name, Workload workload) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            workload.run();
+        }
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            workload.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        long operations = (long) ROUNDS * OBJECTS;
+        System.out.printf("%-40s %10.0f ops/s %8.0f bytes/op%n",
+                name, operations / (elapsed / 1e9), (double) allocated / operations);
+    }
+
+    @FunctionalInterface
+    private interface Workload {
+        Object run() throws Exception;
+    }
+
+    /**
+     * User as it was before it became a record.
+     */
+    static class BeanUser {
+        private Long id;
+        private String name;
+        private String email;
+
+        public BeanUser() {}
+
+        BeanUser(Long id, String name, String email) {
+            this.id = id;
+            this.name = name;
+            this.email = email;
+        }
+
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public String getEmail() { return email; }
+        public void setEmail(String email) { this.email = email; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            BeanUser user = (BeanUser) o;
+            return Objects.equals(id, user.id) && Objects.equals(name, user.name) && Objects.equals(email, user.email);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name, email);
+        }
+    }
+
+    /**
+     * ExportResult as it was before it became a record.
+     */
+    static class BeanExportResult {
+        private Long taskId;
+        private String fileName;
+        private String downloadUrl;
+        private Long totalRecords;
+        private String status;
+        private LocalDateTime completedAt;
+        private Long fileSizeBytes;
+
+        public BeanExportResult() {}
+
+        BeanExportResult(Long taskId, String fileName, String downloadUrl, Long totalRecords, String status,
+                         LocalDateTime completedAt, Long fileSizeBytes) {
+            this.taskId = taskId;
+            this.fileName = fileName;
+            this.downloadUrl = downloadUrl;
+            this.totalRecords = totalRecords;
+            this.status = status;
+            this.completedAt = completedAt;
+            this.fileSizeBytes = fileSizeBytes;
+        }
+
+        public Long getTaskId() { return taskId; }
+        public void setTaskId(Long taskId) { this.taskId = taskId; }
+        public String getFileName() { return fileName; }
+        public void setFileName(String fileName) { this.fileName = fileName; }
+        public String getDownloadUrl() { return downloadUrl; }
+        public void setDownloadUrl(String downloadUrl) { this.downloadUrl = downloadUrl; }
+        public Long getTotalRecords() { return totalRecords; }
+        public void setTotalRecords(Long totalRecords) { this.totalRecords = totalRecords; }
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+        public LocalDateTime getCompletedAt() { return completedAt; }
+        public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+        public Long getFileSizeBytes() { return fileSizeBytes; }
+        public void setFileSizeBytes(Long fileSizeBytes) { this.fileSizeBytes = fileSizeBytes; }
+    }
+}
@@ -0,0 +1,96 @@
+package io.will.webfluxdemo.integration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Boots the native executable built by {@code ./mvnw -Pnative verify}, reads a seeded user and
+ * runs one export over the WebSocket, whose frames are bound outside of Spring's codecs.
+ * Prints the time to first response and the resident set size after it.
+ * Skipped unless {@code native.binary} points at the executable (set by the native profile).
+ */
+@EnabledIfSystemProperty(named = "native.binary", matches = ".+")
+class NativeImageIntegrationTest {
+
+    @TempDir
+    Path workingDirectory;
+
+    @Test
+    void nativeBinary_ShouldStartAndServeUser() throws Exception {
+        int port = freePort();
+        long start = System.nanoTime();
+        // Relative data paths (database, write-ahead log, exports) end up in the temp directory
+        Process process = new ProcessBuilder(System.getProperty("native.binary"),
+                "--server.port=" + port, "--spring.rsocket.server.port=0")
+                .directory(workingDirectory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(workingDirectory.resolve("native.log").toFile())
+                .start();
+        try {
+            Tuple2<Integer, String> response = HttpClient.create()
+                    .get()
+                    .uri("http://localhost:" + port + "/api/users/1")
+                    .responseSingle((status, body) -> body.asString()
+                            .map(text -> Tuples.of(status.status().code(), text)))
+                    .retryWhen(Retry.fixedDelay(600, Duration.ofMillis(50)))
+                    .block(Duration.ofSeconds(60));
+            long startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(200, response.getT1());
+            assertTrue(response.getT2().contains("alice@example.com"), response.getT2());
+            System.out.printf("native image: first response after %d ms, %s%n", startupMillis, residentSetSize(process));
+
+            String completed = HttpClient.create()
+                    .websocket()
+                    .uri("ws://localhost:" + port + "/ws/exports")
+                    .handle((in, out) -> out
+                            .sendString(Mono.just("{\"type\":\"submit\",\"jobId\":\"native\",\"mode\":\"batch\",\"format\":\"csv\"}"))
+                            .then()
+                            .thenMany(in.receive().asString()
+                                    .filter(frame -> frame.contains("\"COMPLETED\""))
+                                    .take(1)))
+                    .blockLast(Duration.ofSeconds(60));
+            assertTrue(completed.contains("\"jobId\":\"native\"") && completed.contains("\"totalRecords\":3"), completed);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String residentSetSize(Process process) throws IOException {
+        Path status = Paths.get("/proc", String.valueOf(process.pid()), "status");
+        if (!Files.exists(status)) {
+            return "RSS unknown";
+        }
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> "RSS " + line.substring("VmRSS:".length()).trim())
+                .findFirst()
+                .orElse("RSS unknown");
+    }
+}
@@ -0,0 +1,124 @@
+package io.will.webfluxdemo.integration;
+
+import io.will.webfluxdemo.WebfluxDemoApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the Netty server with default settings against the {@code perf} profile,
+ * on the same workload: GET /api/users/search from 64 concurrent keep-alive connections.
+ * Prints throughput and latency percentiles per configuration; the assertions only check
+ * that every request succeeded and that the perf profile serves HTTP/2 cleartext.
+ */
+class NettyTuningPerformanceTest {
+
+    private static final int CONNECTIONS = 64;
+    private static final int WARMUP_REQUESTS = 2_000;
+    private static final int REQUESTS = 10_000;
+
+    // Served from the in-memory search index, so the numbers reflect the server rather than H2
+    private static final String[] NAMES = {"alice", "bob", "charlie"};
+
+    @Test
+    void compareDefaultAndPerfProfile() {
+        run("defaults", "it");
+        run("perf profile", "it", "perf");
+    }
+
+    @Test
+    void perfProfile_ShouldServeHttp2Cleartext() {
+        try (ConfigurableApplicationContext context = start("h2c", "it", "perf")) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String protocol = HttpClient.create()
+                    .protocol(HttpProtocol.H2C)
+                    .get()
+                    .uri("http://localhost:" + port + "/api/users/1")
+                    .response((response, body) -> body.then(Mono.just(response.version().text())))
+                    .blockFirst(Duration.ofSeconds(10));
+            assertEquals("HTTP/2.0", protocol);
+        }
+    }
+
+    private void run(String name, String... profiles) {
+        try (ConfigurableApplicationContext context = start(name, profiles)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            ConnectionProvider connections = ConnectionProvider.builder("bench-" + port)
+                    .maxConnections(CONNECTIONS)
+                    .pendingAcquireMaxCount(-1)
+                    .build();
+            HttpClient client = HttpClient.create(connections).baseUrl("http://localhost:" + port);
+            try {
+                load(client, WARMUP_REQUESTS);
+                long start = System.nanoTime();
+                long[] latencies = load(client, REQUESTS);
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                Arrays.sort(latencies);
+                System.out.printf("%-14s %8.0f req/s   p50 %6.2f ms   p99 %6.2f ms   max %6.2f ms%n",
+                        name, REQUESTS / seconds,
+                        latencies[latencies.length / 2] / 1e6,
+                        latencies[(int) (latencies.length * 0.99)] / 1e6,
+                        latencies[latencies.length - 1] / 1e6);
+            } finally {
+                connections.dispose();
+            }
+        }
+    }
+
+    private long[] load(HttpClient client, int requests) {
+        long[] latencies = Flux.range(0, requests)
+                .flatMap(i -> Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return client.get()
+                            .uri("/api/users/search?q=" + NAMES[i % NAMES.length])
+                            .responseSingle((response, body) -> body.then(Mono.just(response.status().code())))
+                            .map(status -> {
+                                assertEquals(200, status);
+                                return System.nanoTime() - start;
+                            });
+                }), CONNECTIONS)
+                .collectList()
+                .map(list -> list.stream().mapToLong(Long::longValue).toArray())
+                .block(Duration.ofMinutes(2));
+        assertEquals(requests, latencies.length);
+        return latencies;
+    }
+
+    /**
+     * Each run gets its own database and write-ahead log, so it cannot collide with the
+     * application contexts the other integration tests keep cached.
+     */
+    private ConfigurableApplicationContext start(String name, String... profiles) {
+        String id = name.replaceAll("[^a-z0-9]", "-");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(WebfluxDemoApplication.class)
+                .profiles(profiles)
+                // Passed as arguments so they override application-it.yml, including its DEBUG logging
+                .run("--server.port=0",
+                        "--spring.rsocket.server.port=0",
+                        "--spring.r2dbc.url=r2dbc:h2:mem:///netty-bench-" + id + ";DB_CLOSE_DELAY=-1",
+                        "--app.users.write-behind.wal-directory=target/it-data/netty-bench/" + id + "/users-wal",
+                        "--logging.level.io.will.webfluxdemo=WARN",
+                        "--logging.level.org.springframework.web=WARN");
+        DatabaseClient databaseClient = context.getBean(DatabaseClient.class);
+        databaseClient.sql("DELETE FROM users").then()
+                .then(databaseClient.sql("INSERT INTO users (id, name, email) VALUES "
+                        + "(1, 'Alice', 'alice@example.com'), "
+                        + "(2, 'Bob', 'bob@example.com'), "
+                        + "(3, 'Charlie', 'charlie@example.com')").then())
+                .block();
+        return context;
+    }
+}
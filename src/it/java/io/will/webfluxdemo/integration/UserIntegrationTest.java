@@ -1,13 +1,40 @@
 package io.will.webfluxdemo.integration;
 
+import io.will.webfluxdemo.model.ExportResult;
 import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.model.UserChangeEvent;
 import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.publisher.Flux;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("it")
@@ -19,6 +46,20 @@ class UserIntegrationTest {
     @Autowired
     private WebTestClient webTestClient;
 
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @BeforeEach
+    void resetUsers() {
+        // Users are persisted now, so every test starts from the same three seed users
+        databaseClient.sql("DELETE FROM users").then()
+                .then(databaseClient.sql("INSERT INTO users (id, name, email) VALUES "
+                        + "(1, 'Alice', 'alice@example.com'), "
+                        + "(2, 'Bob', 'bob@example.com'), "
+                        + "(3, 'Charlie', 'charlie@example.com')").then())
+                .block();
+    }
+
     @Test
     @Tag("Basic")
     void getAllUsers_ShouldReturnAllUsers() {
@@ -73,6 +114,115 @@ class UserIntegrationTest {
                 .isEqualTo(newUser);
     }
 
+    @Test
+    @Tag("ErrorHandling")
+    void createUser_WithoutName_ShouldReturn400AndNotBlockLaterCreates() {
+        webTestClient.post()
+                .uri("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"id\":9}")
+                .exchange()
+                .expectStatus().isEqualTo(400)
+                .expectBody()
+                .jsonPath("$.exception").isEqualTo("IllegalArgumentException")
+                .jsonPath("$.message").isEqualTo("User name is required");
+
+        User david = new User(4L, "David", "david@example.com");
+        webTestClient.post()
+                .uri("/api/users")
+                .bodyValue(david)
+                .exchange()
+                .expectStatus().isOk();
+        String name = databaseClient.sql("SELECT name FROM users WHERE id = 4")
+                .map(row -> row.get(0, String.class))
+                .one()
+                .repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(50)).take(40))
+                .block();
+        assertEquals("David", name);
+    }
+
+    @Test
+    @Tag("Basic")
+    void createUsers_Concurrently_ShouldBeFlushedToTheDatabase() {
+        // WebTestClient.exchange() blocks, so a plain WebClient is used to really run the creates concurrently
+        WebClient client = WebClient.create("http://localhost:" + port);
+        Flux.range(10, 50)
+                .flatMap(i -> client.post()
+                        .uri("/api/users")
+                        .bodyValue(new User((long) i, "User " + i, "user" + i + "@example.com"))
+                        .retrieve()
+                        .bodyToMono(User.class))
+                .blockLast(Duration.ofSeconds(10));
+
+        Long count = databaseClient.sql("SELECT COUNT(*) FROM users")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .filter(rows -> rows == 53L)
+                .repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(50)).take(40))
+                .block();
+        assertEquals(53L, count);
+    }
+
+    @Test
+    @Tag("Basic")
+    void searchUsers_ShouldFindCreatedUserByNamePrefix() {
+        User newUser = new User(500L, "Zelda Quinlan", "zelda@example.com");
+        webTestClient.post()
+                .uri("/api/users")
+                .bodyValue(newUser)
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get()
+                .uri("/api/users/search?q=quin")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .contains(newUser);
+
+        webTestClient.delete()
+                .uri("/api/users/500")
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get()
+                .uri("/api/users/search?q=quin")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .doesNotContain(newUser);
+    }
+
+    @Test
+    @Tag("Basic")
+    void streamChanges_ShouldPublishCreateAndDelete() {
+        WebClient client = WebClient.create("http://localhost:" + port);
+        StepVerifier changes = StepVerifier.create(client.get()
+                        .uri("/api/users/changes")
+                        .retrieve()
+                        .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<UserChangeEvent>>() { })
+                        .take(2))
+                .expectNextMatches(event -> "CREATED".equals(event.event()) && event.data().userId() == 600L)
+                .expectNextMatches(event -> "DELETED".equals(event.event())
+                        && Long.parseLong(event.id()) == event.data().sequence())
+                .expectComplete()
+                .verifyLater();
+
+        // The subscription is asynchronous, so give it a moment to attach before mutating
+        Mono.delay(Duration.ofMillis(300)).block();
+        webTestClient.post()
+                .uri("/api/users")
+                .bodyValue(new User(600L, "Frank", "frank@example.com"))
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.delete()
+                .uri("/api/users/600")
+                .exchange()
+                .expectStatus().isOk();
+
+        changes.verify(Duration.ofSeconds(5));
+    }
+
     @Test
     @Tag("Basic")
     void deleteUser_ShouldReturnSuccess() {
@@ -82,6 +232,198 @@ class UserIntegrationTest {
                 .expectStatus().isOk();
     }
 
+    @Test
+    @Tag("Basic")
+    void exportWebSocket_ShouldMultiplexJobsOverOneConnection() {
+        List<String> frames = new CopyOnWriteArrayList<>();
+        new ReactorNettyWebSocketClient()
+                .execute(URI.create("ws://localhost:" + port + "/ws/exports"), session -> session
+                        .send(Flux.just(
+                                "{\"type\":\"submit\",\"jobId\":\"csv\",\"mode\":\"batch\",\"format\":\"csv\"}",
+                                "{\"type\":\"submit\",\"jobId\":\"ndjson\",\"mode\":\"reactive\",\"format\":\"ndjson\"}")
+                                .map(session::textMessage))
+                        .thenMany(session.receive()
+                                .map(WebSocketMessage::getPayloadAsText)
+                                .doOnNext(frames::add)
+                                .filter(frame -> frame.contains("\"COMPLETED\""))
+                                .take(2))
+                        .then())
+                .block(Duration.ofSeconds(60));
+
+        assertEquals(6, frames.size(), () -> "Unexpected frames " + frames);
+        assertTrue(frames.stream().anyMatch(frame -> frame.contains("\"jobId\":\"csv\"") && frame.contains("\"COMPLETED\"")));
+        assertTrue(frames.stream().anyMatch(frame -> frame.contains("\"jobId\":\"ndjson\"") && frame.contains("\"COMPLETED\"")));
+    }
+
+    @Test
+    @Tag("Basic")
+    void exportWithRequestId_ShouldBeTracedByStage() {
+        webTestClient.get()
+                .uri("/api/users/export-batch/77?format=csv")
+                .header("X-Request-ID", "it-trace-77")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Request-ID", "it-trace-77")
+                .returnResult(String.class)
+                .getResponseBody()
+                .blockLast(Duration.ofSeconds(30));
+
+        webTestClient.get()
+                .uri("/api/debug/traces/it-trace-77")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.requestId").isEqualTo("it-trace-77")
+                .jsonPath("$.spans[0].stage").isEqualTo("query+process")
+                .jsonPath("$.spans[0].outcome").isEqualTo("complete");
+    }
+
+    @Test
+    @Tag("Basic")
+    void exportIncremental_ShouldPickUpUpdatesLowIdInsertsAndDeletesAfterWatermark() throws Exception {
+        String consumer = "it-" + System.currentTimeMillis();
+        webTestClient.delete().uri("/api/users/2").exchange().expectStatus().isOk();
+        assertEquals(2L, incrementalExport(80L, consumer).totalRecords());
+
+        // An update of a user below the highest id, and a create reusing a deleted, lower id
+        webTestClient.post().uri("/api/users").bodyValue(new User(1L, "Alice Cooper", "alice@example.com"))
+                .exchange().expectStatus().isOk();
+        webTestClient.post().uri("/api/users").bodyValue(new User(2L, "Bobby", "bobby@example.com"))
+                .exchange().expectStatus().isOk();
+        databaseClient.sql("SELECT id FROM users WHERE id = 2")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(50)).take(40))
+                .block();
+
+        ExportResult delta = incrementalExport(81L, consumer);
+        assertEquals(2L, delta.totalRecords());
+        assertEquals(List.of("id,name,email", "1,Alice Cooper,alice@example.com", "2,Bobby,bobby@example.com"),
+                Files.readAllLines(Paths.get("target/it-data/exports").resolve(delta.fileName())));
+        assertEquals("NO_CHANGES", incrementalExport(82L, consumer).status());
+
+        // A user created and deleted after the watermark only shows up as deleted
+        webTestClient.post().uri("/api/users").bodyValue(new User(900L, "Temp", "temp@example.com"))
+                .exchange().expectStatus().isOk();
+        webTestClient.delete().uri("/api/users/900").exchange().expectStatus().isOk();
+
+        ExportResult deletes = incrementalExport(83L, consumer);
+        assertEquals(List.of("id,name,email", "900,,"),
+                Files.readAllLines(Paths.get("target/it-data/exports").resolve(deletes.fileName())));
+    }
+
+    private ExportResult incrementalExport(long requestId, String consumer) {
+        return webTestClient.get()
+                .uri("/api/users/export-incremental/" + requestId + "?consumer=" + consumer)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<ExportResult>>() {})
+                .getResponseBody()
+                .mapNotNull(ServerSentEvent::data)
+                .blockLast(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void exportParallel_ShouldExportEveryUserAndReuseTheFileUntilTheTableChanges() throws Exception {
+        webTestClient.post().uri("/api/users").bodyValue(new User(901L, "Parallel", "parallel@example.com"))
+                .exchange().expectStatus().isOk();
+        databaseClient.sql("SELECT id FROM users WHERE id = 901")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(50)).take(40))
+                .block();
+
+        ExportResult export = parallelExport(84L);
+        assertEquals("COMPLETED", export.status());
+        List<Long> ids = Files.readAllLines(Paths.get("target/it-data/exports").resolve(export.fileName()))
+                .stream().skip(1).map(line -> Long.parseLong(line.substring(0, line.indexOf(',')))).toList();
+        assertEquals(export.totalRecords(), ids.size());
+        assertEquals(ids.stream().sorted().distinct().toList(), ids);
+        assertTrue(ids.contains(1L) && ids.contains(901L));
+
+        // Nothing was written since, so the file is reused
+        ExportResult again = parallelExport(85L);
+        assertEquals("REUSED", again.status());
+        assertEquals(export.fileName(), again.fileName());
+
+        webTestClient.delete().uri("/api/users/901").exchange().expectStatus().isOk();
+    }
+
+    private ExportResult parallelExport(long requestId) {
+        return webTestClient.get()
+                .uri("/api/users/export-parallel/" + requestId)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<ExportResult>>() {})
+                .getResponseBody()
+                .mapNotNull(ServerSentEvent::data)
+                .blockLast(Duration.ofSeconds(30));
+    }
+
+    @Test
+    @Tag("ErrorHandling")
+    void exportParallel_WithMorePartitionsThanCores_ShouldReturn400() {
+        webTestClient.get()
+                .uri("/api/users/export-parallel/77?partitions=1000")
+                .exchange()
+                .expectStatus().isEqualTo(400)
+                .expectBody()
+                .jsonPath("$.exception").isEqualTo("IllegalArgumentException")
+                .jsonPath("$.message").isEqualTo("Partition count must be between 1 and " + Schedulers.DEFAULT_POOL_SIZE);
+    }
+
+    @Test
+    @Tag("ErrorHandling")
+    void exportPastRequestTimeout_ShouldReturn504NamingTheStage() {
+        // The reactive export spends 3s processing, well past the 1s budget
+        webTestClient.get()
+                .uri("/api/users/export-reactive/78")
+                .header("X-Request-Timeout", "1s")
+                .exchange()
+                .expectStatus().isEqualTo(504)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(504)
+                .jsonPath("$.exception").isEqualTo("DeadlineExceededException")
+                .jsonPath("$.stage").isEqualTo("process")
+                .jsonPath("$.message").isEqualTo("Deadline of 1000ms exceeded during stage 'process'");
+    }
+
+    @Test
+    @Tag("ErrorHandling")
+    void exportPastRequestTimeoutAfterHeartbeat_ShouldSendErrorEventNamingTheStage() {
+        // The it profile sends a heartbeat every 1.5s, so the 200 is committed before the 2.5s budget runs out
+        List<ServerSentEvent<Map<String, Object>>> events = webTestClient.get()
+                .uri("/api/users/export-reactive/79")
+                .header("X-Request-Timeout", "2500ms")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<Map<String, Object>>>() {})
+                .getResponseBody()
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertNotNull(events);
+        assertEquals("heartbeat", events.get(0).comment());
+        ServerSentEvent<Map<String, Object>> error = events.get(events.size() - 1);
+        assertEquals("error", error.event());
+        assertEquals(504, error.data().get("status"));
+        assertEquals("process", error.data().get("stage"));
+        assertEquals("Deadline of 2500ms exceeded during stage 'process'", error.data().get("message"));
+    }
+
+    @Test
+    @Tag("Basic")
+    void blockingCallOnNonBlockingThread_ShouldFail() {
+        // The it profile installs blocking call detection in fail mode
+        StepVerifier.create(Mono.fromCallable(() -> {
+                    Thread.sleep(10);
+                    return "slept";
+                })
+                .subscribeOn(Schedulers.parallel()))
+                .expectErrorMatches(error -> error instanceof BlockingOperationError)
+                .verify(Duration.ofSeconds(5));
+    }
+
     // Integration tests corresponding to the curl commands in ERROR_HANDLING_GUIDE.md
 
     @Test
@@ -0,0 +1,82 @@
+package io.will.webfluxdemo.integration;
+
+import io.will.webfluxdemo.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.rsocket.server.LocalRSocketServerPort;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("it")
+class UserRSocketIntegrationTest {
+
+    @LocalRSocketServerPort
+    private int rsocketPort;
+
+    @Autowired
+    private RSocketRequester.Builder requesterBuilder;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    private RSocketRequester requester;
+
+    @BeforeEach
+    void setUp() {
+        databaseClient.sql("DELETE FROM users").then()
+                .then(databaseClient.sql("INSERT INTO users (id, name, email) VALUES "
+                        + "(1, 'Alice', 'alice@example.com'), "
+                        + "(2, 'Bob', 'bob@example.com'), "
+                        + "(3, 'Charlie', 'charlie@example.com')").then())
+                .block();
+        requester = requesterBuilder.tcp("localhost", rsocketPort);
+    }
+
+    @AfterEach
+    void tearDown() {
+        requester.dispose();
+    }
+
+    @Test
+    @Tag("Basic")
+    void getUser_ShouldReturnUser() {
+        StepVerifier.create(requester.route("users.get").data(2L).retrieveMono(User.class))
+                .expectNextMatches(user -> "Bob".equals(user.name()))
+                .verifyComplete();
+    }
+
+    @Test
+    @Tag("Basic")
+    void streamUsers_ShouldDeliverOnlyRequestedUsers() {
+        StepVerifier.create(requester.route("users.stream").retrieveFlux(User.class), 2)
+                .expectNextCount(2)
+                .expectNoEvent(Duration.ofMillis(200))
+                .thenRequest(1)
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    @Tag("Basic")
+    void ingestUsers_ShouldCreateEveryUserOverOneChannel() {
+        Flux<User> users = Flux.range(100, 200)
+                .map(id -> new User((long) id, "User " + id, "user" + id + "@example.com"));
+
+        StepVerifier.create(requester.route("users.ingest").data(users).retrieveFlux(User.class))
+                .expectNextCount(200)
+                .verifyComplete();
+        StepVerifier.create(requester.route("users.get").data(299L).retrieveMono(User.class))
+                .expectNextMatches(user -> "User 299".equals(user.name()))
+                .verifyComplete();
+    }
+}
@@ -1,9 +1,11 @@
 package io.will.webfluxdemo.integration;
 
 import io.will.webfluxdemo.model.User;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
@@ -18,6 +20,20 @@ class WebFluxPerformanceTest {
     @Autowired
     private WebTestClient webTestClient;
 
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @BeforeEach
+    void resetUsers() {
+        // Users are persisted now, so every test starts from the same three seed users
+        databaseClient.sql("DELETE FROM users").then()
+                .then(databaseClient.sql("INSERT INTO users (id, name, email) VALUES "
+                        + "(1, 'Alice', 'alice@example.com'), "
+                        + "(2, 'Bob', 'bob@example.com'), "
+                        + "(3, 'Charlie', 'charlie@example.com')").then())
+                .block();
+    }
+
     @Test
     void testReactiveStreaming_ShouldHandleBackpressure() {
         // Test that the reactive stream can handle backpressure properly
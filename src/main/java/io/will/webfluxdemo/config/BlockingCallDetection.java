@@ -0,0 +1,84 @@
+package io.will.webfluxdemo.config;
+
+import org.apache.commons.logging.Log;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.logging.DeferredLogFactory;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Opt-in detection of blocking calls on non-blocking threads (Netty event loops, Reactor parallel).
+ *
+ * - {@code app.blocking-detection=off} (default): nothing is installed.
+ * - {@code log}: the blocking call and its stack are logged, and the call proceeds.
+ * - {@code fail}: the call throws {@link BlockingOperationError}, failing the request or test.
+ *
+ * Installed while the environment is prepared, before any server thread starts. BlockHound
+ * instruments JDK classes, so the JVM needs {@code -XX:+AllowRedefinitionToAddDeleteMethods};
+ * without it a warning is logged and the application starts undetected.
+ */
+public class BlockingCallDetection implements EnvironmentPostProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockingCallDetection.class);
+
+    private static final AtomicBoolean installed = new AtomicBoolean();
+
+    // Logging is not initialized yet when the environment is prepared; these lines are replayed once it is
+    private final Log log;
+
+    public BlockingCallDetection(DeferredLogFactory logFactory) {
+        this.log = logFactory.getLog(BlockingCallDetection.class);
+    }
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        String mode = environment.getProperty("app.blocking-detection", "off").toLowerCase(Locale.ROOT);
+        if (mode.equals("off") || installed.get()) {
+            return;
+        }
+        if (!mode.equals("log") && !mode.equals("fail")) {
+            throw new IllegalArgumentException("Unsupported blocking detection mode: " + mode);
+        }
+        try {
+            builder(mode.equals("fail")).install();
+            installed.set(true);
+            log.info("Blocking call detection installed, mode: " + mode);
+        } catch (RuntimeException | LinkageError e) {
+            log.warn("Blocking call detection not installed (is -XX:+AllowRedefinitionToAddDeleteMethods set?): "
+                    + e.getMessage());
+        }
+    }
+
+    static BlockHound.Builder builder(boolean fail) {
+        // Reactor and Netty ship integrations that mark their threads as non-blocking
+        return BlockHound.builder()
+                .loadIntegrations()
+                // MessageHeaders seeds its id generator from SecureRandom once, when the first
+                // RSocket request on an event loop loads the class
+                .allowBlockingCallsInside(
+                        "org.springframework.messaging.rsocket.annotation.support.MessagingRSocket", "createHeaders")
+                .blockingMethodCallback(method -> {
+                    BlockingOperationError error = new BlockingOperationError(method);
+                    if (fail) {
+                        throw error;
+                    }
+                    logger.warn("Blocking call {} on non-blocking thread {}:{}", method,
+                            Thread.currentThread().getName(), stack(error));
+                });
+    }
+
+    private static String stack(Throwable error) {
+        return Arrays.stream(error.getStackTrace())
+                .map(element -> System.lineSeparator() + "\tat " + element)
+                .collect(Collectors.joining());
+    }
+}
@@ -0,0 +1,40 @@
+package io.will.webfluxdemo.config;
+
+import io.will.webfluxdemo.model.ExportResult;
+import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.model.UserChangeEvent;
+import io.will.webfluxdemo.service.ExportJobTracker;
+import io.will.webfluxdemo.service.ExportRun;
+import io.will.webfluxdemo.websocket.ExportJobCommand;
+import io.will.webfluxdemo.websocket.ExportJobMessage;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.util.HashMap;
+
+/**
+ * Reachability metadata for the native image, for what Spring AOT cannot infer on its own.
+ *
+ * - Jackson binding of the JSON models, including those written to files or pushed on SSE and
+ *   WebSocket streams rather than returned from controllers. ExportWebSocketHandler reads and
+ *   writes its frames with a private ObjectMapper, so AOT never sees those types.
+ * - The {@code Map<String, Object>} bodies of the exception handlers. GlobalExceptionHandler uses
+ *   its own ObjectMapper, outside of Spring's codecs.
+ * - Nothing for SecurityConfig: Spring Security brings its own hints, and the config creates its
+ *   beans directly. It reads {@code app.security.enabled} inside its bean methods, so that flag
+ *   still works after AOT fixes the bean definitions.
+ */
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        bindingRegistrar.registerReflectionHints(hints.reflection(),
+                User.class, ExportResult.class, UserChangeEvent.class, ExportRun.class,
+                ExportJobTracker.PendingExport.class, ExportJobCommand.class, ExportJobMessage.class);
+        hints.reflection().registerType(HashMap.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+    }
+}
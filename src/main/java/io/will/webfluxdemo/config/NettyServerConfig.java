@@ -0,0 +1,77 @@
+package io.will.webfluxdemo.config;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import reactor.netty.resources.LoopResources;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reactor Netty server tuning, active with the {@code perf} profile (see application-perf.yml).
+ *
+ * - Dedicated event loops: one selector thread accepting connections, and
+ *   {@code worker-threads} (default: one per core) serving them, on epoll when available.
+ * - Pooled direct buffers, a larger accept backlog and TCP_NODELAY.
+ * - A cap on open connections; connections above it are closed as they are accepted.
+ *
+ * Idle timeout and HTTP/2 cleartext use Spring Boot's own {@code server.*} properties.
+ */
+@Configuration
+@Profile("perf")
+public class NettyServerConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyServerConfig.class);
+
+    @Value("${app.netty.select-threads:1}")
+    private int selectThreads;
+
+    // 0 means one per available processor
+    @Value("${app.netty.worker-threads:0}")
+    private int workerThreads;
+
+    @Value("${app.netty.backlog:4096}")
+    private int backlog;
+
+    @Value("${app.netty.max-connections:10000}")
+    private int maxConnections;
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    @Bean(destroyMethod = "dispose")
+    public LoopResources serverLoopResources() {
+        int workers = workerThreads > 0 ? workerThreads : Runtime.getRuntime().availableProcessors();
+        if (!LoopResources.hasNativeSupport()) {
+            logger.warn("Native transport unavailable, the perf profile falls back to NIO");
+        }
+        logger.info("Netty server event loops: {} select, {} worker threads", selectThreads, workers);
+        return LoopResources.create("http-perf", selectThreads, workers, true);
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<NettyReactiveWebServerFactory> nettyServerTuning(LoopResources serverLoopResources) {
+        return factory -> factory.addServerCustomizers(server -> server
+                .runOn(serverLoopResources)
+                .option(ChannelOption.SO_BACKLOG, backlog)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .doOnChannelInit((observer, channel, remoteAddress) -> {
+                    if (openConnections.incrementAndGet() > maxConnections) {
+                        openConnections.decrementAndGet();
+                        logger.warn("Connection limit {} reached, closing connection from {}", maxConnections, remoteAddress);
+                        channel.close();
+                        return;
+                    }
+                    channel.closeFuture().addListener(future -> openConnections.decrementAndGet());
+                }));
+    }
+}
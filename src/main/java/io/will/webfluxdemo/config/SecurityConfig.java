@@ -42,6 +42,8 @@ public class SecurityConfig {
                 .pathMatchers("/api/auth/public").permitAll()
                 // Protected endpoints - require authentication
                 .pathMatchers("/api/users").hasRole("USER")
+                .pathMatchers("/api/users/search").hasRole("USER")
+                .pathMatchers("/api/users/changes").hasRole("USER")
                 .pathMatchers("/api/users/{id}").hasRole("USER")
                 .pathMatchers("/api/users/test-error").hasRole("ADMIN")
                 .pathMatchers("/api/users/test-bad-request").hasRole("ADMIN")
@@ -49,6 +51,15 @@ public class SecurityConfig {
                 .pathMatchers("/api/users/export/**").hasRole("ADMIN")
                 .pathMatchers("/api/users/export-reactive/**").hasRole("ADMIN")
                 .pathMatchers("/api/users/export-batch/**").hasRole("ADMIN")
+                .pathMatchers("/api/users/export-parallel/**").hasRole("ADMIN")
+                .pathMatchers("/api/users/export-incremental/**").hasRole("ADMIN")
+                .pathMatchers("/api/export-jobs/**").hasRole("ADMIN")
+                .pathMatchers("/api/export-artifacts/**").hasRole("ADMIN")
+                .pathMatchers("/ws/exports").hasRole("ADMIN")
+                // Operational endpoints
+                .pathMatchers("/api/debug/**").hasRole("ADMIN")
+                .pathMatchers("/actuator/health").permitAll()
+                .pathMatchers("/actuator/**").hasRole("ADMIN")
                 .pathMatchers("/api/auth/protected").hasRole("USER")
                 .pathMatchers("/api/auth/admin").hasRole("ADMIN")
                 .pathMatchers("/api/auth/me").hasRole("USER")
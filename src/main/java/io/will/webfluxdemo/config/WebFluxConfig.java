@@ -1,15 +1,26 @@
 package io.will.webfluxdemo.config;
 
+import io.will.webfluxdemo.deadline.DeadlineWebFilter;
+import io.will.webfluxdemo.priority.PriorityWebFilter;
+import io.will.webfluxdemo.ratelimit.RateLimitWebFilter;
+import io.will.webfluxdemo.ratelimit.TokenBucketRateLimiter;
+import io.will.webfluxdemo.tracing.RequestIdThreadLocalAccessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.web.reactive.config.CorsRegistry;
 import org.springframework.web.reactive.config.EnableWebFlux;
 import org.springframework.web.reactive.config.WebFluxConfigurer;
 import org.springframework.web.server.WebFilter;
+import reactor.util.context.Context;
 
+import java.time.Duration;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
 
 @Configuration
 @EnableWebFlux
@@ -17,10 +28,15 @@ public class WebFluxConfig implements WebFluxConfigurer {
 
     private static final Logger logger = LoggerFactory.getLogger(WebFluxConfig.class);
 
+    // Request ids accepted from callers, so one id can follow a request across services
+    private static final Pattern INCOMING_REQUEST_ID = Pattern.compile("[A-Za-z0-9._:-]{1,64}");
+
     @Bean
     public WebFilter requestLoggingFilter() {
         return (exchange, chain) -> {
-            String requestId = UUID.randomUUID().toString();
+            String incoming = exchange.getRequest().getHeaders().getFirst("X-Request-ID");
+            String requestId = incoming != null && INCOMING_REQUEST_ID.matcher(incoming).matches()
+                    ? incoming : newRequestId();
             exchange.getAttributes().put("requestId", requestId);
             
             // Add request ID to response headers
@@ -51,10 +67,18 @@ public class WebFluxConfig implements WebFluxConfigurer {
                         logger.info("Status: {}", status);
                         logger.info("Duration: {}ms", duration);
                         logger.info("==================");
-                    });
+                    })
+                    // Picked up by RequestIdThreadLocalAccessor for the MDC, and by ExportTraceRecorder
+                    .contextWrite(Context.of(RequestIdThreadLocalAccessor.KEY, requestId));
         };
     }
 
+    // Random but not SecureRandom: UUID.randomUUID() reads /dev/urandom, a blocking call on the event loop
+    private static String newRequestId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
     @Bean
     public WebFilter errorLoggingFilter() {
         return (exchange, chain) -> {
@@ -75,6 +99,31 @@ public class WebFluxConfig implements WebFluxConfigurer {
         };
     }
 
+    @Bean
+    @Order(RateLimitWebFilter.ORDER)
+    public WebFilter rateLimitFilter(
+            @Value("${app.rate-limit.enabled:true}") boolean enabled,
+            @Value("${app.rate-limit.capacity:100}") long capacity,
+            @Value("${app.rate-limit.refill-per-second:50}") double refillPerSecond,
+            @Value("${app.rate-limit.idle-timeout:10m}") Duration idleTimeout) {
+        if (!enabled) {
+            logger.info("Rate limiting is disabled as feature flag is off");
+            return (exchange, chain) -> chain.filter(exchange);
+        }
+        logger.info("Rate limiting /api/** to bursts of {} and {} requests/s per client", capacity, refillPerSecond);
+        return new RateLimitWebFilter(new TokenBucketRateLimiter(capacity, refillPerSecond, idleTimeout));
+    }
+
+    @Bean
+    public WebFilter priorityFilter() {
+        return new PriorityWebFilter();
+    }
+
+    @Bean
+    public WebFilter deadlineFilter(@Value("${app.deadline.max-budget:5m}") Duration maxBudget) {
+        return new DeadlineWebFilter(maxBudget);
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")
@@ -0,0 +1,22 @@
+package io.will.webfluxdemo.config;
+
+import io.will.webfluxdemo.websocket.ExportWebSocketHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+
+import java.util.Map;
+
+/**
+ * WebSocket endpoints. The adapter that upgrades the requests comes from {@code @EnableWebFlux}.
+ */
+@Configuration
+public class WebSocketConfig {
+
+    // Ordered ahead of the annotated controllers
+    @Bean
+    public HandlerMapping webSocketMapping(ExportWebSocketHandler exportWebSocketHandler) {
+        return new SimpleUrlHandlerMapping(Map.of("/ws/exports", exportWebSocketHandler), -1);
+    }
+}
@@ -0,0 +1,35 @@
+package io.will.webfluxdemo.controller;
+
+import io.will.webfluxdemo.tracing.ExportTraceRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/debug")
+public class DebugController {
+
+    @Autowired
+    private ExportTraceRecorder traceRecorder;
+
+    /**
+     * Stage timings of recent exports, newest first; the id is the X-Request-ID of the export request
+     */
+    @GetMapping("/traces")
+    public Flux<ExportTraceRecorder.Trace> getTraces(@RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > 200) {
+            throw new IllegalArgumentException("limit must be between 1 and 200");
+        }
+        return Flux.fromIterable(traceRecorder.traces(limit));
+    }
+
+    @GetMapping("/traces/{requestId}")
+    public Mono<ExportTraceRecorder.Trace> getTrace(@PathVariable String requestId) {
+        return Mono.justOrEmpty(traceRecorder.trace(requestId));
+    }
+}
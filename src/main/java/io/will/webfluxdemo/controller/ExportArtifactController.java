@@ -0,0 +1,33 @@
+package io.will.webfluxdemo.controller;
+
+import io.will.webfluxdemo.export.ExportArtifactStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/export-artifacts")
+public class ExportArtifactController {
+
+    @Autowired
+    private ExportArtifactStore artifactStore;
+
+    /**
+     * Disk usage of generated export files against the quota, plus reuse and eviction counters
+     */
+    @GetMapping("/stats")
+    public Mono<ExportArtifactStore.Stats> getStats() {
+        return Mono.fromSupplier(artifactStore::stats);
+    }
+
+    /**
+     * The export file produced for a task, empty if unknown or already evicted
+     */
+    @GetMapping("/{taskId}")
+    public Mono<ExportArtifactStore.Artifact> getArtifact(@PathVariable Long taskId) {
+        return Mono.justOrEmpty(artifactStore.find(taskId));
+    }
+}
@@ -0,0 +1,40 @@
+package io.will.webfluxdemo.controller;
+
+import io.will.webfluxdemo.service.ScheduledExportRunner;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/export-jobs")
+public class ExportJobController {
+
+    @Autowired
+    private ScheduledExportRunner scheduledExportRunner;
+
+    /**
+     * Configured scheduled export jobs with their next fire time and recent runs
+     */
+    @GetMapping
+    public Flux<ScheduledExportRunner.JobStatus> getJobs() {
+        return Flux.fromIterable(scheduledExportRunner.jobStatuses());
+    }
+
+    /**
+     * Runs a job immediately; coalesced if it is already running
+     */
+    @PostMapping("/{name}/run")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<Map<String, Object>> runJob(@PathVariable String name) {
+        return Mono.fromSupplier(() -> Map.of("job", name, "started", scheduledExportRunner.runNow(name)));
+    }
+}
@@ -1,54 +1,99 @@
 package io.will.webfluxdemo.controller;
 
-import io.will.webfluxdemo.model.ExportResult;
+import io.will.webfluxdemo.export.ExportFormats;
 import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.model.UserChangeEvent;
+import io.will.webfluxdemo.repository.UserRepository;
+import io.will.webfluxdemo.search.UserSearchIndex;
 import io.will.webfluxdemo.service.DataExportService;
+import io.will.webfluxdemo.service.UserChangeFeed;
+import io.will.webfluxdemo.service.UserWriteBehindService;
+import io.will.webfluxdemo.sse.SseConnectionManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
-import java.util.Arrays;
-import java.util.List;
 
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
 
+    @Lazy
     @Autowired
     private DataExportService dataExportService;
 
-    private final List<User> users = Arrays.asList(
-        new User(1L, "Alice", "alice@example.com"),
-        new User(2L, "Bob", "bob@example.com"),
-        new User(3L, "Charlie", "charlie@example.com")
-    );
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserWriteBehindService userWriteBehindService;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    @Autowired
+    private UserChangeFeed userChangeFeed;
+
+    @Autowired
+    private SseConnectionManager sseConnectionManager;
 
     @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<User> getAllUsers() {
-        return Flux.fromIterable(users)
+        return userRepository.findAll()
                 .delayElements(Duration.ofMillis(100))
-                .doOnNext(user -> System.out.println("Streaming user: " + user.getName()));
+                .doOnNext(user -> System.out.println("Streaming user: " + user.name()));
+    }
+
+    /**
+     * Search by name and email tokens; the last word may be partial, for typeahead.
+     * Best matches first, at most {@code limit} (1-100) users.
+     */
+    @GetMapping("/search")
+    public Flux<User> searchUsers(@RequestParam String q, @RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > 100) {
+            throw new IllegalArgumentException("limit must be between 1 and 100");
+        }
+        return Flux.fromIterable(userSearchIndex.search(q, limit));
+    }
+
+    /**
+     * Stream of user creates and deletes; the SSE id is the change sequence.
+     * Reconnecting with Last-Event-ID replays retained changes after it.
+     * overflow=drop|latest decides what a slow client loses when its buffer is full.
+     */
+    @CrossOrigin(origins = {"file:///", "null"})
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<UserChangeEvent>> streamChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+            @RequestParam(defaultValue = "drop") String overflow) {
+        return sseConnectionManager.events("changes",
+                userChangeFeed.subscribe(lastEventId, UserChangeFeed.Overflow.fromString(overflow))
+                        .map(event -> ServerSentEvent.builder(event)
+                                .id(Long.toString(event.sequence()))
+                                .event(event.type().name())
+                                .build()),
+                true);
     }
 
     @GetMapping("/{id}")
     public Mono<User> getUserById(@PathVariable Long id) {
-        return Mono.justOrEmpty(users.stream()
-                .filter(user -> user.getId().equals(id))
-                .findFirst());
+        return userWriteBehindService.findById(id);
     }
 
     @PostMapping
     public Mono<User> createUser(@RequestBody User user) {
-        return Mono.just(user)
+        return userWriteBehindService.create(user)
                 .delayElement(Duration.ofMillis(200));
     }
 
     @DeleteMapping("/{id}")
     public Mono<Void> deleteUser(@PathVariable Long id) {
-        return Mono.empty();
+        return userWriteBehindService.delete(id).then();
     }
 
     @GetMapping("/test-error")
@@ -63,6 +108,9 @@ public class UserController {
 
     // Long-running async operations using SSE for Mono
     // This is where Mono + SSE makes sense!
+    // SseConnectionManager adds heartbeats, idle/lifetime limits and the open-stream cap;
+    // a failure after the first heartbeat arrives as an "error" event rather than a status code
+    // All export endpoints accept ?format=csv|ndjson|columnar (default csv)
     
     /**
      * Export user data - long running operation
@@ -71,8 +119,9 @@ public class UserController {
      */
     @CrossOrigin(origins = {"file:///", "null"})
     @GetMapping(path = "/export/{requestId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Mono<ExportResult> exportUsers(@PathVariable Long requestId) {
-        return dataExportService.exportAsync(requestId);
+    public Flux<ServerSentEvent<Object>> exportUsers(@PathVariable Long requestId,
+                                    @RequestParam(defaultValue = ExportFormats.DEFAULT_FORMAT) String format) {
+        return sseConnectionManager.result("export", dataExportService.exportAsync(requestId, format));
     }
 
     /**
@@ -81,8 +130,9 @@ public class UserController {
      */
     @CrossOrigin(origins = {"file:///", "null"})
     @GetMapping(path = "/export-reactive/{requestId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Mono<ExportResult> exportUsersReactive(@PathVariable Long requestId) {
-        return dataExportService.exportAsyncReactive(requestId);
+    public Flux<ServerSentEvent<Object>> exportUsersReactive(@PathVariable Long requestId,
+                                            @RequestParam(defaultValue = ExportFormats.DEFAULT_FORMAT) String format) {
+        return sseConnectionManager.result("export-reactive", dataExportService.exportAsyncReactive(requestId, format));
     }
 
     /**
@@ -91,7 +141,33 @@ public class UserController {
      */
     @CrossOrigin(origins = {"file:///", "null"})
     @GetMapping(path = "/export-batch/{requestId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Mono<ExportResult> exportUsersBatch(@PathVariable Long requestId) {
-        return dataExportService.exportWithProgress(requestId);
+    public Flux<ServerSentEvent<Object>> exportUsersBatch(@PathVariable Long requestId,
+                                         @RequestParam(defaultValue = ExportFormats.DEFAULT_FORMAT) String format) {
+        return sseConnectionManager.result("export-batch", dataExportService.exportWithProgress(requestId, format));
+    }
+
+    /**
+     * Parallel export partitioned by user id range
+     * Partitions default to the number of available cores, capped at app.export.parallel.max-partitions
+     */
+    @CrossOrigin(origins = {"file:///", "null"})
+    @GetMapping(path = "/export-parallel/{requestId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> exportUsersParallel(@PathVariable Long requestId,
+                                            @RequestParam(required = false) Integer partitions,
+                                            @RequestParam(defaultValue = ExportFormats.DEFAULT_FORMAT) String format) {
+        return sseConnectionManager.result("export-parallel", dataExportService.exportParallel(requestId, partitions, format));
+    }
+
+    /**
+     * Incremental export of users created or updated since the consumer's previous export
+     * Returns status NO_CHANGES without a file when nothing new exists
+     */
+    @CrossOrigin(origins = {"file:///", "null"})
+    @GetMapping(path = "/export-incremental/{requestId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> exportUsersIncremental(@PathVariable Long requestId,
+                                               @RequestParam String consumer,
+                                               @RequestParam(defaultValue = ExportFormats.DEFAULT_FORMAT) String format) {
+        return sseConnectionManager.result("export-incremental",
+                dataExportService.exportIncremental(requestId, consumer, format));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+package io.will.webfluxdemo.controller;
+
+import io.will.webfluxdemo.exception.ServiceUnavailableException;
+import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.priority.PriorityClass;
+import io.will.webfluxdemo.repository.UserRepository;
+import io.will.webfluxdemo.service.UserWriteBehindService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * RSocket routes for internal services, next to the HTTP API in {@link UserController}.
+ *
+ * - Many calls share one TCP connection, and demand is carried end to end by {@code request(n)}:
+ *   a slow caller slows the database cursor rather than filling a buffer.
+ * - Routes are unauthenticated, so the server listens on loopback only ({@code spring.rsocket.server}).
+ * - Single lookups are INTERACTIVE; streams and bulk ingest run as BATCH (see {@link PriorityClass}).
+ */
+@Controller
+public class UserRSocketController {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserRSocketController.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserWriteBehindService userWriteBehindService;
+
+    @Value("${app.users.ingest-concurrency:64}")
+    private int ingestConcurrency;
+
+    /**
+     * Request-response; completes empty when the user does not exist.
+     */
+    @MessageMapping("users.get")
+    public Mono<User> getUserById(Long id) {
+        return userWriteBehindService.findById(id)
+                .contextWrite(Context.of(PriorityClass.CONTEXT_KEY, PriorityClass.INTERACTIVE));
+    }
+
+    /**
+     * Request-stream of all users, without the pacing of the SSE listing.
+     */
+    @MessageMapping("users.stream")
+    public Flux<User> streamUsers() {
+        return userRepository.findAll();
+    }
+
+    /**
+     * Request-channel bulk create: each user is echoed back once it is durable.
+     * At most {@code ingest-concurrency} creates are in flight, so the caller's stream is only
+     * requested as fast as the write-behind buffer accepts; a full buffer is retried, not failed.
+     */
+    @MessageMapping("users.ingest")
+    public Flux<User> ingestUsers(Flux<User> users) {
+        return users
+                .flatMapSequential(user -> userWriteBehindService.create(user)
+                        .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(10))
+                                .maxBackoff(Duration.ofSeconds(1))
+                                .filter(ServiceUnavailableException.class::isInstance)),
+                        ingestConcurrency)
+                .doOnError(e -> logger.warn("User ingest channel failed: {}", e.getMessage()));
+    }
+}
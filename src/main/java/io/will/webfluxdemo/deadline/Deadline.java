@@ -0,0 +1,54 @@
+package io.will.webfluxdemo.deadline;
+
+import io.will.webfluxdemo.exception.DeadlineExceededException;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * The point in time by which a request's work must be done, carried in the Reactor context.
+ *
+ * - Set from the {@code X-Request-Timeout} header by {@link DeadlineWebFilter}, or by
+ *   DataExportService from {@code app.export.timeout} when the caller gave none.
+ * - Each stage wrapped with {@link #stage(String)} only gets the budget that is left, and is
+ *   cancelled with a {@link DeadlineExceededException} naming it once the deadline passes.
+ */
+public record Deadline(long expiresAtNanos, Duration budget) {
+
+    public static final String CONTEXT_KEY = "deadline";
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos(), budget);
+    }
+
+    public static Optional<Deadline> from(ContextView context) {
+        return context.getOrEmpty(CONTEXT_KEY);
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAtNanos - System.nanoTime()));
+    }
+
+    /**
+     * Limits {@code work} to the remaining budget; fails right away if none is left.
+     */
+    public <T> Mono<T> enforce(String stage, Mono<T> work) {
+        Duration remaining = remaining();
+        if (remaining.isZero()) {
+            return Mono.error(new DeadlineExceededException(stage, budget));
+        }
+        return work.timeout(remaining, Mono.error(() -> new DeadlineExceededException(stage, budget)));
+    }
+
+    /**
+     * Applies the caller's deadline, if there is one, to a stage of its work.
+     */
+    public static <T> Function<Mono<T>, Mono<T>> stage(String stage) {
+        return work -> Mono.deferContextual(context -> from(context)
+            .map(deadline -> deadline.enforce(stage, work))
+            .orElse(work));
+    }
+}
@@ -0,0 +1,53 @@
+package io.will.webfluxdemo.deadline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+
+/**
+ * Starts a {@link Deadline} for {@code /api/**} requests carrying {@code X-Request-Timeout}.
+ *
+ * The header is a duration ({@code 1500}, {@code 1500ms}, {@code 30s}); plain numbers are
+ * milliseconds. Budgets above {@code maxBudget} are capped, and malformed or non-positive
+ * values are ignored, leaving the server's own timeouts in charge.
+ */
+public class DeadlineWebFilter implements WebFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineWebFilter.class);
+
+    public static final String HEADER = "X-Request-Timeout";
+
+    private final Duration maxBudget;
+
+    public DeadlineWebFilter(Duration maxBudget) {
+        this.maxBudget = maxBudget;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String header = exchange.getRequest().getHeaders().getFirst(HEADER);
+        if (header == null || !exchange.getRequest().getPath().value().startsWith("/api/")) {
+            return chain.filter(exchange);
+        }
+        Duration budget;
+        try {
+            budget = DurationStyle.detectAndParse(header.trim());
+        } catch (IllegalArgumentException e) {
+            logger.debug("Ignoring malformed {} header: {}", HEADER, header);
+            return chain.filter(exchange);
+        }
+        if (budget.isNegative() || budget.isZero()) {
+            return chain.filter(exchange);
+        }
+        Deadline deadline = Deadline.after(budget.compareTo(maxBudget) > 0 ? maxBudget : budget);
+        return chain.filter(exchange)
+                .contextWrite(Context.of(Deadline.CONTEXT_KEY, deadline));
+    }
+}
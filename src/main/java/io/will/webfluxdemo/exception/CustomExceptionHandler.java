@@ -44,6 +44,33 @@ public class CustomExceptionHandler {
                 .body(errorResponse));
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public Mono<ResponseEntity<Map<String, Object>>> handleServiceUnavailableException(
+            ServiceUnavailableException ex, ServerWebExchange exchange) {
+
+        logException(ex, exchange, "ServiceUnavailableException");
+
+        Map<String, Object> errorResponse = createErrorResponse(exchange, ex,
+            HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable");
+
+        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(errorResponse));
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public Mono<ResponseEntity<Map<String, Object>>> handleDeadlineExceededException(
+            DeadlineExceededException ex, ServerWebExchange exchange) {
+
+        logException(ex, exchange, "DeadlineExceededException");
+
+        Map<String, Object> errorResponse = createErrorResponse(exchange, ex,
+            HttpStatus.GATEWAY_TIMEOUT, "Gateway Timeout");
+        errorResponse.put("stage", ex.getStage());
+
+        return Mono.just(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(errorResponse));
+    }
+
     @ExceptionHandler(Exception.class)
     public Mono<ResponseEntity<Map<String, Object>>> handleGenericException(
             Exception ex, ServerWebExchange exchange) {
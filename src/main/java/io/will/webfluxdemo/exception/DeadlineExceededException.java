@@ -0,0 +1,20 @@
+package io.will.webfluxdemo.exception;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request's deadline passes while one of its stages is still running; mapped to 504.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private final String stage;
+
+    public DeadlineExceededException(String stage, Duration budget) {
+        super("Deadline of " + budget.toMillis() + "ms exceeded during stage '" + stage + "'");
+        this.stage = stage;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+}
@@ -0,0 +1,11 @@
+package io.will.webfluxdemo.exception;
+
+/**
+ * Thrown when a request is shed because the server is temporarily at capacity; mapped to 503.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,179 @@
+package io.will.webfluxdemo.export;
+
+import io.will.webfluxdemo.model.User;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact column-oriented binary format for analytics consumers.
+ *
+ * <pre>
+ * file      := MAGIC version rowGroup* END
+ * rowGroup  := rowCount:int idLen:int nameLen:int emailLen:int idColumn nameColumn emailColumn
+ * idColumn  := first:long (delta:varlong){rowCount-1}
+ * strColumn := dictSize:varint (len:varint utf8){dictSize} (index:varint){rowCount}
+ * END       := 0:int
+ * </pre>
+ *
+ * Column lengths in the row group header let a scanner skip columns it does not need,
+ * and names/emails are dictionary-encoded per row group so repeated values cost one varint.
+ */
+@Component
+public class ColumnarExportFormat implements ExportFormat {
+
+    static final byte[] MAGIC = {'W', 'F', 'X', 'C'};
+    static final byte VERSION = 1;
+
+    @Override
+    public String name() {
+        return "columnar";
+    }
+
+    @Override
+    public String fileExtension() {
+        return "wfxc";
+    }
+
+    @Override
+    public byte[] header() {
+        return ByteBuffer.allocate(MAGIC.length + 1).put(MAGIC).put(VERSION).array();
+    }
+
+    @Override
+    public byte[] encode(List<User> users) {
+        if (users.isEmpty()) {
+            // A zero row count marks the end of file, so empty chunks are omitted
+            return new byte[0];
+        }
+
+        byte[] ids = encodeIds(users);
+        byte[] names = encodeDictionary(users.stream().map(User::name).toList());
+        byte[] emails = encodeDictionary(users.stream().map(User::email).toList());
+
+        return ByteBuffer.allocate(16 + ids.length + names.length + emails.length)
+            .putInt(users.size())
+            .putInt(ids.length)
+            .putInt(names.length)
+            .putInt(emails.length)
+            .put(ids)
+            .put(names)
+            .put(emails)
+            .array();
+    }
+
+    @Override
+    public byte[] footer() {
+        return ByteBuffer.allocate(4).putInt(0).array();
+    }
+
+    /**
+     * Reads back a complete columnar export file.
+     */
+    public static List<User> decode(byte[] file) {
+        ByteBuffer buffer = ByteBuffer.wrap(file);
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || buffer.get() != VERSION) {
+            throw new IllegalArgumentException("Not a columnar export file");
+        }
+
+        List<User> users = new ArrayList<>();
+        int rowCount;
+        while ((rowCount = buffer.getInt()) > 0) {
+            buffer.position(buffer.position() + 12); // column lengths are only needed for skipping
+            long[] ids = new long[rowCount];
+            ids[0] = buffer.getLong();
+            for (int i = 1; i < rowCount; i++) {
+                ids[i] = ids[i - 1] + readVarLong(buffer);
+            }
+            List<String> names = decodeDictionary(buffer, rowCount);
+            List<String> emails = decodeDictionary(buffer, rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                users.add(new User(ids[i], names.get(i), emails.get(i)));
+            }
+        }
+        return users;
+    }
+
+    private static byte[] encodeIds(List<User> users) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + users.size() * 2);
+        long previous = users.get(0).id();
+        out.writeBytes(ByteBuffer.allocate(8).putLong(previous).array());
+        for (int i = 1; i < users.size(); i++) {
+            long id = users.get(i).id();
+            writeVarLong(out, id - previous);
+            previous = id;
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeDictionary(List<String> values) {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        int[] indexes = new int[values.size()];
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i) != null ? values.get(i) : "";
+            indexes[i] = dictionary.computeIfAbsent(value, v -> {
+                entries.add(v);
+                return entries.size() - 1;
+            });
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(values.size() * 24);
+        writeVarLong(out, entries.size());
+        for (String entry : entries) {
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.writeBytes(bytes);
+        }
+        for (int index : indexes) {
+            writeVarLong(out, index);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<String> decodeDictionary(ByteBuffer buffer, int rowCount) {
+        int dictionarySize = (int) readVarLong(buffer);
+        String[] entries = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            byte[] bytes = new byte[(int) readVarLong(buffer)];
+            buffer.get(bytes);
+            entries[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        List<String> values = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            values.add(entries[(int) readVarLong(buffer)]);
+        }
+        return values;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        // Zig-zag so negative id deltas (unsorted chunks) stay small
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.write((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.write((int) zigZag);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long zigZag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            zigZag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+}
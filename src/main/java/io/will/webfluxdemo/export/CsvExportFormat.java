@@ -0,0 +1,49 @@
+package io.will.webfluxdemo.export;
+
+import io.will.webfluxdemo.model.User;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@Component
+public class CsvExportFormat implements ExportFormat {
+
+    private static final byte[] HEADER = "id,name,email\n".getBytes(StandardCharsets.UTF_8);
+
+    @Override
+    public String name() {
+        return "csv";
+    }
+
+    @Override
+    public String fileExtension() {
+        return "csv";
+    }
+
+    @Override
+    public byte[] header() {
+        return HEADER.clone();
+    }
+
+    @Override
+    public byte[] encode(List<User> users) {
+        StringBuilder csv = new StringBuilder(users.size() * 64);
+        for (User user : users) {
+            csv.append(user.id()).append(',')
+               .append(escape(user.name())).append(',')
+               .append(escape(user.email())).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
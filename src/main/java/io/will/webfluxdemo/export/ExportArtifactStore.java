@@ -0,0 +1,264 @@
+package io.will.webfluxdemo.export;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.will.webfluxdemo.model.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Index of generated export files, keyed by task id.
+ *
+ * - Keeps total size under {@code app.export.store.quota}, evicting least recently used files first.
+ * - Deletes files older than {@code app.export.store.ttl} on a periodic sweep.
+ * - Lets a new export reuse a file produced within {@code app.export.store.reuse-window}
+ *   when the exported data and format are identical (same fingerprint).
+ */
+@Component
+public class ExportArtifactStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportArtifactStore.class);
+
+    // <prefix>_<taskId>_<millis>.<extension>, as produced by DataExportService
+    private static final Pattern FILE_NAME = Pattern.compile(".*_(\\d+)_(\\d+)\\.[a-z]+");
+
+    @Value("${app.export.directory:data/exports}")
+    private String exportDirectory;
+
+    @Value("${app.export.store.quota:1GB}")
+    private DataSize quota;
+
+    @Value("${app.export.store.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${app.export.store.reuse-window:10m}")
+    private Duration reuseWindow;
+
+    @Value("${app.export.store.sweep-interval:5m}")
+    private Duration sweepInterval;
+
+    private Clock clock = Clock.systemUTC();
+
+    // Access-ordered, so iteration starts from the least recently used artifact
+    private final LinkedHashMap<String, Artifact> artifacts = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, String> fileNamesByTaskId = new HashMap<>();
+    private long totalBytes;
+    private long reuseHits;
+    private long reuseMisses;
+    private long evictions;
+
+    private Disposable sweeper;
+
+    public record Artifact(String fileName, @JsonIgnore Path path, long sizeBytes, String fingerprint, Instant createdAt) {
+    }
+
+    public record Stats(int artifactCount, long totalBytes, long quotaBytes, long reuseHits, long reuseMisses,
+                        long evictions) {
+    }
+
+    @PostConstruct
+    void start() {
+        indexExistingFiles();
+        sweeper = Flux.interval(sweepInterval, sweepInterval, Schedulers.boundedElastic())
+            .subscribe(tick -> sweep());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (sweeper != null) {
+            sweeper.dispose();
+        }
+    }
+
+    /**
+     * Identifies the exported content: same format and same users give the same fingerprint.
+     */
+    public static String fingerprint(ExportFormat format, List<User> users) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(format.name().getBytes(StandardCharsets.UTF_8));
+            for (User user : users) {
+                digest.update((user.id() + "\u0000" + user.name() + "\u0000" + user.email() + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Identifies the exported content without reading it: same format and same data version
+     * (see {@link io.will.webfluxdemo.repository.UserRepository.Bounds}) give the same fingerprint.
+     */
+    public static String fingerprint(ExportFormat format, long dataVersion) {
+        return format.name() + "@" + dataVersion;
+    }
+
+    /**
+     * Registers a freshly written export file and evicts older files if the quota is exceeded.
+     *
+     * @param fingerprint content fingerprint, or null if the file must never be reused
+     */
+    public synchronized Artifact register(Long taskId, Path file, String fingerprint) {
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to register export artifact " + file.getFileName(), e);
+        }
+        Artifact artifact = new Artifact(file.getFileName().toString(), file, size, fingerprint, clock.instant());
+        Artifact previous = artifacts.put(artifact.fileName(), artifact);
+        if (previous != null) {
+            totalBytes -= previous.sizeBytes();
+        }
+        totalBytes += size;
+        fileNamesByTaskId.put(taskId, artifact.fileName());
+
+        evictOverQuota(artifact.fileName());
+        return artifact;
+    }
+
+    /**
+     * Finds a recent artifact with identical content and links it to {@code taskId}.
+     */
+    public synchronized Optional<Artifact> reuse(Long taskId, String fingerprint) {
+        Instant oldestReusable = clock.instant().minus(reuseWindow);
+        Optional<Artifact> match = artifacts.values().stream()
+            .filter(artifact -> fingerprint.equals(artifact.fingerprint()))
+            .filter(artifact -> artifact.createdAt().isAfter(oldestReusable))
+            .filter(artifact -> Files.exists(artifact.path()))
+            .max(Comparator.comparing(Artifact::createdAt));
+
+        if (match.isEmpty()) {
+            reuseMisses++;
+            return Optional.empty();
+        }
+        reuseHits++;
+        Artifact artifact = artifacts.get(match.get().fileName()); // touch for LRU
+        fileNamesByTaskId.put(taskId, artifact.fileName());
+        logger.info("Reusing export artifact {} for task {}", artifact.fileName(), taskId);
+        return Optional.of(artifact);
+    }
+
+    public synchronized Optional<Artifact> find(Long taskId) {
+        String fileName = fileNamesByTaskId.get(taskId);
+        return fileName != null ? Optional.ofNullable(artifacts.get(fileName)) : Optional.empty();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(artifacts.size(), totalBytes, quota.toBytes(), reuseHits, reuseMisses, evictions);
+    }
+
+    /**
+     * Removes artifacts older than the TTL.
+     */
+    public synchronized void sweep() {
+        Instant expiry = clock.instant().minus(ttl);
+        List<Artifact> expired = new ArrayList<>();
+        for (Artifact artifact : artifacts.values()) {
+            if (artifact.createdAt().isBefore(expiry)) {
+                expired.add(artifact);
+            }
+        }
+        expired.forEach(artifact -> evict(artifact, "expired"));
+    }
+
+    private void evictOverQuota(String keep) {
+        Iterator<Artifact> leastRecentlyUsed = new ArrayList<>(artifacts.values()).iterator();
+        while (totalBytes > quota.toBytes() && leastRecentlyUsed.hasNext()) {
+            Artifact artifact = leastRecentlyUsed.next();
+            if (!artifact.fileName().equals(keep)) {
+                evict(artifact, "over quota");
+            }
+        }
+        if (keep != null && totalBytes > quota.toBytes()) {
+            logger.warn("Export artifact {} alone exceeds the {} quota", keep, quota);
+        }
+    }
+
+    private void evict(Artifact artifact, String reason) {
+        artifacts.remove(artifact.fileName());
+        fileNamesByTaskId.values().removeIf(artifact.fileName()::equals);
+        totalBytes -= artifact.sizeBytes();
+        evictions++;
+        try {
+            Files.deleteIfExists(artifact.path());
+        } catch (IOException e) {
+            logger.warn("Failed to delete evicted export artifact {}", artifact.path(), e);
+        }
+        logger.info("Evicted export artifact {} ({}, {} bytes)", artifact.fileName(), reason, artifact.sizeBytes());
+    }
+
+    /**
+     * Files left by a previous run are indexed so they count against the quota and expire;
+     * they are never reused since their content fingerprint is unknown.
+     */
+    private synchronized void indexExistingFiles() {
+        Path directory = Paths.get(exportDirectory);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.sorted(Comparator.comparing(ExportArtifactStore::lastModified))
+                .forEach(file -> {
+                    Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                    if (!matcher.matches()) {
+                        return;
+                    }
+                    try {
+                        Artifact artifact = new Artifact(file.getFileName().toString(), file, Files.size(file), null,
+                            lastModified(file));
+                        artifacts.put(artifact.fileName(), artifact);
+                        fileNamesByTaskId.put(Long.parseLong(matcher.group(1)), artifact.fileName());
+                        totalBytes += artifact.sizeBytes();
+                    } catch (IOException e) {
+                        logger.warn("Skipping unreadable export file {}", file, e);
+                    }
+                });
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to index export directory " + directory, e);
+        }
+        logger.info("Indexed {} existing export artifacts ({} bytes)", artifacts.size(), totalBytes);
+        sweep();
+        evictOverQuota(null);
+    }
+
+    private static Instant lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant();
+        } catch (IOException e) {
+            return Instant.EPOCH;
+        }
+    }
+}
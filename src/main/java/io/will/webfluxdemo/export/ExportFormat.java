@@ -0,0 +1,31 @@
+package io.will.webfluxdemo.export;
+
+import io.will.webfluxdemo.model.User;
+
+import java.util.List;
+
+/**
+ * Encoding used to produce export files.
+ * An export file is laid out as {@code header, chunk*, footer}, where every chunk is
+ * the output of one {@link #encode(List)} call. Chunks must be self-contained so that
+ * partitions encoded concurrently can simply be concatenated in order.
+ */
+public interface ExportFormat {
+
+    /**
+     * Name used to select this format via the {@code format} request parameter.
+     */
+    String name();
+
+    String fileExtension();
+
+    default byte[] header() {
+        return new byte[0];
+    }
+
+    byte[] encode(List<User> users);
+
+    default byte[] footer() {
+        return new byte[0];
+    }
+}
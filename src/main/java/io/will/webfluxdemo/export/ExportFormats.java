@@ -0,0 +1,36 @@
+package io.will.webfluxdemo.export;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Registry of all {@link ExportFormat} beans, keyed by format name.
+ * New formats are picked up by declaring another {@code ExportFormat} component.
+ */
+@Component
+public class ExportFormats {
+
+    public static final String DEFAULT_FORMAT = "csv";
+
+    private final Map<String, ExportFormat> formats;
+
+    public ExportFormats(List<ExportFormat> formats) {
+        this.formats = formats.stream()
+            .collect(Collectors.toUnmodifiableMap(ExportFormat::name, Function.identity()));
+    }
+
+    public ExportFormat resolve(String name) {
+        String key = name == null || name.isBlank() ? DEFAULT_FORMAT : name.toLowerCase(Locale.ROOT);
+        ExportFormat format = formats.get(key);
+        if (format == null) {
+            throw new IllegalArgumentException("Unsupported export format: " + name
+                + " (supported: " + formats.keySet() + ")");
+        }
+        return format;
+    }
+}
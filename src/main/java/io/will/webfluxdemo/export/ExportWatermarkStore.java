@@ -0,0 +1,102 @@
+package io.will.webfluxdemo.export;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Remembers, per export consumer, the highest modification sequence already exported
+ * (the write-ahead log sequence stamped on each user row as {@code modified_seq}).
+ * Watermarks are kept in a small properties file that is rewritten atomically
+ * on every change, so an incremental export survives restarts.
+ */
+@Component
+public class ExportWatermarkStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportWatermarkStore.class);
+
+    // Below every modification sequence, including the 0 of seed rows
+    public static final long NEVER_EXPORTED = -1L;
+
+    private static final Pattern CONSUMER_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    @Value("${app.export.watermark-file:data/export-watermarks.properties}")
+    private String watermarkFile;
+
+    private final Map<String, Long> watermarks = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void load() {
+        Path path = Paths.get(watermarkFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load export watermarks from " + path, e);
+        }
+        properties.forEach((consumer, value) -> watermarks.put((String) consumer, Long.parseLong((String) value)));
+        logger.info("Loaded {} export watermarks from {}", watermarks.size(), path);
+    }
+
+    /**
+     * Returns the last exported modification sequence for the consumer, or {@link #NEVER_EXPORTED}.
+     */
+    public long get(String consumerId) {
+        return watermarks.getOrDefault(validate(consumerId), NEVER_EXPORTED);
+    }
+
+    /**
+     * Moves the consumer's watermark forward; a lower sequence never rewinds it.
+     */
+    public synchronized void advance(String consumerId, long lastExportedSequence) {
+        Long previous = watermarks.get(validate(consumerId));
+        if (previous != null && previous >= lastExportedSequence) {
+            return;
+        }
+        watermarks.put(consumerId, lastExportedSequence);
+        persist();
+        logger.info("Export watermark for consumer {} advanced to {}", consumerId, lastExportedSequence);
+    }
+
+    public static String validate(String consumerId) {
+        if (consumerId == null || !CONSUMER_ID.matcher(consumerId).matches()) {
+            throw new IllegalArgumentException("Consumer id must match " + CONSUMER_ID.pattern());
+        }
+        return consumerId;
+    }
+
+    private void persist() {
+        Path path = Paths.get(watermarkFile);
+        Properties properties = new Properties();
+        watermarks.forEach((consumer, value) -> properties.setProperty(consumer, Long.toString(value)));
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp)) {
+                properties.store(writer, "Export watermarks: consumer = last exported modification sequence");
+            }
+            // Readers never see a half-written file
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to persist export watermarks to " + path, e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package io.will.webfluxdemo.export;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Writes an export file through a {@link MappedByteBuffer}.
+ * The file is mapped in large regions ({@code growthChunkBytes}) so growing it costs one
+ * mmap per region instead of one write syscall per batch; on close the file is truncated
+ * to the bytes actually written.
+ *
+ * Not thread-safe: one writer produces one file.
+ */
+public class MappedExportWriter implements AutoCloseable {
+
+    /**
+     * When written data is forced to the storage device.
+     */
+    public enum Durability {
+        /** fsync after every {@link #endBatch()} - a crash loses at most the current batch */
+        PER_BATCH,
+        /** fsync once when the file is closed */
+        PER_FILE,
+        /** leave flushing to the OS page cache */
+        NEVER;
+
+        public static Durability fromString(String value) {
+            try {
+                return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Unsupported export durability mode: " + value);
+            }
+        }
+    }
+
+    private final FileChannel channel;
+    private final long growthChunkBytes;
+    private final Durability durability;
+
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long batchStart;
+    private long position;
+    private boolean closed;
+
+    public MappedExportWriter(Path path, long growthChunkBytes, Durability durability) throws IOException {
+        if (growthChunkBytes <= 0 || growthChunkBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Growth chunk must be between 1 byte and 2GB");
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.growthChunkBytes = growthChunkBytes;
+        this.durability = durability;
+    }
+
+    public void write(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (region == null || !region.hasRemaining()) {
+                mapNextRegion();
+            }
+            int length = Math.min(region.remaining(), bytes.length - offset);
+            region.put(bytes, offset, length);
+            offset += length;
+            position += length;
+        }
+    }
+
+    /**
+     * Marks the end of a logical batch, forcing it to disk in {@link Durability#PER_BATCH} mode.
+     */
+    public void endBatch() {
+        if (durability == Durability.PER_BATCH && region != null) {
+            forceBatch();
+        }
+        batchStart = position;
+    }
+
+    public long size() {
+        return position;
+    }
+
+    /**
+     * Flushes according to the durability mode and trims the file to its written size.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (region != null && durability != Durability.NEVER) {
+                region.force();
+            }
+            // Drop our reference so the mapping can be released; the file can be truncated while
+            // still mapped on Linux/macOS since nothing touches the region past this point
+            region = null;
+            channel.truncate(position);
+            if (durability != Durability.NEVER) {
+                channel.force(true);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void mapNextRegion() throws IOException {
+        if (region != null && durability == Durability.PER_BATCH) {
+            // Unmapping doesn't lose dirty pages, they stay in the page cache for close's fsync;
+            // but endBatch only sees the next region, so the batch's part in this one is forced now
+            forceBatch();
+        }
+        regionStart = position;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, growthChunkBytes);
+    }
+
+    /**
+     * Forces the current batch's bytes within the current region.
+     */
+    private void forceBatch() {
+        long from = Math.max(batchStart, regionStart);
+        if (position > from) {
+            region.force((int) (from - regionStart), (int) (position - from));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package io.will.webfluxdemo.export;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.will.webfluxdemo.model.User;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * Newline-delimited JSON, one user object per line.
+ */
+@Component
+public class NdjsonExportFormat implements ExportFormat {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public String name() {
+        return "ndjson";
+    }
+
+    @Override
+    public String fileExtension() {
+        return "ndjson";
+    }
+
+    @Override
+    public byte[] encode(List<User> users) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(users.size() * 80);
+        try {
+            for (User user : users) {
+                out.writeBytes(objectMapper.writeValueAsBytes(user));
+                out.write('\n');
+            }
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to encode users as NDJSON", e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,65 +1,9 @@
 package io.will.webfluxdemo.model;
 
-import java.util.Objects;
-
-public class User {
-    private Long id;
-    private String name;
-    private String email;
-
-    public User() {}
-
-    public User(Long id, String name, String email) {
-        this.id = id;
-        this.name = name;
-        this.email = email;
-    }
-
-    public Long getId() {
-        return id;
-    }
-
-    public void setId(Long id) {
-        this.id = id;
-    }
-
-    public String getName() {
-        return name;
-    }
-
-    public void setName(String name) {
-        this.name = name;
-    }
-
-    public String getEmail() {
-        return email;
-    }
-
-    public void setEmail(String email) {
-        this.email = email;
-    }
-
-    @Override
-    public String toString() {
-        return "User{" +
-                "id=" + id +
-                ", name='" + name + '\'' +
-                ", email='" + email + '\'' +
-                '}';
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        User user = (User) o;
-        return Objects.equals(id, user.id) &&
-                Objects.equals(name, user.name) &&
-                Objects.equals(email, user.email);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(id, name, email);
-    }
-} 
\ No newline at end of file
+/**
+ * A user as stored, exported and served as JSON.
+ * Ids are chosen by the client. The id is a wrapper so a create without one can be told apart
+ * and rejected with 400, like a create without a name or email.
+ */
+public record User(Long id, String name, String email) {
+}
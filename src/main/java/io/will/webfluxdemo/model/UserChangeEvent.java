@@ -0,0 +1,15 @@
+package io.will.webfluxdemo.model;
+
+import java.time.Instant;
+
+/**
+ * A user mutation as published on {@code /api/users/changes}.
+ * The sequence is the mutation's write-ahead log sequence, so it keeps increasing across restarts.
+ * A RESYNC event means earlier changes are no longer retained and the client should reload.
+ */
+public record UserChangeEvent(long sequence, Type type, Long userId, User user, Instant timestamp) {
+
+    public enum Type {
+        CREATED, DELETED, RESYNC
+    }
+}
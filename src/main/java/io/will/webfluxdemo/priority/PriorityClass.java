@@ -0,0 +1,47 @@
+package io.will.webfluxdemo.priority;
+
+import reactor.util.context.ContextView;
+
+import java.util.Locale;
+
+/**
+ * How urgently a piece of work should be served, from most to least urgent.
+ *
+ * - INTERACTIVE: user-facing reads and writes, e.g. {@code GET /api/users/{id}}.
+ * - BATCH: exports requested by a client, which wait for the result but take seconds anyway.
+ * - BACKGROUND: work nobody waits on, e.g. scheduled exports.
+ *
+ * The class travels in the Reactor context under {@link #CONTEXT_KEY}; work without one
+ * (internal flushes, startup loading) runs as BATCH.
+ */
+public enum PriorityClass {
+
+    INTERACTIVE,
+    BATCH,
+    BACKGROUND;
+
+    public static final String CONTEXT_KEY = "priorityClass";
+
+    public static PriorityClass from(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, BATCH);
+    }
+
+    public static PriorityClass fromString(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown priority class: " + value);
+        }
+    }
+
+    /**
+     * The less urgent of this class and {@code other}.
+     */
+    public PriorityClass leastUrgent(PriorityClass other) {
+        return compareTo(other) >= 0 ? this : other;
+    }
+
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,262 @@
+package io.will.webfluxdemo.priority;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Separate schedulers, and weighted access to the database, per {@link PriorityClass}.
+ *
+ * - Each class runs its blocking work on its own bounded elastic scheduler, so a burst of
+ *   exports can't take the threads interactive requests need.
+ * - At most {@code slots} database operations (one per pooled connection) run at once. When
+ *   they are all busy, freed slots go to waiting classes in proportion to their weights, and
+ *   {@code interactive-reserved} slots are only ever given to INTERACTIVE work, so exports
+ *   can never starve interactive requests.
+ * - Queue wait, running and waiting operations are published per class as {@code priority.*} metrics.
+ */
+@Component
+public class PrioritySchedulers {
+
+    @Value("${app.priority.slots:10}")
+    private int slots;
+
+    @Value("${app.priority.interactive-reserved:3}")
+    private int interactiveReserved;
+
+    // Share of contended slots each class gets
+    @Value("${app.priority.interactive.weight:8}")
+    private int interactiveWeight;
+
+    @Value("${app.priority.batch.weight:3}")
+    private int batchWeight;
+
+    @Value("${app.priority.background.weight:1}")
+    private int backgroundWeight;
+
+    @Value("${app.priority.interactive.threads:16}")
+    private int interactiveThreads;
+
+    @Value("${app.priority.batch.threads:8}")
+    private int batchThreads;
+
+    @Value("${app.priority.background.threads:2}")
+    private int backgroundThreads;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<PriorityClass, Lane> lanes = new EnumMap<>(PriorityClass.class);
+
+    private record Waiter(Lane lane, MonoSink<Slot> sink, long queuedAtNanos) {
+    }
+
+    private record Slot(Lane lane) {
+    }
+
+    private static final class Lane {
+        private final PriorityClass priorityClass;
+        private final Deque<Waiter> waiting = new ArrayDeque<>();
+        private Scheduler scheduler;
+        private Timer queueWait;
+        private int weight;
+        private int running;
+        // Smooth weighted round robin state
+        private int credit;
+
+        private Lane(PriorityClass priorityClass) {
+            this.priorityClass = priorityClass;
+        }
+    }
+
+    public PrioritySchedulers(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        for (PriorityClass priorityClass : PriorityClass.values()) {
+            Lane lane = new Lane(priorityClass);
+            lane.weight = Math.max(1, switch (priorityClass) {
+                case INTERACTIVE -> interactiveWeight;
+                case BATCH -> batchWeight;
+                case BACKGROUND -> backgroundWeight;
+            });
+            int threadCap = Math.max(1, switch (priorityClass) {
+                case INTERACTIVE -> interactiveThreads;
+                case BATCH -> batchThreads;
+                case BACKGROUND -> backgroundThreads;
+            });
+            lane.scheduler = Schedulers.newBoundedElastic(threadCap,
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "priority-" + priorityClass.tag());
+            lane.queueWait = Timer.builder("priority.queue.wait")
+                .description("Time database operations waited for a slot")
+                .tag("class", priorityClass.tag())
+                .register(meterRegistry);
+            Gauge.builder("priority.running", lane, l -> running(l.priorityClass))
+                .tag("class", priorityClass.tag())
+                .register(meterRegistry);
+            Gauge.builder("priority.queued", lane, l -> queued(l.priorityClass))
+                .tag("class", priorityClass.tag())
+                .register(meterRegistry);
+            lanes.put(priorityClass, lane);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        lanes.values().forEach(lane -> lane.scheduler.dispose());
+    }
+
+    public Scheduler scheduler(PriorityClass priorityClass) {
+        return lanes.get(priorityClass).scheduler;
+    }
+
+    /**
+     * Runs a database operation on the caller's class scheduler once a slot is free,
+     * holding the slot until the operation terminates or is cancelled.
+     */
+    public <T> Mono<T> schedule(Mono<T> work) {
+        return Mono.deferContextual(context -> {
+            Lane lane = lanes.get(PriorityClass.from(context));
+            return Mono.usingWhen(acquire(lane),
+                slot -> work.subscribeOn(lane.scheduler),
+                this::release);
+        });
+    }
+
+    /**
+     * Runs a multi-row query a page at a time, each page read in full under its own slot and
+     * released before its rows go downstream, so a slow consumer holds no slot. At most one
+     * page is read ahead of the consumer.
+     *
+     * @param start key to read the first page after
+     * @param page  up to {@code pageSize} rows after the given key, in key order
+     * @param key   the key of a row, to read the next page after the last one
+     */
+    public <T, K> Flux<T> schedulePages(K start, Function<K, Flux<T>> page, Function<T, K> key, int pageSize) {
+        return readPage(page, start)
+            .expand(rows -> rows.size() < pageSize
+                ? Mono.empty()
+                : readPage(page, key.apply(rows.get(rows.size() - 1))))
+            .concatMapIterable(rows -> rows, 1);
+    }
+
+    /**
+     * The page read ahead is subscribed to before anyone asks for it; cache() requests it
+     * regardless, so the slot is released as soon as it is read rather than when it is consumed.
+     */
+    private <T, K> Mono<List<T>> readPage(Function<K, Flux<T>> page, K after) {
+        return schedule(Mono.defer(() -> page.apply(after).collectList())).cache();
+    }
+
+    /**
+     * Moves the rest of a pipeline (blocking I/O, heavy encoding) onto the caller's class scheduler.
+     */
+    public <T> Mono<T> publishOn(Mono<T> work) {
+        return Mono.deferContextual(context -> work.publishOn(scheduler(PriorityClass.from(context))));
+    }
+
+    public <T> Flux<T> publishOn(Flux<T> work) {
+        return Flux.deferContextual(context -> work.publishOn(scheduler(PriorityClass.from(context))));
+    }
+
+    public synchronized int running(PriorityClass priorityClass) {
+        return lanes.get(priorityClass).running;
+    }
+
+    public synchronized int queued(PriorityClass priorityClass) {
+        return lanes.get(priorityClass).waiting.size();
+    }
+
+    private Mono<Slot> acquire(Lane lane) {
+        return Mono.<Slot>create(sink -> {
+            synchronized (this) {
+                if (!lane.waiting.isEmpty() || !hasRoom(lane)) {
+                    Waiter waiter = new Waiter(lane, sink, System.nanoTime());
+                    lane.waiting.addLast(waiter);
+                    sink.onCancel(() -> {
+                        synchronized (this) {
+                            lane.waiting.remove(waiter);
+                        }
+                    });
+                    return;
+                }
+                lane.running++;
+            }
+            lane.queueWait.record(Duration.ZERO);
+            sink.success(new Slot(lane));
+        })
+        // A slot granted just as the caller cancelled is handed back
+        .doOnDiscard(Slot.class, slot -> release(slot).subscribe());
+    }
+
+    private Mono<Void> release(Slot slot) {
+        return Mono.fromRunnable(() -> {
+            List<Waiter> granted = new ArrayList<>();
+            synchronized (this) {
+                slot.lane().running--;
+                Lane next;
+                while ((next = nextLane()) != null) {
+                    next.running++;
+                    granted.add(next.waiting.pollFirst());
+                }
+            }
+            long now = System.nanoTime();
+            for (Waiter waiter : granted) {
+                waiter.lane().queueWait.record(Duration.ofNanos(now - waiter.queuedAtNanos()));
+                waiter.sink().success(new Slot(waiter.lane()));
+            }
+        });
+    }
+
+    /**
+     * Called with the lock held: the waiting class to give a free slot to, if any.
+     */
+    private Lane nextLane() {
+        Lane best = null;
+        int totalWeight = 0;
+        for (Lane lane : lanes.values()) {
+            if (lane.waiting.isEmpty() || !hasRoom(lane)) {
+                continue;
+            }
+            lane.credit += lane.weight;
+            totalWeight += lane.weight;
+            if (best == null || lane.credit > best.credit) {
+                best = lane;
+            }
+        }
+        if (best != null) {
+            best.credit -= totalWeight;
+        }
+        return best;
+    }
+
+    private boolean hasRoom(Lane lane) {
+        int interactive = lanes.get(PriorityClass.INTERACTIVE).running;
+        int total = 0;
+        for (Lane each : lanes.values()) {
+            total += each.running;
+        }
+        if (total >= slots) {
+            return false;
+        }
+        return lane.priorityClass == PriorityClass.INTERACTIVE || total - interactive < slots - interactiveReserved;
+    }
+}
@@ -0,0 +1,43 @@
+package io.will.webfluxdemo.priority;
+
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Assigns each request a {@link PriorityClass} and puts it in the Reactor context.
+ *
+ * - Export endpoints and the export WebSocket are BATCH, everything else is INTERACTIVE.
+ * - An {@code X-Priority} header may lower the class (e.g. a nightly job calling an
+ *   export endpoint marks itself BACKGROUND) but never raise it, so exports can't jump
+ *   ahead of interactive requests.
+ */
+public class PriorityWebFilter implements WebFilter {
+
+    public static final String HEADER = "X-Priority";
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        PriorityClass priorityClass = byRoute(exchange.getRequest().getPath().value());
+        String requested = exchange.getRequest().getHeaders().getFirst(HEADER);
+        if (requested != null) {
+            try {
+                priorityClass = priorityClass.leastUrgent(PriorityClass.fromString(requested));
+            } catch (IllegalArgumentException e) {
+                // An unknown class is ignored rather than failing the request
+            }
+        }
+        exchange.getAttributes().put(PriorityClass.CONTEXT_KEY, priorityClass);
+        return chain.filter(exchange)
+                .contextWrite(Context.of(PriorityClass.CONTEXT_KEY, priorityClass));
+    }
+
+    static PriorityClass byRoute(String path) {
+        if (path.startsWith("/api/users/export") || path.equals("/ws/exports")) {
+            return PriorityClass.BATCH;
+        }
+        return PriorityClass.INTERACTIVE;
+    }
+}
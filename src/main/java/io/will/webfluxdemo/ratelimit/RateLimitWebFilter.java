@@ -0,0 +1,83 @@
+package io.will.webfluxdemo.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * Rate limits {@code /api/**} per client remote address.
+ * Allowed requests carry X-RateLimit-Limit and X-RateLimit-Remaining; rejected ones get
+ * 429 with Retry-After, without reaching security-protected handlers or the database.
+ * Runs at {@link #ORDER}, ahead of Spring Security, so a flood of requests with missing or
+ * wrong credentials is throttled before each one pays for a password check.
+ */
+public class RateLimitWebFilter implements WebFilter {
+
+    /**
+     * Before Spring Security's WebFilterChainProxy, which runs at -100.
+     */
+    public static final int ORDER = -200;
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitWebFilter.class);
+
+    private final TokenBucketRateLimiter rateLimiter;
+
+    public RateLimitWebFilter(TokenBucketRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!exchange.getRequest().getPath().value().startsWith("/api/")) {
+            return chain.filter(exchange);
+        }
+        // Not authenticated yet at this point, so the address is all there is to go by
+        String client = remoteAddress(exchange);
+        TokenBucketRateLimiter.Decision decision = rateLimiter.tryAcquire(client);
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        headers.set("X-RateLimit-Limit", Long.toString(rateLimiter.capacity()));
+        headers.set("X-RateLimit-Remaining", Long.toString(decision.remaining()));
+        if (decision.allowed()) {
+            return chain.filter(exchange);
+        }
+        logger.warn("Rate limit exceeded for {} on {}", client, exchange.getRequest().getPath().value());
+        return reject(exchange, decision);
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, TokenBucketRateLimiter.Decision decision) {
+        ServerHttpResponse response = exchange.getResponse();
+        // Whole seconds, rounded up, so a client that waits this long is admitted
+        long retryAfterSeconds = Math.max(1, (decision.retryAfter().toMillis() + 999) / 1000);
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+        String requestId = (String) exchange.getAttributes().get("requestId");
+        String body = "{\"timestamp\":\"" + LocalDateTime.now() + "\""
+                + ",\"path\":\"" + exchange.getRequest().getPath().value() + "\""
+                + ",\"method\":\"" + exchange.getRequest().getMethod().name() + "\""
+                + ",\"status\":429,\"error\":\"Too Many Requests\""
+                + ",\"message\":\"Rate limit exceeded, retry after " + retryAfterSeconds + "s\""
+                + (requestId != null ? ",\"requestId\":\"" + requestId + "\"" : "")
+                + "}";
+        DataBuffer buffer = response.bufferFactory().wrap(body.getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(buffer));
+    }
+
+    private static String remoteAddress(ServerWebExchange exchange) {
+        return exchange.getRequest().getRemoteAddress() != null
+                ? exchange.getRequest().getRemoteAddress().getAddress().getHostAddress()
+                : "unknown";
+    }
+}
@@ -0,0 +1,81 @@
+package io.will.webfluxdemo.ratelimit;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets per client key, without locks.
+ *
+ * - Each bucket holds {@code capacity} tokens and refills at {@code refillPerSecond}.
+ * - A bucket is a single {@code AtomicLong}: the time at which it will be full again
+ *   (the GCRA form of a token bucket), so acquiring is one compare-and-set.
+ *   The buckets live in a ConcurrentHashMap, whose bins are locked independently.
+ * - Buckets that have been full for {@code idleTimeout} are evicted, at most once per
+ *   idle timeout, by whichever caller notices the sweep is due.
+ */
+public class TokenBucketRateLimiter {
+
+    public record Decision(boolean allowed, long remaining, Duration retryAfter) {
+    }
+
+    private final long capacity;
+    private final long refillIntervalNanos;
+    private final long burstNanos;
+    private final long idleNanos;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep;
+
+    public TokenBucketRateLimiter(long capacity, double refillPerSecond, Duration idleTimeout) {
+        this(capacity, refillPerSecond, idleTimeout, System::nanoTime);
+    }
+
+    TokenBucketRateLimiter(long capacity, double refillPerSecond, Duration idleTimeout, LongSupplier clock) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate limit capacity and refill rate must be positive");
+        }
+        this.capacity = capacity;
+        this.refillIntervalNanos = Math.max(1, (long) (1_000_000_000L / refillPerSecond));
+        this.burstNanos = refillIntervalNanos * capacity;
+        this.idleNanos = idleTimeout.toNanos();
+        this.clock = clock;
+        this.nextSweep = new AtomicLong(clock.getAsLong() + idleNanos);
+    }
+
+    public Decision tryAcquire(String key) {
+        long now = clock.getAsLong();
+        sweepIfDue(now);
+        // A new bucket is full: it would have been full already at "now"
+        AtomicLong fullAt = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        while (true) {
+            long current = fullAt.get();
+            long next = (current - now > 0 ? current : now) + refillIntervalNanos;
+            long debt = next - now;
+            if (debt > burstNanos) {
+                return new Decision(false, 0, Duration.ofNanos(debt - burstNanos));
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return new Decision(true, (burstNanos - debt) / refillIntervalNanos, Duration.ZERO);
+            }
+        }
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private void sweepIfDue(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + idleNanos)) {
+            return;
+        }
+        // A client racing with its own eviction at worst gets a fresh, full bucket
+        buckets.values().removeIf(fullAt -> now - fullAt.get() > idleNanos);
+    }
+}
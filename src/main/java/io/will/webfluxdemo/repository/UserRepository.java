@@ -0,0 +1,238 @@
+package io.will.webfluxdemo.repository;
+
+import io.r2dbc.spi.Readable;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.priority.PrioritySchedulers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking access to the {@code users} table.
+ *
+ * - All SQL strings are constants with bind markers, so H2's per-session query cache
+ *   reuses the parsed statements; the R2DBC pool keeps sessions (and their caches) alive.
+ * - r2dbc-h2 drives the embedded H2 engine on the subscribing thread, including its file I/O,
+ *   so every query goes through {@link PrioritySchedulers}: it runs on the caller's priority
+ *   class scheduler, off the Netty event loop, once the class is given a database slot.
+ * - Multi-row queries are returned as {@link Flux} but read in keyset pages of
+ *   {@code query-page-size} rows, each under its own slot, so a slow consumer (a paced or
+ *   streamed response) doesn't keep a slot and its pooled connection from everyone else.
+ * - Every write stamps the row with the write-ahead log sequence of the create behind it
+ *   ({@code modified_seq}), and every delete leaves a tombstone in {@code user_deletions} with
+ *   its own sequence; incremental exports read both after a sequence.
+ */
+@Repository
+public class UserRepository {
+
+    private static final String SELECT_PAGE =
+            "SELECT id, name, email FROM users WHERE id > :after AND id <= :last ORDER BY id LIMIT :limit";
+    private static final String SELECT_BY_ID = "SELECT id, name, email FROM users WHERE id = :id";
+    private static final String SELECT_MODIFIED_PAGE =
+            "SELECT id, name, email, modified_seq, FALSE AS deleted FROM users"
+                    + " WHERE modified_seq > :sequence OR (modified_seq = :sequence AND id > :after)"
+                    + " UNION ALL"
+                    + " SELECT id, NULL, NULL, modified_seq, TRUE FROM user_deletions"
+                    + " WHERE modified_seq > :sequence OR (modified_seq = :sequence AND id > :after)"
+                    + " ORDER BY modified_seq, id LIMIT :limit";
+    private static final String UPSERT =
+            "MERGE INTO users (id, name, email, modified_seq) KEY (id) VALUES (:id, :name, :email, :sequence)";
+    private static final String UPSERT_POSITIONAL =
+            "MERGE INTO users (id, name, email, modified_seq) KEY (id) VALUES ($1, $2, $3, $4)";
+    private static final String DELETE_POSITIONAL = "DELETE FROM users WHERE id = $1";
+    private static final String TOMBSTONE_POSITIONAL =
+            "MERGE INTO user_deletions (id, modified_seq) KEY (id) VALUES ($1, $2)";
+    private static final String COUNT = "SELECT COUNT(*) FROM users";
+    private static final String SELECT_BOUNDS =
+            "SELECT (SELECT COALESCE(MIN(id), 0) FROM users) AS min_id, (SELECT COALESCE(MAX(id), 0) FROM users) AS max_id,"
+                    + " (SELECT COUNT(*) FROM users) AS total,"
+                    + " GREATEST((SELECT COALESCE(MAX(modified_seq), 0) FROM users),"
+                    + " (SELECT COALESCE(MAX(modified_seq), 0) FROM user_deletions)) AS version";
+    private static final String CHECKPOINT = "CHECKPOINT SYNC";
+
+    /**
+     * A user as written by the write-ahead log entry with {@code sequence}, or if {@code deleted},
+     * the user (id only) it deleted.
+     */
+    public record Modification(long sequence, User user, boolean deleted) {
+
+        public Modification(long sequence, User user) {
+            this(sequence, user, false);
+        }
+    }
+
+    /**
+     * The lowest and highest user id (both 0 if there are none), the number of users, and the highest
+     * write sequence of any user or tombstone: it only grows, so while it is unchanged so is the table.
+     */
+    public record Bounds(long minId, long maxId, long count, long version) {
+    }
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private PrioritySchedulers prioritySchedulers;
+
+    @Value("${app.users.query-page-size:1000}")
+    private int pageSize;
+
+    /**
+     * All users, in id order.
+     */
+    public Flux<User> findAll() {
+        return findByIdRange(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Users with {@code after < id <= last}, in id order.
+     */
+    public Flux<User> findByIdRange(long after, long last) {
+        return prioritySchedulers.schedulePages(after,
+                from -> databaseClient.sql(SELECT_PAGE)
+                        .bind("after", from)
+                        .bind("last", last)
+                        .bind("limit", pageSize)
+                        .map(UserRepository::toUser)
+                        .all(),
+                User::id, pageSize);
+    }
+
+    public Mono<User> findById(Long id) {
+        return databaseClient.sql(SELECT_BY_ID)
+                .bind("id", id)
+                .map(UserRepository::toUser)
+                .one()
+                .transform(prioritySchedulers::schedule);
+    }
+
+    /**
+     * Users inserted, updated or deleted after {@code sequence}, in sequence order, used for incremental exports.
+     * Flushes commit in sequence order, so no lower sequence can show up after a higher one was read.
+     */
+    public Flux<Modification> findModifiedAfter(long sequence) {
+        // Seed rows share sequence 0, so pages are keyed by (sequence, id)
+        return prioritySchedulers.schedulePages(new Modification(sequence, new User(Long.MAX_VALUE, null, null)),
+                after -> databaseClient.sql(SELECT_MODIFIED_PAGE)
+                        .bind("sequence", after.sequence())
+                        .bind("after", after.user().id())
+                        .bind("limit", pageSize)
+                        .map(row -> new Modification(row.get("modified_seq", Long.class), toUser(row),
+                                Boolean.TRUE.equals(row.get("deleted", Boolean.class))))
+                        .all(),
+                modification -> modification, pageSize);
+    }
+
+    /**
+     * Inserts the user, or replaces the existing user with the same id.
+     */
+    public Mono<User> save(User user, long sequence) {
+        if (user.id() == null) {
+            return Mono.error(new IllegalArgumentException("User id is required"));
+        }
+        return databaseClient.sql(UPSERT)
+                .bind("id", user.id())
+                .bind("name", user.name())
+                .bind("email", user.email())
+                .bind("sequence", sequence)
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(user)
+                .transform(prioritySchedulers::schedule);
+    }
+
+    /**
+     * Upserts all users as one batched statement in a single transaction.
+     *
+     * @return the number of rows written
+     */
+    public Mono<Long> saveAll(List<Modification> modifications) {
+        if (modifications.isEmpty()) {
+            return Mono.just(0L);
+        }
+        for (Modification modification : modifications) {
+            if (modification.user().id() == null) {
+                return Mono.error(new IllegalArgumentException("User id is required"));
+            }
+        }
+        return databaseClient.inConnection(connection -> {
+            Statement statement = connection.createStatement(UPSERT_POSITIONAL);
+            for (int i = 0; i < modifications.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                User user = modifications.get(i).user();
+                statement.bind(0, user.id())
+                        .bind(1, user.name())
+                        .bind(2, user.email())
+                        .bind(3, modifications.get(i).sequence());
+            }
+            Mono<Long> rowsWritten = Flux.from(statement.execute())
+                    .flatMap(Result::getRowsUpdated)
+                    .reduce(0L, Long::sum);
+            return Mono.from(connection.beginTransaction())
+                    .then(rowsWritten)
+                    .flatMap(rows -> Mono.from(connection.commitTransaction()).thenReturn(rows))
+                    .onErrorResume(e -> Mono.from(connection.rollbackTransaction()).then(Mono.error(e)));
+        }).transform(prioritySchedulers::schedule);
+    }
+
+    /**
+     * Deletes the user and records a tombstone with the delete's {@code sequence}, in one transaction.
+     *
+     * @return true if a user was deleted
+     */
+    public Mono<Boolean> deleteById(Long id, long sequence) {
+        return databaseClient.inConnection(connection -> {
+            Mono<Boolean> deleted = Flux.from(connection.createStatement(DELETE_POSITIONAL).bind(0, id).execute())
+                    .flatMap(Result::getRowsUpdated)
+                    .reduce(0L, Long::sum)
+                    .flatMap(rows -> rows == 0 ? Mono.just(false)
+                            : Flux.from(connection.createStatement(TOMBSTONE_POSITIONAL)
+                                            .bind(0, id)
+                                            .bind(1, sequence)
+                                            .execute())
+                                    .flatMap(Result::getRowsUpdated)
+                                    .then(Mono.just(true)));
+            return Mono.from(connection.beginTransaction())
+                    .then(deleted)
+                    .flatMap(existed -> Mono.from(connection.commitTransaction()).thenReturn(existed))
+                    .onErrorResume(e -> Mono.from(connection.rollbackTransaction()).then(Mono.error(e)));
+        }).transform(prioritySchedulers::schedule);
+    }
+
+    public Mono<Bounds> findBounds() {
+        return databaseClient.sql(SELECT_BOUNDS)
+                .map(row -> new Bounds(row.get("min_id", Long.class), row.get("max_id", Long.class),
+                        row.get("total", Long.class), row.get("version", Long.class)))
+                .one()
+                .transform(prioritySchedulers::schedule);
+    }
+
+    public Mono<Long> count() {
+        return databaseClient.sql(COUNT)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .transform(prioritySchedulers::schedule);
+    }
+
+    /**
+     * Forces committed changes to disk; H2 otherwise writes them in the background.
+     */
+    public Mono<Void> checkpoint() {
+        return databaseClient.sql(CHECKPOINT)
+                .then()
+                .transform(prioritySchedulers::schedule);
+    }
+
+    private static User toUser(Readable row) {
+        return new User(row.get("id", Long.class), row.get("name", String.class), row.get("email", String.class));
+    }
+}
@@ -0,0 +1,429 @@
+package io.will.webfluxdemo.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.will.webfluxdemo.model.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of user mutations that have been acknowledged but may not be in the database yet.
+ *
+ * - Records are {@code [length][crc32][operation][sequence][payload]}; replay stops at the first
+ *   torn or corrupt record, and the log is truncated there before new appends. A torn tail of
+ *   the last segment is what a crash leaves behind; a bad record anywhere earlier means the
+ *   segments after it can't be trusted either, so they are renamed to {@code .corrupt-<time>}
+ *   and left for inspection instead of being replayed. Sequences found in them are not reused.
+ * - Appends are group-committed: concurrent appends queue up, and a single log thread
+ *   writes everything queued and fsyncs once, so many mutations share one fsync.
+ * - The log is split into segments named after their first sequence number. A
+ *   {@link #checkpoint} records the last sequence known to be durable in the database and
+ *   deletes the segments it fully covers, so startup only replays the tail after it.
+ */
+@Component
+public class UserWriteAheadLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserWriteAheadLog.class);
+
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String QUARANTINE_SUFFIX = ".corrupt";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    public enum Operation {
+        CREATE, DELETE
+    }
+
+    /**
+     * A logged mutation: {@code user} is set for creates, {@code userId} for deletes.
+     */
+    public record Entry(long sequence, Operation operation, User user, Long userId) {
+    }
+
+    @Value("${app.users.write-behind.wal-directory:data/users-wal}")
+    private String walDirectory;
+
+    @Value("${app.users.write-behind.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Queue<PendingAppend> pendingAppends = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    // All file access after startup happens on this single thread
+    private final Scheduler logScheduler = Schedulers.newBoundedElastic(1, Integer.MAX_VALUE, "user-wal");
+
+    // First sequence number of each segment file
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private final List<Entry> recovered = new ArrayList<>();
+
+    private Path directory;
+    private FileChannel segment;
+    private long nextSequence;
+    private long checkpointSequence;
+
+    private record PendingAppend(Operation operation, User user, Long userId, MonoSink<Long> sink) {
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        directory = Paths.get(walDirectory);
+        Files.createDirectories(directory);
+        Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        checkpointSequence = Files.exists(checkpointFile)
+            ? Long.parseLong(Files.readString(checkpointFile).trim())
+            : 0;
+        nextSequence = checkpointSequence + 1;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(UserWriteAheadLog::isSegment)
+                .forEach(file -> segments.put(segmentSequence(file), file));
+        }
+        for (Path file : segments.values()) {
+            long validBytes = readSegment(file);
+            if (validBytes < Files.size(file)) {
+                quarantineFrom(file, validBytes);
+                break;
+            }
+        }
+        if (segments.isEmpty()) {
+            rollSegment();
+        } else {
+            segment = FileChannel.open(segments.lastEntry().getValue(), StandardOpenOption.WRITE);
+            segment.position(segment.size());
+        }
+        logger.info("Opened user write-ahead log at {}: {} segments, checkpoint {}, {} entries to replay",
+            directory, segments.size(), checkpointSequence, recovered.size());
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        logScheduler.dispose();
+        segment.close();
+    }
+
+    /**
+     * Completes with the entry's sequence number once the create is durably on disk.
+     */
+    public Mono<Long> appendCreate(User user) {
+        return append(Operation.CREATE, user, user.id());
+    }
+
+    /**
+     * Completes with the entry's sequence number once the delete is durably on disk.
+     */
+    public Mono<Long> appendDelete(Long userId) {
+        return append(Operation.DELETE, null, userId);
+    }
+
+    /**
+     * Entries logged after the last checkpoint, in sequence order.
+     */
+    public List<Entry> replay() {
+        return List.copyOf(recovered);
+    }
+
+    /**
+     * Sequence of the last logged entry as of startup.
+     */
+    public long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Records that every entry up to {@code sequence} is durable in the database, and
+     * deletes the segments that hold nothing newer.
+     */
+    public Mono<Void> checkpoint(long sequence) {
+        return Mono.<Void>fromRunnable(() -> {
+            if (sequence <= checkpointSequence) {
+                return;
+            }
+            try {
+                Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    channel.write(ByteBuffer.wrap(Long.toString(sequence).getBytes(StandardCharsets.US_ASCII)));
+                    channel.force(true);
+                }
+                Files.move(temp, directory.resolve(CHECKPOINT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                checkpointSequence = sequence;
+                recovered.clear();
+
+                // Start an empty segment when the current one is fully covered, so an idle log is empty
+                if (sequence == nextSequence - 1 && segment.size() > 0) {
+                    rollSegment();
+                }
+                while (segments.size() > 1) {
+                    Long secondFirstSequence = segments.keySet().stream().skip(1).findFirst().orElseThrow();
+                    if (secondFirstSequence - 1 > sequence) {
+                        break;
+                    }
+                    Files.deleteIfExists(segments.pollFirstEntry().getValue());
+                }
+                logger.debug("User write-ahead log checkpointed at {}, {} segments kept", sequence, segments.size());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to checkpoint user write-ahead log", e);
+            }
+        }).subscribeOn(logScheduler);
+    }
+
+    private Mono<Long> append(Operation operation, User user, Long userId) {
+        return Mono.create(sink -> {
+            pendingAppends.add(new PendingAppend(operation, user, userId, sink));
+            if (wip.getAndIncrement() == 0) {
+                logScheduler.schedule(this::drain);
+            }
+        });
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            List<PendingAppend> group = new ArrayList<>();
+            PendingAppend append;
+            while ((append = pendingAppends.poll()) != null) {
+                group.add(append);
+            }
+            if (!group.isEmpty()) {
+                writeGroup(group);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void writeGroup(List<PendingAppend> group) {
+        long firstSequence = nextSequence;
+        long startPosition = -1;
+        try {
+            if (segment.size() >= segmentSize.toBytes()) {
+                rollSegment();
+            }
+            ByteBuffer[] records = new ByteBuffer[group.size()];
+            long remaining = 0;
+            for (int i = 0; i < group.size(); i++) {
+                PendingAppend append = group.get(i);
+                records[i] = encode(firstSequence + i, append.operation(), append.user(), append.userId());
+                remaining += records[i].remaining();
+            }
+            startPosition = segment.position();
+            while (remaining > 0) {
+                remaining -= segment.write(records);
+            }
+            segment.force(false);
+        } catch (IOException e) {
+            rollBack(startPosition);
+            RuntimeException failure = new RuntimeException("Failed to append to user write-ahead log", e);
+            group.forEach(pending -> pending.sink().error(failure));
+            return;
+        }
+        nextSequence += group.size();
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).sink().success(firstSequence + i);
+        }
+    }
+
+    private void rollBack(long position) {
+        if (position < 0) {
+            return;
+        }
+        try {
+            segment.truncate(position);
+            segment.position(position);
+        } catch (IOException e) {
+            logger.error("Failed to roll back partial append to user write-ahead log", e);
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        if (segment != null) {
+            segment.force(true);
+            segment.close();
+        }
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+        segment = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segment.truncate(0);
+        segments.put(nextSequence, file);
+    }
+
+    private ByteBuffer encode(long sequence, Operation operation, User user, Long userId) throws IOException {
+        byte[] payload = operation == Operation.CREATE
+            ? objectMapper.writeValueAsBytes(user)
+            : ByteBuffer.allocate(Long.BYTES).putLong(userId).array();
+        int length = 1 + Long.BYTES + payload.length;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+        record.putInt(length);
+        record.putInt(0);
+        record.put((byte) operation.ordinal());
+        record.putLong(sequence);
+        record.put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_BYTES, length);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        return record.flip();
+    }
+
+    /**
+     * Reads entries after the checkpoint up to the first bad record, returning the number of
+     * bytes before it.
+     */
+    private long readSegment(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            RawRecord record;
+            while ((record = readRecord(channel, position, size)) != null && record.intact()) {
+                ByteBuffer body = record.body();
+                Operation operation = Operation.values()[body.get()];
+                long sequence = body.getLong();
+                if (sequence > checkpointSequence) {
+                    recovered.add(decode(sequence, operation, body));
+                }
+                nextSequence = Math.max(nextSequence, sequence + 1);
+                position += record.size();
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Truncates {@code file} at its bad record and takes every later segment out of the log,
+     * since replaying them would skip over the entries lost there. New appends start above
+     * every sequence still readable in what was dropped, so none is handed out twice.
+     */
+    private void quarantineFrom(Path file, long validBytes) throws IOException {
+        List<Path> later = List.copyOf(segments.tailMap(segmentSequence(file), false).values());
+        long lostSequence = highestSequence(file, validBytes);
+        for (Path laterFile : later) {
+            lostSequence = Math.max(lostSequence, Math.max(segmentSequence(laterFile), highestSequence(laterFile, 0)));
+        }
+
+        if (later.isEmpty() && lostSequence == 0) {
+            logger.warn("Truncating torn records at offset {} of {}", validBytes, file);
+        } else {
+            // Not just a torn tail: keep everything dropped, without overwriting an earlier incident
+            String suffix = quarantineSuffix(file, later);
+            Files.copy(file, file.resolveSibling(file.getFileName() + suffix));
+            for (Path laterFile : later) {
+                Files.move(laterFile, laterFile.resolveSibling(laterFile.getFileName() + suffix));
+                segments.remove(segmentSequence(laterFile));
+            }
+            logger.error("User write-ahead log is corrupt at offset {} of {}; quarantined it and {} later "
+                + "segments as *{}, replaying up to sequence {} and skipping sequences up to {}",
+                validBytes, file, later.size(), suffix, nextSequence - 1, lostSequence);
+            nextSequence = Math.max(nextSequence, lostSequence + 1);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(validBytes);
+            channel.force(true);
+        }
+    }
+
+    private static String quarantineSuffix(Path file, List<Path> later) {
+        long stamp = System.currentTimeMillis();
+        while (true) {
+            String suffix = QUARANTINE_SUFFIX + "-" + stamp;
+            if (Stream.concat(Stream.of(file), later.stream())
+                    .noneMatch(path -> Files.exists(path.resolveSibling(path.getFileName() + suffix)))) {
+                return suffix;
+            }
+            stamp++;
+        }
+    }
+
+    /**
+     * Highest sequence among the intact records from {@code position} on, stepping over
+     * corrupt ones as long as their length is readable; 0 if there is none.
+     */
+    private static long highestSequence(Path file, long position) throws IOException {
+        long highest = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            RawRecord record;
+            while ((record = readRecord(channel, position, size)) != null) {
+                if (record.intact()) {
+                    highest = Math.max(highest, record.body().getLong(1));
+                }
+                position += record.size();
+            }
+        }
+        return highest;
+    }
+
+    /**
+     * The record at {@code position}, or null if its length is torn or out of range.
+     */
+    private static RawRecord readRecord(FileChannel channel, long position, long size) throws IOException {
+        if (position + HEADER_BYTES > size) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, position);
+        int length = header.getInt(0);
+        if (length < 1 + Long.BYTES || position + HEADER_BYTES + length > size) {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        channel.read(body, position + HEADER_BYTES);
+        return new RawRecord(header.getInt(Integer.BYTES), body.flip());
+    }
+
+    private record RawRecord(int checksum, ByteBuffer body) {
+
+        boolean intact() {
+            CRC32 crc = new CRC32();
+            crc.update(body.array());
+            return (int) crc.getValue() == checksum;
+        }
+
+        int size() {
+            return HEADER_BYTES + body.capacity();
+        }
+    }
+
+    private Entry decode(long sequence, Operation operation, ByteBuffer body) throws IOException {
+        if (operation == Operation.CREATE) {
+            User user = objectMapper.readValue(body.array(), body.position(), body.remaining(), User.class);
+            return new Entry(sequence, operation, user, user.id());
+        }
+        return new Entry(sequence, operation, null, body.getLong());
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long segmentSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,236 @@
+package io.will.webfluxdemo.search;
+
+import io.will.webfluxdemo.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory search index over user names and emails.
+ *
+ * - Names and emails are split into lowercase alphanumeric tokens; each token maps to
+ *   the ids of the users containing it, weighted by field (name above email).
+ * - Tokens are kept in a sorted map, so a prefix lookup is a range scan over the
+ *   tokens starting with it, like walking a trie, and reads never take a lock.
+ * - Every query token must match a user: all but the last exactly, the last one (possibly
+ *   still being typed) exactly or as a prefix. Exact matches rank above prefix matches,
+ *   ties are broken by id.
+ * - The rarest exact token drives the intersection; the other tokens are looked up per
+ *   candidate, so a common token costs no more than the candidates it is checked for.
+ * - Each user's tokens are kept next to it from {@code add}, so matching a candidate never
+ *   re-tokenizes its name and email.
+ * - A prefix scan stops once the remaining tokens can no longer beat the results found, and
+ *   no query examines more than {@code app.search.max-candidates} postings; past that the
+ *   results are the best among those examined.
+ * - Updated incrementally on create and delete, so queries never touch the database.
+ */
+@Component
+public class UserSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int NAME_WEIGHT = 2;
+    private static final int EMAIL_WEIGHT = 1;
+    private static final int EXACT_MATCH_BOOST = 2;
+
+    @Value("${app.search.max-candidates:10000}")
+    private int maxCandidates = 10_000;
+
+    private final Map<Long, Indexed> users = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+
+    private record Indexed(User user, Map<String, Integer> tokens) {
+    }
+
+    private record Scored(User user, int score) {
+    }
+
+    private record PrefixMatch(String firstToken, int score) {
+    }
+
+    /**
+     * Indexes every user from {@code source}, e.g. the repository at startup.
+     */
+    public Mono<Void> load(Flux<User> source) {
+        return source.doOnNext(this::add)
+            .count()
+            .doOnNext(count -> logger.info("Indexed {} users for search, {} distinct tokens", count, postings.size()))
+            .then();
+    }
+
+    /**
+     * Adds the user, replacing the entry of an existing user with the same id.
+     */
+    public synchronized void add(User user) {
+        remove(user.id());
+        Map<String, Integer> tokens = tokens(user);
+        users.put(user.id(), new Indexed(user, tokens));
+        tokens.forEach((token, weight) ->
+            postings.computeIfAbsent(token, key -> new ConcurrentHashMap<>()).put(user.id(), weight));
+    }
+
+    public synchronized void remove(Long id) {
+        Indexed indexed = users.remove(id);
+        if (indexed == null) {
+            return;
+        }
+        indexed.tokens().keySet().forEach(token ->
+            postings.computeIfPresent(token, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            }));
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    /**
+     * Users matching every token of {@code query}, best match first.
+     */
+    public List<User> search(String query, int limit) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return List.of();
+        }
+        // Only the last token may still be being typed
+        String prefix = queryTokens.get(queryTokens.size() - 1);
+        List<Map<Long, Integer>> exact = new ArrayList<>();
+        for (String token : queryTokens.subList(0, queryTokens.size() - 1)) {
+            Map<Long, Integer> ids = postings.get(token);
+            if (ids == null) {
+                return List.of();
+            }
+            exact.add(ids);
+        }
+        exact.sort(Comparator.comparingInt(Map::size));
+
+        // Keep only the top results instead of sorting every match
+        Comparator<Scored> ranking = Comparator.comparingInt(Scored::score).reversed()
+            .thenComparing(scored -> scored.user().id());
+        PriorityQueue<Scored> top = new PriorityQueue<>(ranking.reversed());
+        if (exact.isEmpty()) {
+            collectPrefixMatches(prefix, top, limit);
+        } else {
+            collectIntersection(exact, prefix, top, limit);
+        }
+        List<Scored> ranked = new ArrayList<>(top);
+        ranked.sort(ranking);
+        return ranked.stream().map(Scored::user).toList();
+    }
+
+    /**
+     * Walks the smallest posting list and looks each user up in the larger ones, smallest first,
+     * then checks the prefix against the user's own tokens.
+     */
+    private void collectIntersection(List<Map<Long, Integer>> exact, String prefix, PriorityQueue<Scored> top, int limit) {
+        int examined = 0;
+        candidates:
+        for (Map.Entry<Long, Integer> candidate : exact.get(0).entrySet()) {
+            if (++examined > maxCandidates) {
+                return;
+            }
+            int score = candidate.getValue() * EXACT_MATCH_BOOST;
+            for (int i = 1; i < exact.size(); i++) {
+                Integer weight = exact.get(i).get(candidate.getKey());
+                if (weight == null) {
+                    continue candidates;
+                }
+                score += weight * EXACT_MATCH_BOOST;
+            }
+            Indexed indexed = users.get(candidate.getKey());
+            PrefixMatch match = indexed != null ? prefixMatch(indexed, prefix) : null;
+            if (match != null) {
+                offer(top, new Scored(indexed.user(), score + match.score()), limit);
+            }
+        }
+    }
+
+    /**
+     * Scans the tokens starting with {@code prefix}. A user is scored once, under the first of its
+     * tokens in that range, so no per-query map of the users seen so far is needed.
+     * The token equal to {@code prefix} sorts first; once past it no user scores above
+     * {@code NAME_WEIGHT}, so a full result set scoring higher ends the scan.
+     */
+    private void collectPrefixMatches(String prefix, PriorityQueue<Scored> top, int limit) {
+        int examined = 0;
+        for (Map.Entry<String, Map<Long, Integer>> entry
+                : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).entrySet()) {
+            if (!entry.getKey().equals(prefix) && top.size() >= limit && top.peek().score() > NAME_WEIGHT) {
+                return;
+            }
+            for (Long id : entry.getValue().keySet()) {
+                if (++examined > maxCandidates) {
+                    return;
+                }
+                Indexed indexed = users.get(id);
+                PrefixMatch match = indexed != null ? prefixMatch(indexed, prefix) : null;
+                if (match != null && match.firstToken().equals(entry.getKey())) {
+                    offer(top, new Scored(indexed.user(), match.score()), limit);
+                }
+            }
+        }
+    }
+
+    private static void offer(PriorityQueue<Scored> top, Scored scored, int limit) {
+        top.add(scored);
+        if (top.size() > limit) {
+            top.poll();
+        }
+    }
+
+    /**
+     * The user's best score for {@code prefix} (an exact token beats a longer one) and the first
+     * of its tokens starting with it, or null if none does.
+     */
+    private static PrefixMatch prefixMatch(Indexed indexed, String prefix) {
+        String firstToken = null;
+        int score = 0;
+        for (Map.Entry<String, Integer> token : indexed.tokens().entrySet()) {
+            if (!token.getKey().startsWith(prefix)) {
+                continue;
+            }
+            if (firstToken == null || token.getKey().compareTo(firstToken) < 0) {
+                firstToken = token.getKey();
+            }
+            boolean exact = token.getKey().length() == prefix.length();
+            score = Math.max(score, exact ? token.getValue() * EXACT_MATCH_BOOST : token.getValue());
+        }
+        return firstToken != null ? new PrefixMatch(firstToken, score) : null;
+    }
+
+    private static Map<String, Integer> tokens(User user) {
+        Map<String, Integer> tokens = new HashMap<>();
+        tokenize(user.email()).forEach(token -> tokens.merge(token, EMAIL_WEIGHT, Math::max));
+        tokenize(user.name()).forEach(token -> tokens.merge(token, NAME_WEIGHT, Math::max));
+        return tokens;
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
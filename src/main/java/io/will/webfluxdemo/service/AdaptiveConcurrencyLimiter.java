@@ -0,0 +1,182 @@
+package io.will.webfluxdemo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.will.webfluxdemo.deadline.Deadline;
+import io.will.webfluxdemo.exception.ServiceUnavailableException;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Limits how many exports run at once, adjusting the limit from their observed latency.
+ *
+ * - The limit follows a gradient of long-term over recent latency: while latency stays near its
+ *   long-term average the limit grows by about sqrt(limit) per sample, and when latency rises
+ *   (exports queueing on CPU, disk or the database) it shrinks proportionally. Samples are only
+ *   used while at least half the limit is in use, so an idle server does not inflate it.
+ * - Failed exports (other than bad arguments) cut the limit by {@code backoff-ratio}.
+ * - Exports beyond the limit wait in FIFO order, until their {@link Deadline} if they have one;
+ *   beyond {@code max-queued} they get 503.
+ * - The limit, running and waiting exports are published as {@code export.concurrency.*} metrics.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    // Latency may rise this much above its long-term average before the limit shrinks
+    private static final double RTT_TOLERANCE = 1.5;
+
+    @Value("${app.export.concurrency.initial-limit:4}")
+    private int initialLimit;
+
+    @Value("${app.export.concurrency.min-limit:1}")
+    private int minLimit;
+
+    @Value("${app.export.concurrency.max-limit:32}")
+    private int maxLimit;
+
+    @Value("${app.export.concurrency.max-queued:100}")
+    private int maxQueued;
+
+    // Weight of each new limit estimate, and number of samples averaged into the long-term latency
+    @Value("${app.export.concurrency.smoothing:0.2}")
+    private double smoothing;
+
+    @Value("${app.export.concurrency.long-window:100}")
+    private int longWindow;
+
+    @Value("${app.export.concurrency.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    private final Counter rejected;
+    private final Deque<MonoSink<Permit>> waiting = new ArrayDeque<>();
+    private double limit;
+    private double longRttNanos;
+    private int inFlight;
+
+    private record Permit(long startNanos) {
+    }
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry) {
+        Gauge.builder("export.concurrency.limit", this, AdaptiveConcurrencyLimiter::limit)
+            .description("Exports allowed to run at once")
+            .register(meterRegistry);
+        Gauge.builder("export.concurrency.running", this, AdaptiveConcurrencyLimiter::inFlight)
+            .register(meterRegistry);
+        Gauge.builder("export.concurrency.queued", this, AdaptiveConcurrencyLimiter::queued)
+            .register(meterRegistry);
+        this.rejected = Counter.builder("export.concurrency.rejected")
+            .description("Exports rejected because too many were waiting")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Runs {@code work} once a slot is free; the slot is held until it terminates or is cancelled.
+     */
+    public <T> Mono<T> limit(Mono<T> work) {
+        return Mono.usingWhen(
+            Mono.<Permit>create(this::acquire)
+                // A permit granted just as the caller cancelled is handed back
+                .doOnDiscard(Permit.class, permit -> release(permit, Outcome.IGNORED))
+                // Waiting for a slot stops once the caller's deadline has passed
+                .transform(Deadline.stage("queue")),
+            permit -> work,
+            permit -> Mono.fromRunnable(() -> release(permit, Outcome.SUCCESS)),
+            (permit, error) -> Mono.fromRunnable(() -> release(permit,
+                error instanceof IllegalArgumentException ? Outcome.IGNORED : Outcome.FAILED)),
+            permit -> Mono.fromRunnable(() -> release(permit, Outcome.IGNORED)));
+    }
+
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queued() {
+        return waiting.size();
+    }
+
+    private void acquire(MonoSink<Permit> sink) {
+        synchronized (this) {
+            if (inFlight < (int) limit) {
+                inFlight++;
+            } else if (waiting.size() >= maxQueued) {
+                rejected.increment();
+                sink.error(new ServiceUnavailableException("Too many exports waiting, try again later"));
+                return;
+            } else {
+                waiting.addLast(sink);
+                sink.onCancel(() -> {
+                    synchronized (this) {
+                        waiting.remove(sink);
+                    }
+                });
+                return;
+            }
+        }
+        sink.success(new Permit(System.nanoTime()));
+    }
+
+    private enum Outcome { SUCCESS, FAILED, IGNORED }
+
+    private void release(Permit permit, Outcome outcome) {
+        long rttNanos = System.nanoTime() - permit.startNanos();
+        List<MonoSink<Permit>> granted = new ArrayList<>();
+        synchronized (this) {
+            switch (outcome) {
+                case SUCCESS -> onSample(rttNanos);
+                case FAILED -> limit = Math.max(minLimit, limit * backoffRatio);
+                case IGNORED -> { }
+            }
+            inFlight--;
+            // Several waiters may start at once if the limit just grew
+            while (inFlight < (int) limit && !waiting.isEmpty()) {
+                inFlight++;
+                granted.add(waiting.pollFirst());
+            }
+        }
+        granted.forEach(sink -> sink.success(new Permit(System.nanoTime())));
+    }
+
+    /**
+     * Called with the lock held, before the completed export's slot is released.
+     */
+    void onSample(long rttNanos) {
+        longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos + (rttNanos - longRttNanos) / longWindow;
+        // Recover quickly once a slow period is over, instead of waiting for the average to drift down
+        if (longRttNanos > 2.0 * rttNanos) {
+            longRttNanos *= 0.95;
+        }
+        if (inFlight * 2 < limit) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRttNanos / rttNanos));
+        double estimate = limit * gradient + Math.sqrt(limit);
+        double previous = limit;
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + estimate * smoothing));
+        if ((int) previous != (int) limit) {
+            logger.debug("Export concurrency limit {} -> {} (latency {}ms, long-term {}ms)", (int) previous,
+                (int) limit, rttNanos / 1_000_000, (long) longRttNanos / 1_000_000);
+        }
+    }
+}
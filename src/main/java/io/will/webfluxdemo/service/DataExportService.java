@@ -1,37 +1,101 @@
 package io.will.webfluxdemo.service;
 
+import io.will.webfluxdemo.deadline.Deadline;
+import io.will.webfluxdemo.exception.DeadlineExceededException;
+import io.will.webfluxdemo.export.ExportArtifactStore;
+import io.will.webfluxdemo.export.ExportFormat;
+import io.will.webfluxdemo.export.ExportFormats;
+import io.will.webfluxdemo.export.ExportWatermarkStore;
+import io.will.webfluxdemo.export.MappedExportWriter;
 import io.will.webfluxdemo.model.ExportResult;
 import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.priority.PriorityClass;
+import io.will.webfluxdemo.priority.PrioritySchedulers;
+import io.will.webfluxdemo.repository.UserRepository;
+import io.will.webfluxdemo.tracing.ExportTraceRecorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuples;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
-import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.LongFunction;
 
+// Not needed to serve interactive requests, so created on first use rather than at startup;
+// injection points are @Lazy as well, or they would create it eagerly
+@Lazy
 @Service
 public class DataExportService {
     
     private static final Logger logger = LoggerFactory.getLogger(DataExportService.class);
-    
-    // Simulated user database
-    private final List<User> userDatabase = Arrays.asList(
-        new User(1L, "Alice Johnson", "alice.johnson@example.com"),
-        new User(2L, "Bob Smith", "bob.smith@example.com"),
-        new User(3L, "Charlie Brown", "charlie.brown@example.com"),
-        new User(4L, "Diana Prince", "diana.prince@example.com"),
-        new User(5L, "Edward Wilson", "edward.wilson@example.com"),
-        new User(6L, "Fiona Davis", "fiona.davis@example.com"),
-        new User(7L, "George Miller", "george.miller@example.com"),
-        new User(8L, "Helen Taylor", "helen.taylor@example.com"),
-        new User(9L, "Ivan Rodriguez", "ivan.rodriguez@example.com"),
-        new User(10L, "Julia Anderson", "julia.anderson@example.com")
-    );
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ExportFormats exportFormats;
+
+    @Autowired
+    private ExportWatermarkStore watermarkStore;
+
+    @Autowired
+    private ExportArtifactStore artifactStore;
+
+    @Autowired
+    private ExportTraceRecorder traceRecorder;
+
+    // Every export below runs through the limiter, whichever endpoint, socket or schedule started it
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private PrioritySchedulers prioritySchedulers;
+
+    @Autowired
+    private ExportJobTracker exportJobTracker;
+
+    // Budget for exports whose caller did not send X-Request-Timeout
+    @Value("${app.export.timeout:2m}")
+    private Duration exportTimeout;
+
+    @Value("${app.export.directory:data/exports}")
+    private String exportDirectory;
+
+    @Value("${app.export.writer.durability:per-file}")
+    private String writerDurability;
+
+    @Value("${app.export.writer.growth-chunk:8MB}")
+    private DataSize writerGrowthChunk;
+
+    @Value("${app.export.writer.batch-size:1000}")
+    private int writerBatchSize;
+
+    // Upper bound for the partitions a parallel export may ask for; above it the request gets 400
+    @Value("${app.export.parallel.max-partitions:#{T(reactor.core.scheduler.Schedulers).DEFAULT_POOL_SIZE}}")
+    private int maxPartitions;
 
     /**
      * Simulates a long-running async export operation in a blocking way.
@@ -39,67 +103,67 @@ public class DataExportService {
      * processing data, generating files, etc.
      * Fits for traditional data operations.
      */
-    public Mono<ExportResult> exportAsync(Long requestId) {
+    public Mono<ExportResult> exportAsync(Long requestId, String formatName) {
         logger.info("Starting async export for request ID: {}", requestId);
         
-        return Mono.fromCallable(() -> {
-            // Simulate data processing steps
-            logger.info("Step 1: Querying database for export data...");
-            
-            // Simulate database query time
-            try {
-                Thread.sleep(2000); // 2 seconds
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Export interrupted", e);
-            }
-            
-            logger.info("Step 2: Processing {} records...", userDatabase.size());
-            
-            // Simulate data processing time
-            try {
-                Thread.sleep(3000); // 3 seconds
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Export interrupted", e);
-            }
-            
-            logger.info("Step 3: Generating export file...");
-            
-            // Simulate file generation time
-            try {
-                Thread.sleep(2000); // 2 seconds
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Export interrupted", e);
-            }
-            
-            // Simulate occasional failures for demonstration
-            if (ThreadLocalRandom.current().nextInt(100) < 10) { // 10% failure rate
-                throw new RuntimeException("Export failed due to system error");
-            }
-            
-            // Generate result
-            String fileName = String.format("user_export_%d_%d.csv", 
-                requestId, System.currentTimeMillis());
-            String downloadUrl = String.format("/api/downloads/%s", fileName);
-            long fileSize = userDatabase.size() * 50L; // Simulate file size
-            
-            logger.info("Export completed successfully for request ID: {}", requestId);
-            
-            return new ExportResult(
-                requestId,
-                fileName,
-                downloadUrl,
-                (long) userDatabase.size(),
-                "COMPLETED",
-                LocalDateTime.now(),
-                fileSize
-            );
-        })
-        .subscribeOn(Schedulers.boundedElastic()) // Use bounded elastic scheduler for blocking operations
+        return Mono.fromSupplier(() -> exportFormats.resolve(formatName))
+        .flatMap(format -> userRepository.findAll()
+            .collectList()
+            .doOnSubscribe(subscription -> logger.info("Step 1: Querying database for export data..."))
+            .transform(stage("query"))
+            .transform(prioritySchedulers::publishOn) // Blocking operations run on the priority class scheduler
+            .flatMap(users -> {
+                String fingerprint = ExportArtifactStore.fingerprint(format, users);
+                Optional<ExportArtifactStore.Artifact> reusable = artifactStore.reuse(requestId, fingerprint);
+                if (reusable.isPresent()) {
+                    logger.info("Data unchanged since last export, skipping generation for request ID: {}", requestId);
+                    return Mono.just(reusedResult(requestId, users.size(), reusable.get()));
+                }
+                
+                return Mono.just(users)
+                .doOnNext(list -> logger.info("Step 2: Processing {} records...", list.size()))
+                // Simulate data processing time (3 seconds); a timer rather than a sleep,
+                // so a deadline or a disconnect that cancels the export also stops it
+                .delayElement(Duration.ofSeconds(3))
+                .map(list -> {
+                    // Simulate occasional failures for demonstration
+                    if (ThreadLocalRandom.current().nextInt(100) < 10) { // 10% failure rate
+                        throw new RuntimeException("Export failed due to system error");
+                    }
+                    return list;
+                })
+                .transform(stage("process"))
+                .transform(prioritySchedulers::publishOn) // The file is written on the priority class scheduler
+                .flatMap(processed -> Mono.defer(() -> {
+                    logger.info("Step 3: Generating export file...");
+                    
+                    String fileName = String.format("user_export_%d_%d.%s", 
+                        requestId, System.currentTimeMillis(), format.fileExtension());
+                    String downloadUrl = String.format("/api/downloads/%s", fileName);
+                    Path file = Paths.get(exportDirectory).resolve(fileName);
+                    return writeOrDiscard(file, () -> writeMapped(file, format, processed), fileSize -> {
+                        artifactStore.register(requestId, file, fingerprint);
+                    
+                        logger.info("Export completed successfully for request ID: {}", requestId);
+                    
+                        return new ExportResult(
+                            requestId,
+                            fileName,
+                            downloadUrl,
+                            processed.size(),
+                            "COMPLETED",
+                            Instant.now(),
+                            fileSize
+                        );
+                    });
+                })
+                .transform(stage("generate")));
+            }))
         .doOnError(error -> logger.error("Export failed for request ID: {}", requestId, error))
-        .onErrorMap(throwable -> new RuntimeException("Export operation failed: " + throwable.getMessage(), throwable));
+        .onErrorMap(throwable -> !(throwable instanceof IllegalArgumentException
+                || throwable instanceof DeadlineExceededException),
+            throwable -> new RuntimeException("Export operation failed: " + throwable.getMessage(), throwable))
+        .transform(admit(ExportMode.ASYNC, requestId, formatName, null));
     }
 
     /**
@@ -107,83 +171,509 @@ public class DataExportService {
      * This version processes data in a more reactive way.
      * Recommended.
      */
-    public Mono<ExportResult> exportAsyncReactive(Long requestId) {
+    public Mono<ExportResult> exportAsyncReactive(Long requestId, String formatName) {
         logger.info("Starting reactive export for request ID: {}", requestId);
         
-        return Mono.just(requestId)
-            .doOnNext(id -> logger.info("Starting export process for ID: {}", id))
+        return Mono.fromSupplier(() -> exportFormats.resolve(formatName))
+            .flatMap(format -> Mono.just(requestId)
+                .doOnNext(id -> logger.info("Starting export process for ID: {}", id))
             
-            // Step 1: Simulate database query with delay
-            .delayElement(Duration.ofSeconds(2))
-            .doOnNext(id -> logger.info("Database query completed for ID: {}", id))
+                // Step 1: Stream users from the database
+                .flatMap(id -> userRepository.findAll().collectList()
+                    .transform(stage("query")))
+                .doOnNext(users -> logger.info("Database query completed for ID: {}", requestId))
             
-            // Step 2: Simulate data processing
-            .delayElement(Duration.ofSeconds(3))
-            .doOnNext(id -> logger.info("Data processing completed for ID: {}", id))
+                // Step 2: Simulate data processing
+                .flatMap(users -> Mono.just(users).delayElement(Duration.ofSeconds(3))
+                    .transform(stage("process")))
+                .doOnNext(users -> logger.info("Data processing completed for ID: {}", requestId))
             
-            // Step 3: Simulate file generation
-            .delayElement(Duration.ofSeconds(2))
-            .doOnNext(id -> logger.info("File generation completed for ID: {}", id))
+                // Step 3: Simulate file generation
+                .flatMap(users -> Mono.just(users).delayElement(Duration.ofSeconds(2))
+                    .transform(stage("generate")))
+                .doOnNext(users -> logger.info("File generation completed for ID: {}", requestId))
             
-            // Generate final result
-            .map(id -> {
-                String fileName = String.format("user_export_reactive_%d_%d.csv", 
-                    id, System.currentTimeMillis());
+                // Generate final result
+                .map(users -> {
+                    String fileName = String.format("user_export_reactive_%d_%d.%s", 
+                        requestId, System.currentTimeMillis(), format.fileExtension());
+                    String downloadUrl = String.format("/api/downloads/%s", fileName);
+                    long fileSize = encodedSize(format, List.of(users));
+                
+                    return new ExportResult(
+                        requestId,
+                        fileName,
+                        downloadUrl,
+                        users.size(),
+                        "COMPLETED",
+                        Instant.now(),
+                        fileSize
+                    );
+                }))
+            .doOnSuccess(result -> logger.info("Reactive export completed: {}", result))
+            .doOnError(error -> logger.error("Reactive export failed for request ID: {}", requestId, error))
+            .transform(admit(ExportMode.REACTIVE, requestId, formatName, null));
+    }
+
+    /**
+     * Batch processing operation with progress logging.
+     * Users are streamed from the database cursor and encoded one batch at a time,
+     * so memory use is bounded by the batch size rather than the table size.
+     * Fits for large amount of data.
+     */
+    public Mono<ExportResult> exportWithProgress(Long requestId, String formatName) {
+        logger.info("Starting batch export with progress for request ID: {}", requestId);
+        
+        return Mono.fromSupplier(() -> exportFormats.resolve(formatName))
+        .flatMap(format -> userRepository.findAll()
+            .buffer(writerBatchSize)
+            .index()
+            .transform(prioritySchedulers::publishOn)
+            .reduceWith(() -> new BatchProgress(format.header().length + format.footer().length), (progress, batch) -> {
+                logger.info("Processing batch {} ({} records) for request ID: {}",
+                    batch.getT1() + 1, batch.getT2().size(), requestId);
+                progress.bytes += format.encode(batch.getT2()).length;
+                progress.records += batch.getT2().size();
+                return progress;
+            })
+            // The query streams into processing batch by batch, so they are one stage
+            .transform(stage("query+process"))
+            .map(progress -> {
+                String fileName = String.format("batch_export_%d_%d.%s", 
+                    requestId, System.currentTimeMillis(), format.fileExtension());
                 String downloadUrl = String.format("/api/downloads/%s", fileName);
-                long fileSize = userDatabase.size() * 50L;
                 
                 return new ExportResult(
-                    id,
+                    requestId,
                     fileName,
                     downloadUrl,
-                    (long) userDatabase.size(),
+                    progress.records,
                     "COMPLETED",
-                    LocalDateTime.now(),
-                    fileSize
+                    Instant.now(),
+                    progress.bytes
                 );
-            })
-            .doOnSuccess(result -> logger.info("Reactive export completed: {}", result))
-            .doOnError(error -> logger.error("Reactive export failed for request ID: {}", requestId, error));
+            }))
+        .doOnError(error -> logger.error("Batch export failed for request ID: {}", requestId, error))
+        .transform(admit(ExportMode.BATCH, requestId, formatName, null));
     }
 
     /**
-     * Simulates a batch processing operation with progress updates.
-     * Returns intermediate results for demonstration.
-     * Fits for large amount of data.
+     * Parallel export that partitions the user id space into ranges.
+     * Each partition queries its own range and streams it, encoded batch by batch on the parallel
+     * scheduler, into its own segment file; segments are then concatenated in id order into the final file.
+     * A recent file is reused while the table's data version is unchanged.
+     * {@code partitions} defaults to one per core (null) and may not exceed {@code max-partitions}.
+     * Fits for large amounts of data on multi-core machines.
      */
-    public Mono<ExportResult> exportWithProgress(Long requestId) {
-        logger.info("Starting batch export with progress for request ID: {}", requestId);
-        
-        return Mono.fromCallable(() -> {
-            int totalBatches = 5;
-            
-            for (int i = 1; i <= totalBatches; i++) {
-                logger.info("Processing batch {}/{} for request ID: {}", i, totalBatches, requestId);
-                
-                try {
-                    Thread.sleep(1000); // 1 second per batch
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Batch processing interrupted", e);
+    public Mono<ExportResult> exportParallel(Long requestId, Integer partitions, String formatName) {
+        int partitionCount = partitions != null ? partitions : Math.min(Schedulers.DEFAULT_POOL_SIZE, maxPartitions);
+        logger.info("Starting parallel export with {} partitions for request ID: {}", partitionCount, requestId);
+
+        return Mono.fromSupplier(() -> exportFormats.resolve(formatName))
+            .flatMap(format -> {
+                if (partitionCount < 1 || partitionCount > maxPartitions) {
+                    return Mono.error(new IllegalArgumentException(
+                        "Partition count must be between 1 and " + maxPartitions));
                 }
+                Path directory = Paths.get(exportDirectory);
+                String fileName = String.format("parallel_export_%d_%d.%s",
+                    requestId, System.currentTimeMillis(), format.fileExtension());
+
+                // Read before the partitions: a write landing meanwhile only makes the file newer than its version
+                return userRepository.findBounds()
+                    .transform(stage("query"))
+                    .flatMap(bounds -> {
+                        String fingerprint = ExportArtifactStore.fingerprint(format, bounds.version());
+                        Optional<ExportArtifactStore.Artifact> reusable = artifactStore.reuse(requestId, fingerprint);
+                        if (reusable.isPresent()) {
+                            return Mono.just(reusedResult(requestId, bounds.count(), reusable.get()));
+                        }
+                        return writePartitioned(requestId, format,
+                            partitionByIdRange(bounds.minId(), bounds.maxId(), partitionCount),
+                            directory, fileName, fingerprint);
+                    });
+            })
+            .doOnSuccess(result -> logger.info("Parallel export completed: {}", result))
+            .doOnError(error -> logger.error("Parallel export failed for request ID: {}", requestId, error))
+            .transform(admit(ExportMode.PARALLEL, requestId, formatName, null));
+    }
+
+    private Mono<ExportResult> writePartitioned(Long requestId, ExportFormat format, List<IdRange> ranges,
+                                                Path directory, String fileName, String fingerprint) {
+        Path target = directory.resolve(fileName);
+
+        return Mono.deferContextual(context -> {
+            List<Segment> segments = new ArrayList<>(ranges.size());
+            for (int index = 0; index < ranges.size(); index++) {
+                segments.add(new Segment(directory.resolve(fileName + ".part" + index)));
             }
-            
-            String fileName = String.format("batch_export_%d_%d.csv", 
-                requestId, System.currentTimeMillis());
-            String downloadUrl = String.format("/api/downloads/%s", fileName);
-            
-            return new ExportResult(
-                requestId,
-                fileName,
-                downloadUrl,
-                (long) userDatabase.size(),
-                "COMPLETED",
-                LocalDateTime.now(),
-                userDatabase.size() * 75L
-            );
+            Scheduler io = prioritySchedulers.scheduler(PriorityClass.from(context));
+            Runnable discard = () -> segments.forEach(Segment::discard);
+
+            return Flux.range(0, ranges.size())
+                // flatMapSequential runs partitions concurrently but emits their record counts in partition order
+                .flatMapSequential(index -> writeSegment(requestId, format, ranges.get(index), segments.get(index),
+                        index, ranges.size()),
+                    Math.max(1, ranges.size()))
+                .reduce(0L, Long::sum)
+                .transform(prioritySchedulers::publishOn)
+                .flatMap(totalRecords -> writeOrDiscard(target,
+                        () -> concatenateSegments(target, format, segments.stream().map(Segment::path).toList()),
+                        fileSize -> {
+                            artifactStore.register(requestId, target, fingerprint);
+                            return new ExportResult(
+                                requestId,
+                                fileName,
+                                String.format("/api/downloads/%s", fileName),
+                                totalRecords,
+                                "COMPLETED",
+                                Instant.now(),
+                                fileSize
+                            );
+                        })
+                    .transform(stage("generate")))
+                // A failed or abandoned export leaves no segments behind; a segment still being
+                // written is discarded once that write returns, and can't be written after that
+                .onErrorResume(error -> Mono.fromRunnable(discard).subscribeOn(io).then(Mono.error(error)))
+                .doOnCancel(() -> io.schedule(discard));
+        });
+    }
+
+    /**
+     * Streams the users of {@code range} into {@code segment}, returning how many were written.
+     */
+    private Mono<Long> writeSegment(Long requestId, ExportFormat format, IdRange range, Segment segment,
+                                    int index, int partitions) {
+        return userRepository.findByIdRange(range.after(), range.last())
+            .buffer(writerBatchSize)
+            .publishOn(Schedulers.parallel()) // CPU-bound encoding
+            .map(batch -> Tuples.of(batch.size(), format.encode(batch)))
+            .transform(prioritySchedulers::publishOn) // blocking file I/O
+            .reduce(0L, (records, encoded) -> {
+                segment.append(encoded.getT2());
+                return records + encoded.getT1();
+            })
+            .doOnNext(records -> {
+                segment.finish();
+                logger.info("Partition {}/{} written ({} records) for request ID: {}",
+                    index + 1, partitions, records, requestId);
+            })
+            .transform(stage("process-" + (index + 1)));
+    }
+
+    /**
+     * Incremental export that only includes users created, updated or deleted since the consumer's last export.
+     * The consumer's watermark (last exported write-ahead log sequence) is advanced only after the
+     * file is written, so a failed export is simply retried with the same delta next time.
+     * A deleted user is a row with its id and an empty name and email (which no stored user can have),
+     * in sequence order with the other rows; a consumer's first export has nothing to delete and leaves them out.
+     */
+    public Mono<ExportResult> exportIncremental(Long requestId, String consumerId, String formatName) {
+        logger.info("Starting incremental export for consumer {} and request ID: {}", consumerId, requestId);
+
+        return Mono.fromSupplier(() -> exportFormats.resolve(formatName))
+        .flatMap(format -> {
+            long watermark = watermarkStore.get(consumerId);
+            return userRepository.findModifiedAfter(watermark)
+                .collectList()
+                .transform(stage("query"))
+                .transform(prioritySchedulers::publishOn)
+                .flatMap(changed -> Mono.fromCallable(() -> writeIncremental(requestId, consumerId, format, watermark, changed))
+                    .transform(stage("generate")));
         })
-        .subscribeOn(Schedulers.boundedElastic())
-        .timeout(Duration.ofMinutes(2)) // Set timeout for long operations
-        .doOnError(error -> logger.error("Batch export failed for request ID: {}", requestId, error));
+        .doOnSuccess(result -> logger.info("Incremental export completed: {}", result))
+        .doOnError(error -> logger.error("Incremental export failed for request ID: {}", requestId, error))
+        .transform(admit(ExportMode.INCREMENTAL, requestId, formatName, consumerId));
+    }
+
+    private ExportResult writeIncremental(Long requestId, String consumerId, ExportFormat format, long watermark,
+                                          List<UserRepository.Modification> modifications) {
+        logger.info("Found {} users modified after watermark {} for consumer {}",
+            modifications.size(), watermark, consumerId);
+        List<User> changed = modifications.stream()
+            .filter(modification -> !modification.deleted() || watermark != ExportWatermarkStore.NEVER_EXPORTED)
+            .map(modification -> modification.deleted()
+                ? new User(modification.user().id(), "", "")
+                : modification.user())
+            .toList();
+
+        if (changed.isEmpty()) {
+            if (!modifications.isEmpty()) {
+                watermarkStore.advance(consumerId, modifications.get(modifications.size() - 1).sequence());
+            }
+            return new ExportResult(requestId, null, null, 0L, "NO_CHANGES", Instant.now(), 0L);
+        }
+
+        String fileName = String.format("incremental_export_%s_%d_%d.%s",
+            consumerId, requestId, System.currentTimeMillis(), format.fileExtension());
+        Path file = Paths.get(exportDirectory).resolve(fileName);
+        long fileSize = writeExportFile(file, format, changed);
+        // Deltas depend on the consumer's watermark, so they are never offered for reuse
+        artifactStore.register(requestId, file, null);
+        watermarkStore.advance(consumerId, modifications.get(modifications.size() - 1).sequence());
+
+        return new ExportResult(
+            requestId,
+            fileName,
+            String.format("/api/downloads/%s", fileName),
+            changed.size(),
+            "COMPLETED",
+            Instant.now(),
+            fileSize
+        );
+    }
+
+    /**
+     * Runs an export under the concurrency limit, within the caller's deadline or else
+     * {@code app.export.timeout} from now. Time spent waiting for a slot counts against it.
+     * The export is tracked so that a shutdown can finish it or save it to resume later.
+     */
+    private Function<Mono<ExportResult>, Mono<ExportResult>> admit(ExportMode mode, Long requestId,
+                                                                  String formatName, String consumerId) {
+        ExportJobTracker.PendingExport job = new ExportJobTracker.PendingExport(mode, requestId, formatName, consumerId);
+        return export -> exportJobTracker.track(job, concurrencyLimiter.limit(export))
+            .contextWrite(context -> context.hasKey(Deadline.CONTEXT_KEY) ? context
+                : context.put(Deadline.CONTEXT_KEY, Deadline.after(exportTimeout)));
+    }
+
+    /**
+     * A traced export stage that only gets the export's remaining budget.
+     */
+    private <T> Function<Mono<T>, Mono<T>> stage(String name) {
+        Function<Mono<T>, Mono<T>> withinDeadline = Deadline.stage(name);
+        return withinDeadline.andThen(traceRecorder.span(name));
+    }
+
+    /**
+     * Runs an export in the given mode, used by callers that pick the mode at runtime
+     * (e.g. scheduled jobs) rather than through a dedicated endpoint.
+     * {@code consumerId} is only required for incremental exports.
+     */
+    public Mono<ExportResult> export(ExportMode mode, Long requestId, String formatName, String consumerId) {
+        return switch (mode) {
+            case ASYNC -> exportAsync(requestId, formatName);
+            case REACTIVE -> exportAsyncReactive(requestId, formatName);
+            case BATCH -> exportWithProgress(requestId, formatName);
+            case PARALLEL -> exportParallel(requestId, null, formatName);
+            case INCREMENTAL -> exportIncremental(requestId, consumerId, formatName);
+        };
+    }
+
+    /**
+     * Ids {@code after < id <= last} of one partition.
+     */
+    record IdRange(long after, long last) {
+    }
+
+    /**
+     * Splits the id space into {@code partitions} contiguous ranges of equal width between
+     * {@code minId} and {@code maxId}. The first and last range are open-ended, so users
+     * created after the bounds were read still fall into one.
+     */
+    static List<IdRange> partitionByIdRange(long minId, long maxId, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partition count must be at least 1");
+        }
+        long width = (maxId - minId) / partitions + 1;
+        List<IdRange> ranges = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            ranges.add(new IdRange(
+                i == 0 ? Long.MIN_VALUE : minId + i * width - 1,
+                i == partitions - 1 ? Long.MAX_VALUE : minId + (i + 1) * width - 1));
+        }
+        return ranges;
+    }
+
+    private static ExportResult reusedResult(Long requestId, long totalRecords, ExportArtifactStore.Artifact artifact) {
+        return new ExportResult(
+            requestId,
+            artifact.fileName(),
+            String.format("/api/downloads/%s", artifact.fileName()),
+            totalRecords,
+            "REUSED",
+            Instant.now(),
+            artifact.sizeBytes()
+        );
+    }
+
+    private static long encodedSize(ExportFormat format, List<List<User>> chunks) {
+        long size = format.header().length + format.footer().length;
+        for (List<User> chunk : chunks) {
+            size += format.encode(chunk).length;
+        }
+        return size;
+    }
+
+    /**
+     * Writes users in batches of {@code writerBatchSize} through a memory-mapped writer,
+     * fsyncing according to the configured durability mode.
+     */
+    private long writeMapped(Path target, ExportFormat format, List<User> users) {
+        MappedExportWriter.Durability durability = MappedExportWriter.Durability.fromString(writerDurability);
+        try (MappedExportWriter writer = new MappedExportWriter(target, writerGrowthChunk.toBytes(), durability)) {
+            writer.write(format.header());
+            for (int from = 0; from < users.size(); from += writerBatchSize) {
+                writer.write(format.encode(users.subList(from, Math.min(users.size(), from + writerBatchSize))));
+                writer.endBatch();
+            }
+            writer.write(format.footer());
+            return writer.size();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write export file " + target.getFileName(), e);
+        }
+    }
+
+    /**
+     * Runs the blocking {@code write} of {@code target} and then {@code complete} with its size.
+     * The file is deleted if the write fails or the export is cancelled meanwhile (deadline,
+     * disconnect, shutdown); a write is not interrupted, so that only happens once it has returned.
+     */
+    private static <T> Mono<T> writeOrDiscard(Path target, Callable<Long> write, LongFunction<T> complete) {
+        return Mono.defer(() -> {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            return Mono.fromCallable(() -> {
+                    long size;
+                    try {
+                        size = write.call();
+                    } catch (Exception e) {
+                        discard(target);
+                        throw e;
+                    }
+                    if (cancelled.get()) {
+                        discard(target);
+                        return null;
+                    }
+                    return complete.apply(size);
+                })
+                .doOnCancel(() -> cancelled.set(true));
+        });
+    }
+
+    private static void discard(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to discard export file {}", file.getFileName(), e);
+        }
+    }
+
+    private static long writeExportFile(Path target, ExportFormat format, List<User> users) {
+        try {
+            Files.createDirectories(target.getParent());
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                out.write(new ByteBuffer[] {
+                    ByteBuffer.wrap(format.header()),
+                    ByteBuffer.wrap(format.encode(users)),
+                    ByteBuffer.wrap(format.footer())
+                });
+                return out.size();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write export file " + target.getFileName(), e);
+        }
+    }
+
+    private static long concatenateSegments(Path target, ExportFormat format, List<Path> segments) {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.wrap(format.header()));
+            for (Path segment : segments) {
+                try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = in.size();
+                    // transferTo may copy fewer bytes than requested, so loop until done
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+                Files.delete(segment);
+            }
+            out.write(ByteBuffer.wrap(format.footer()));
+            return out.size();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to concatenate export segments into " + target.getFileName(), e);
+        }
+    }
+
+    /**
+     * One partition's segment file, appended batch by batch and created by the first append.
+     * Appends and discard are serialized: a discard waits for an append in progress, and
+     * an append after it is dropped, so a discarded segment never reappears.
+     */
+    private static final class Segment {
+        private final Path path;
+        private FileChannel channel;
+        private boolean discarded;
+
+        Segment(Path path) {
+            this.path = path;
+        }
+
+        Path path() {
+            return path;
+        }
+
+        synchronized void append(byte[] bytes) {
+            if (discarded) {
+                return;
+            }
+            try {
+                if (channel == null) {
+                    Files.createDirectories(path.getParent());
+                    channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write export segment " + path.getFileName(), e);
+            }
+        }
+
+        /**
+         * Closes the segment once every batch is appended; an empty partition still gets its file.
+         */
+        synchronized void finish() {
+            if (discarded) {
+                return;
+            }
+            try {
+                if (channel == null) {
+                    Files.createDirectories(path.getParent());
+                    Files.write(path, new byte[0]);
+                } else {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write export segment " + path.getFileName(), e);
+            }
+        }
+
+        synchronized void discard() {
+            discarded = true;
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.warn("Failed to discard export segment {}", path.getFileName(), e);
+            }
+        }
+    }
+
+    /**
+     * Running totals of a streamed batch export.
+     */
+    private static final class BatchProgress {
+        long bytes;
+        long records;
+
+        BatchProgress(long bytes) {
+            this.bytes = bytes;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,216 @@
+package io.will.webfluxdemo.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.will.webfluxdemo.exception.ServiceUnavailableException;
+import io.will.webfluxdemo.priority.PriorityClass;
+import io.will.webfluxdemo.tracing.RequestIdThreadLocalAccessor;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of running exports so a shutdown doesn't throw their work away.
+ *
+ * - On shutdown new exports are rejected with 503, and running ones get up to
+ *   {@code grace-period} to finish.
+ * - Exports still unfinished after that, or cancelled by the shutdown itself (e.g. their SSE
+ *   stream was closed), are written to {@code pending-file}. A client disconnecting outside a
+ *   shutdown cancels its export for good.
+ * - Only modes that write a file are saved: a REACTIVE or BATCH result goes to the client that
+ *   asked for it, so running it again with nobody listening would be wasted work.
+ * - Once the next startup is complete they run again, as background exports.
+ */
+@Component
+public class ExportJobTracker implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportJobTracker.class);
+
+    @Value("${app.export.shutdown.grace-period:20s}")
+    private Duration gracePeriod;
+
+    @Value("${app.export.shutdown.pending-file:data/export-pending.json}")
+    private String pendingFile;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Lazy both to break the cycle (it tracks its exports here) and to keep it off the startup path
+    @Lazy
+    @Autowired
+    private DataExportService dataExportService;
+
+    /**
+     * What is needed to run an export again through {@link DataExportService#export}.
+     */
+    public record PendingExport(ExportMode mode, Long requestId, String format, String consumerId) {
+    }
+
+    private final Map<Long, PendingExport> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final List<PendingExport> pending = new ArrayList<>();
+    private volatile boolean running;
+    private volatile boolean draining;
+
+    @PostConstruct
+    void load() {
+        Path path = Paths.get(pendingFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            pending.addAll(resumable(objectMapper.readValue(path.toFile(), new TypeReference<List<PendingExport>>() { })));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load pending exports from " + path, e);
+        }
+        logger.info("Loaded {} exports interrupted by the last shutdown from {}", pending.size(), path);
+    }
+
+    /**
+     * Runs the exports the last shutdown left unfinished again. Their files show up in the
+     * artifact store under the original request ids.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        for (PendingExport job : takePending()) {
+            logger.info("Resuming {} export for request ID {} interrupted by the last shutdown",
+                job.mode(), job.requestId());
+            Mono.defer(() -> dataExportService.export(job.mode(), job.requestId(), job.format(), job.consumerId()))
+                .contextWrite(Context.of(RequestIdThreadLocalAccessor.KEY, "resume-" + job.requestId(),
+                    PriorityClass.CONTEXT_KEY, PriorityClass.BACKGROUND))
+                .subscribe(
+                    result -> logger.info("Resumed export completed: {}", result),
+                    error -> logger.warn("Resumed export for request ID {} failed: {}",
+                        job.requestId(), error.getMessage()));
+        }
+    }
+
+    /**
+     * Exports left unfinished by the last shutdown; the file is removed, since they are
+     * resumed (and tracked again while they run).
+     */
+    synchronized List<PendingExport> takePending() {
+        List<PendingExport> taken = List.copyOf(pending);
+        pending.clear();
+        try {
+            Files.deleteIfExists(Paths.get(pendingFile));
+        } catch (IOException e) {
+            logger.warn("Failed to remove pending exports file {}: {}", pendingFile, e.getMessage());
+        }
+        return taken;
+    }
+
+    public <T> Mono<T> track(PendingExport job, Mono<T> export) {
+        return Mono.defer(() -> {
+            if (draining) {
+                return Mono.error(new ServiceUnavailableException("Server is shutting down, export not started"));
+            }
+            long id = ids.incrementAndGet();
+            inFlight.put(id, job);
+            return export
+                .doOnTerminate(() -> inFlight.remove(id))
+                .doOnCancel(() -> {
+                    // Cancelled by the shutdown: keep it, so it is persisted and resumed
+                    if (!draining) {
+                        inFlight.remove(id);
+                    }
+                });
+        });
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        stop(() -> { });
+    }
+
+    /**
+     * Same phase as SseConnectionManager, so exports and their streams drain side by side.
+     */
+    @Override
+    public void stop(Runnable callback) {
+        draining = true;
+        running = false;
+        logger.info("Waiting up to {} for {} running exports", gracePeriod, inFlight.size());
+        Mono.firstWithSignal(allFinished(), Mono.delay(gracePeriod).then())
+            .doFinally(signal -> {
+                List<PendingExport> unfinished = new ArrayList<>(inFlight.values());
+                synchronized (this) {
+                    // Loaded but not resumed yet, if shutdown came before the application was ready
+                    unfinished.addAll(pending);
+                }
+                persist(resumable(unfinished));
+                callback.run();
+            })
+            .subscribe();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private Mono<Void> allFinished() {
+        return Flux.interval(Duration.ZERO, Duration.ofMillis(50))
+            .filter(tick -> inFlight.isEmpty())
+            .next()
+            .then();
+    }
+
+    private static List<PendingExport> resumable(List<PendingExport> unfinished) {
+        List<PendingExport> resumable = unfinished.stream().filter(job -> job.mode().writesFile()).toList();
+        if (resumable.size() < unfinished.size()) {
+            logger.info("Dropping {} unfinished exports that don't write a file",
+                unfinished.size() - resumable.size());
+        }
+        return resumable;
+    }
+
+    private void persist(List<PendingExport> unfinished) {
+        Path path = Paths.get(pendingFile);
+        if (unfinished.isEmpty()) {
+            logger.info("All exports finished before shutdown");
+            return;
+        }
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+            objectMapper.writeValue(temp.toFile(), unfinished);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Saved {} unfinished exports to {}, they resume on next startup", unfinished.size(), path);
+        } catch (IOException e) {
+            logger.error("Failed to save {} unfinished exports to {}", unfinished.size(), path, e);
+        }
+    }
+}
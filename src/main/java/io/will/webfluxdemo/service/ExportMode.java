@@ -0,0 +1,36 @@
+package io.will.webfluxdemo.service;
+
+import java.util.Locale;
+
+/**
+ * The export implementations offered by {@link DataExportService}.
+ */
+public enum ExportMode {
+    ASYNC(true),
+    REACTIVE(false),
+    BATCH(false),
+    PARALLEL(true),
+    INCREMENTAL(true);
+
+    private final boolean writesFile;
+
+    ExportMode(boolean writesFile) {
+        this.writesFile = writesFile;
+    }
+
+    /**
+     * Whether the export leaves a downloadable file in the artifact store; the others only
+     * report a result to the client that asked for it.
+     */
+    public boolean writesFile() {
+        return writesFile;
+    }
+
+    public static ExportMode fromString(String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Unsupported export mode: " + value);
+        }
+    }
+}
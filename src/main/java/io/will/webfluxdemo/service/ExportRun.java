@@ -0,0 +1,11 @@
+package io.will.webfluxdemo.service;
+
+import java.time.Instant;
+
+/**
+ * One entry in a scheduled job's run history.
+ * Status is COMPLETED, FAILED, or COALESCED when the trigger fired while the job was still running.
+ */
+public record ExportRun(String jobName, String trigger, String status, Instant startedAt, Instant finishedAt,
+                        String fileName, Long totalRecords, String error) {
+}
@@ -0,0 +1,34 @@
+package io.will.webfluxdemo.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Scheduled export jobs, bound from {@code app.export.schedule}.
+ *
+ * @param enabled     whether cron triggers are armed at startup
+ * @param maxJitter   upper bound of the random delay added to each fire time
+ * @param historySize number of runs remembered per job
+ * @param jobs        the configured jobs
+ */
+@ConfigurationProperties("app.export.schedule")
+public record ExportScheduleProperties(boolean enabled, Duration maxJitter, int historySize, List<Job> jobs) {
+
+    public ExportScheduleProperties {
+        maxJitter = maxJitter != null ? maxJitter : Duration.ZERO;
+        historySize = historySize > 0 ? historySize : 50;
+        jobs = jobs != null ? List.copyOf(jobs) : List.of();
+    }
+
+    /**
+     * @param name     unique job name
+     * @param cron     Spring cron expression (second minute hour day month weekday)
+     * @param mode     export mode to run
+     * @param format   export format name, defaults to csv
+     * @param consumer watermark consumer for incremental jobs, defaults to the job name
+     */
+    public record Job(String name, String cron, ExportMode mode, String format, String consumer) {
+    }
+}
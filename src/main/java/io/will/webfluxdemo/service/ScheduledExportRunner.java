@@ -0,0 +1,226 @@
+package io.will.webfluxdemo.service;
+
+import io.will.webfluxdemo.model.ExportResult;
+import io.will.webfluxdemo.priority.PriorityClass;
+import io.will.webfluxdemo.tracing.RequestIdThreadLocalAccessor;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Triggers {@link DataExportService} exports on cron expressions so heavy exports
+ * can be moved to off-peak windows.
+ *
+ * - A trigger that fires while the same job is still running does not start a second
+ *   copy; it is recorded as COALESCED and at most one follow-up run happens afterwards.
+ *   Each job is IDLE, RUNNING or RUNNING_RERUN in a single atomic state, so a trigger racing
+ *   the end of a run either starts a new run or is picked up by the ending one, never neither.
+ * - Every fire time is delayed by a random jitter (up to {@code max-jitter}) so jobs
+ *   sharing a cron expression don't all hit the database at the same instant.
+ */
+@Service
+public class ScheduledExportRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduledExportRunner.class);
+
+    private static final int IDLE = 0;
+    private static final int RUNNING = 1;
+    private static final int RUNNING_RERUN = 2;
+
+    @Lazy
+    @Autowired
+    private DataExportService dataExportService;
+
+    @Autowired
+    private ExportScheduleProperties properties;
+
+    private final Map<String, JobState> jobs = new LinkedHashMap<>();
+
+    private final AtomicLong requestIds = new AtomicLong(System.currentTimeMillis());
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        for (ExportScheduleProperties.Job job : properties.jobs()) {
+            if (jobs.containsKey(job.name())) {
+                throw new IllegalStateException("Duplicate scheduled export job: " + job.name());
+            }
+            jobs.put(job.name(), new JobState(job, CronExpression.parse(job.cron())));
+        }
+        if (!properties.enabled()) {
+            logger.info("Scheduled exports are disabled, {} jobs available for manual runs", jobs.size());
+            return;
+        }
+        jobs.values().forEach(this::scheduleNext);
+        logger.info("Scheduled {} export jobs with up to {} jitter", jobs.size(), properties.maxJitter());
+    }
+
+    @PreDestroy
+    public void stop() {
+        jobs.values().forEach(state -> {
+            Disposable timer = state.timer;
+            if (timer != null) {
+                timer.dispose();
+            }
+        });
+    }
+
+    /**
+     * Runs a job now, subject to the same coalescing as cron triggers.
+     *
+     * @return true if a run started, false if it was coalesced into the running one
+     */
+    public boolean runNow(String jobName) {
+        JobState state = jobs.get(jobName);
+        if (state == null) {
+            throw new IllegalArgumentException("Unknown export job: " + jobName);
+        }
+        return trigger(state, "manual");
+    }
+
+    public List<JobStatus> jobStatuses() {
+        List<JobStatus> statuses = new ArrayList<>(jobs.size());
+        for (JobState state : jobs.values()) {
+            List<ExportRun> history;
+            synchronized (state.history) {
+                history = new ArrayList<>(state.history);
+            }
+            statuses.add(new JobStatus(state.job.name(), state.job.cron(), state.job.mode(),
+                state.nextFireTime, state.state.get() != IDLE, history));
+        }
+        return statuses;
+    }
+
+    private void scheduleNext(JobState state) {
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime next = state.cron.next(now);
+        if (next == null) {
+            logger.warn("Cron expression for export job {} never fires again", state.job.name());
+            return;
+        }
+        long maxJitterMillis = properties.maxJitter().toMillis();
+        Duration jitter = maxJitterMillis > 0
+            ? Duration.ofMillis(ThreadLocalRandom.current().nextLong(maxJitterMillis))
+            : Duration.ZERO;
+        Duration delay = Duration.between(now, next).plus(jitter);
+
+        state.nextFireTime = next.toInstant().plus(jitter);
+        state.timer = Mono.delay(delay)
+            .subscribe(tick -> {
+                trigger(state, "cron");
+                scheduleNext(state);
+            });
+        logger.debug("Export job {} next fires at {}", state.job.name(), state.nextFireTime);
+    }
+
+    private boolean trigger(JobState state, String trigger) {
+        while (true) {
+            int current = state.state.get();
+            if (current == IDLE) {
+                if (state.state.compareAndSet(IDLE, RUNNING)) {
+                    run(state, trigger);
+                    return true;
+                }
+            } else if (state.state.compareAndSet(current, RUNNING_RERUN)) {
+                Instant now = Instant.now();
+                record(state, new ExportRun(state.job.name(), trigger, "COALESCED", now, now, null, null, null));
+                logger.info("Export job {} is still running, {} trigger coalesced", state.job.name(), trigger);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Starts a run of a job whose state is already RUNNING.
+     */
+    private void run(JobState state, String trigger) {
+        ExportScheduleProperties.Job job = state.job;
+        Instant startedAt = Instant.now();
+        logger.info("Starting scheduled export job {} ({} trigger)", job.name(), trigger);
+
+        // defer so that argument validation errors are recorded as failed runs too
+        long requestId = requestIds.incrementAndGet();
+        Mono.defer(() -> dataExportService.export(job.mode(), requestId, job.format(),
+                job.consumer() != null ? job.consumer() : job.name()))
+            .doFinally(signal -> finish(state))
+            // Nobody waits on a scheduled export, so it yields to interactive requests and client exports
+            .contextWrite(Context.of(RequestIdThreadLocalAccessor.KEY, "schedule-" + job.name() + "-" + requestId,
+                PriorityClass.CONTEXT_KEY, PriorityClass.BACKGROUND))
+            .subscribe(
+                result -> record(state, completed(job, trigger, startedAt, result)),
+                error -> record(state, new ExportRun(job.name(), trigger, "FAILED", startedAt, Instant.now(),
+                    null, null, error.getMessage())));
+    }
+
+    /**
+     * Ends a run, handing the job straight to the follow-up run if a trigger was coalesced,
+     * so no other trigger can start one in between.
+     */
+    private void finish(JobState state) {
+        while (true) {
+            if (state.state.compareAndSet(RUNNING_RERUN, RUNNING)) {
+                run(state, "coalesced");
+                return;
+            }
+            if (state.state.compareAndSet(RUNNING, IDLE)) {
+                return;
+            }
+        }
+    }
+
+    private static ExportRun completed(ExportScheduleProperties.Job job, String trigger, Instant startedAt,
+                                       ExportResult result) {
+        return new ExportRun(job.name(), trigger, result.status(), startedAt, Instant.now(),
+            result.fileName(), result.totalRecords(), null);
+    }
+
+    private void record(JobState state, ExportRun run) {
+        synchronized (state.history) {
+            if (state.history.size() == properties.historySize()) {
+                state.history.removeFirst();
+            }
+            state.history.addLast(run);
+        }
+        logger.info("Export job run recorded: {}", run);
+    }
+
+    public record JobStatus(String name, String cron, ExportMode mode, Instant nextFireTime, boolean running,
+                            List<ExportRun> history) {
+    }
+
+    private static final class JobState {
+        final ExportScheduleProperties.Job job;
+        final CronExpression cron;
+        // IDLE, RUNNING or RUNNING_RERUN
+        final AtomicInteger state = new AtomicInteger(IDLE);
+        final Deque<ExportRun> history = new ArrayDeque<>();
+        volatile Instant nextFireTime;
+        volatile Disposable timer;
+
+        JobState(ExportScheduleProperties.Job job, CronExpression cron) {
+            this.job = job;
+            this.cron = cron;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package io.will.webfluxdemo.service;
+
+import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.model.UserChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Sinks;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broadcasts user creates and deletes to any number of subscribers.
+ *
+ * - One multicast sink fans every event out; each subscriber gets its own bounded buffer,
+ *   so a slow consumer loses its own events instead of holding up everyone else.
+ * - The last {@code replay-size} events are kept in a ring buffer, so a client reconnecting
+ *   with {@code Last-Event-ID} receives what it missed; if that is no longer retained it
+ *   gets a RESYNC event first.
+ */
+@Service
+public class UserChangeFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserChangeFeed.class);
+
+    /**
+     * What a subscriber's full buffer does with further events.
+     */
+    public enum Overflow {
+        /** Keep the buffered events, drop newer ones */
+        DROP,
+        /** Drop the oldest buffered events to make room for the latest */
+        LATEST;
+
+        public static Overflow fromString(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Unsupported overflow policy: " + value + " (supported: drop, latest)");
+            }
+        }
+    }
+
+    @Value("${app.users.changes.replay-size:1000}")
+    private int replaySize;
+
+    @Value("${app.users.changes.subscriber-buffer:1024}")
+    private int subscriberBuffer;
+
+    private final Sinks.Many<UserChangeEvent> events = Sinks.many().multicast().directBestEffort();
+    private final Deque<UserChangeEvent> recent = new ArrayDeque<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    // Sequence of the last change made before this feed started publishing
+    private long horizon;
+
+    /**
+     * Marks changes up to {@code lastSequence} as made before startup; resuming from before it needs a RESYNC.
+     */
+    public synchronized void startAfter(long lastSequence) {
+        horizon = lastSequence;
+    }
+
+    public void publishCreated(long sequence, User user) {
+        publish(new UserChangeEvent(sequence, UserChangeEvent.Type.CREATED, user.id(), user, Instant.now()));
+    }
+
+    public void publishDeleted(long sequence, Long userId) {
+        publish(new UserChangeEvent(sequence, UserChangeEvent.Type.DELETED, userId, null, Instant.now()));
+    }
+
+    /**
+     * Live changes, preceded by the retained changes after {@code lastEventId} when it is given.
+     */
+    public Flux<UserChangeEvent> subscribe(Long lastEventId, Overflow overflow) {
+        BufferOverflowStrategy strategy = overflow == Overflow.LATEST
+            ? BufferOverflowStrategy.DROP_OLDEST
+            : BufferOverflowStrategy.DROP_LATEST;
+        return Flux.<UserChangeEvent>create(sink -> attach(sink, lastEventId), FluxSink.OverflowStrategy.BUFFER)
+            .onBackpressureBuffer(subscriberBuffer, dropped -> {
+                droppedEvents.incrementAndGet();
+                logger.debug("Dropped change {} for a slow subscriber", dropped.sequence());
+            }, strategy)
+            .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+            .doFinally(signal -> subscribers.decrementAndGet());
+    }
+
+    public int subscriberCount() {
+        return subscribers.get();
+    }
+
+    public long droppedEvents() {
+        return droppedEvents.get();
+    }
+
+    private synchronized void publish(UserChangeEvent event) {
+        recent.addLast(event);
+        if (recent.size() > replaySize) {
+            recent.removeFirst();
+        }
+        // No subscribers is fine; each subscriber requests unbounded and buffers on its own
+        events.tryEmitNext(event);
+    }
+
+    /**
+     * Replays and subscribes under the publish lock, so no event falls between the two.
+     */
+    private synchronized void attach(FluxSink<UserChangeEvent> sink, Long lastEventId) {
+        if (lastEventId != null) {
+            replay(lastEventId).forEach(sink::next);
+        }
+        Disposable live = events.asFlux().subscribe(sink::next, sink::error, sink::complete);
+        sink.onDispose(live);
+    }
+
+    private List<UserChangeEvent> replay(long lastEventId) {
+        List<UserChangeEvent> missed = new ArrayList<>();
+        UserChangeEvent oldest = recent.peekFirst();
+        long retainedFrom = oldest != null ? oldest.sequence() : horizon + 1;
+        if (lastEventId + 1 < retainedFrom) {
+            missed.add(new UserChangeEvent(retainedFrom - 1, UserChangeEvent.Type.RESYNC, null, null, Instant.now()));
+        }
+        for (UserChangeEvent event : recent) {
+            if (event.sequence() > lastEventId) {
+                missed.add(event);
+            }
+        }
+        return missed;
+    }
+}
@@ -0,0 +1,364 @@
+package io.will.webfluxdemo.service;
+
+import io.r2dbc.spi.R2dbcNonTransientException;
+import io.will.webfluxdemo.exception.ServiceUnavailableException;
+import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.repository.UserRepository;
+import io.will.webfluxdemo.repository.UserWriteAheadLog;
+import io.will.webfluxdemo.search.UserSearchIndex;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind buffer in front of {@link UserRepository}.
+ *
+ * - Creates and deletes are durably appended to the {@link UserWriteAheadLog} first, then
+ *   written to the database in batches of up to {@code batch-size} mutations, or whatever
+ *   arrived within {@code flush-window}; runs of creates become one upsert statement.
+ * - Creates are acknowledged once logged. Deletes complete once they reach the database,
+ *   since they report whether a user existed.
+ * - Creates without a name or email are rejected with 400 before they are logged. A logged
+ *   mutation the database still refuses for a non-transient reason is dead-lettered (logged and
+ *   skipped) rather than retried, so it cannot hold up the mutations behind it.
+ * - At most {@code capacity} mutations may wait for a flush; beyond that requests are
+ *   rejected with 503 instead of queueing without bound.
+ * - Every {@code snapshot-interval} the database is checkpointed to disk and the log is
+ *   trimmed up to the last flushed sequence, so startup replays only the tail after it.
+ * - Unflushed creates are served by {@link #findById}.
+ * - The {@link UserSearchIndex} is loaded after replay and updated, and the {@link UserChangeFeed}
+ *   notified, as mutations are logged.
+ */
+@Service
+@DependsOnDatabaseInitialization
+public class UserWriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserWriteBehindService.class);
+
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserWriteAheadLog writeAheadLog;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    @Autowired
+    private UserChangeFeed userChangeFeed;
+
+    @Value("${app.users.write-behind.capacity:10000}")
+    private int capacity;
+
+    @Value("${app.users.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.users.write-behind.flush-window:50ms}")
+    private Duration flushWindow;
+
+    @Value("${app.users.write-behind.snapshot-interval:1m}")
+    private Duration snapshotInterval;
+
+    @Value("${app.users.write-behind.shutdown-timeout:30s}")
+    private Duration shutdownTimeout;
+
+    private final Sinks.Many<Mutation> mutations = Sinks.many().unicast().onBackpressureBuffer();
+    private final Map<Long, User> unflushed = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong appliedSequence = new AtomicLong();
+    private final CountDownLatch drained = new CountDownLatch(1);
+    private volatile long snapshotSequence;
+    private Disposable flusher;
+    private Disposable snapshots;
+
+    /**
+     * A logged create ({@code user} set) or delete ({@code deleteId} set) waiting for a flush.
+     */
+    private record Mutation(long sequence, User user, Long deleteId, MonoSink<Boolean> deleted) {
+    }
+
+    @PostConstruct
+    void start() {
+        List<UserWriteAheadLog.Entry> tail = writeAheadLog.replay();
+        if (!tail.isEmpty()) {
+            long started = System.nanoTime();
+            List<Mutation> recovered = tail.stream()
+                    .map(entry -> new Mutation(entry.sequence(), entry.user(), entry.userId(), null))
+                    .toList();
+            apply(recovered).block();
+            appliedSequence.set(tail.get(tail.size() - 1).sequence());
+            snapshot().block();
+            logger.info("Replayed {} user mutations from the write-ahead log in {} ms",
+                    tail.size(), Duration.ofNanos(System.nanoTime() - started).toMillis());
+        }
+
+        userSearchIndex.load(userRepository.findAll()).block();
+        userChangeFeed.startAfter(writeAheadLog.lastSequence());
+
+        flusher = mutations.asFlux()
+                .bufferTimeout(batchSize, flushWindow, true)
+                .concatMap(this::flush)
+                .doFinally(signal -> drained.countDown())
+                .subscribe();
+        snapshots = Flux.interval(snapshotInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> snapshot().onErrorResume(e -> {
+                    logger.error("Failed to snapshot users", e);
+                    return Mono.empty();
+                }))
+                .subscribe();
+        logger.info("User write-behind started: capacity={}, batch-size={}, flush-window={}, snapshot-interval={}",
+                capacity, batchSize, flushWindow, snapshotInterval);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        snapshots.dispose();
+        mutations.emitComplete(Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+        if (!drained.await(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            logger.warn("{} user mutations still unflushed at shutdown, they will be replayed on startup", queued.get());
+            flusher.dispose();
+        }
+        snapshot().block(shutdownTimeout);
+    }
+
+    /**
+     * Checkpoints the database to disk and trims the log up to the last flushed mutation.
+     */
+    public Mono<Void> snapshot() {
+        return Mono.defer(() -> {
+            long applied = appliedSequence.get();
+            if (applied <= snapshotSequence) {
+                return Mono.empty();
+            }
+            // Everything up to the captured sequence is committed, so the checkpoint covers it
+            return userRepository.checkpoint()
+                    .then(writeAheadLog.checkpoint(applied))
+                    .doOnSuccess(v -> {
+                        snapshotSequence = applied;
+                        logger.debug("User snapshot taken at sequence {}", applied);
+                    });
+        });
+    }
+
+    /**
+     * Completes with the user once the create is durable in the write-ahead log.
+     */
+    public Mono<User> create(User user) {
+        try {
+            validate(user);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        return Mono.defer(() -> {
+            reserveSlot();
+            // Subscribed here rather than by the caller, so a cancelled request
+            // cannot leave a logged create that is never flushed
+            Mono<Long> durable = writeAheadLog.appendCreate(user)
+                    .doOnSuccess(sequence -> {
+                        unflushed.put(user.id(), user);
+                        userSearchIndex.add(user);
+                        userChangeFeed.publishCreated(sequence, user);
+                        emit(new Mutation(sequence, user, null, null));
+                    })
+                    .doOnError(e -> queued.decrementAndGet())
+                    .cache();
+            durable.subscribe(sequence -> { }, e -> logger.error("Failed to log create of user {}", user.id(), e));
+            return durable.thenReturn(user);
+        });
+    }
+
+    /**
+     * @return true if a user was deleted, once the delete has reached the database
+     */
+    public Mono<Boolean> delete(Long id) {
+        return Mono.create(sink -> {
+            reserveSlot();
+            writeAheadLog.appendDelete(id).subscribe(
+                    sequence -> {
+                        userSearchIndex.remove(id);
+                        userChangeFeed.publishDeleted(sequence, id);
+                        emit(new Mutation(sequence, null, id, sink));
+                    },
+                    e -> {
+                        queued.decrementAndGet();
+                        sink.error(e);
+                    });
+        });
+    }
+
+    /**
+     * Looks up a user, including creates that have not been flushed yet.
+     */
+    public Mono<User> findById(Long id) {
+        return Mono.justOrEmpty(unflushed.get(id))
+                .switchIfEmpty(Mono.defer(() -> userRepository.findById(id)));
+    }
+
+    public int queuedMutations() {
+        return queued.get();
+    }
+
+    // Mirrors the NOT NULL VARCHAR(255) columns: anything the table would refuse must not reach the log
+    private static void validate(User user) {
+        if (user.id() == null) {
+            throw new IllegalArgumentException("User id is required");
+        }
+        requireText("name", user.name());
+        requireText("email", user.email());
+    }
+
+    private static void requireText(String field, String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("User " + field + " is required");
+        }
+        if (value.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("User " + field + " must be at most " + MAX_TEXT_LENGTH + " characters");
+        }
+    }
+
+    private void reserveSlot() {
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            throw new ServiceUnavailableException("User write buffer is full");
+        }
+    }
+
+    private void emit(Mutation mutation) {
+        mutations.emitNext(mutation, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+    }
+
+    private Mono<Void> flush(List<Mutation> batch) {
+        int creates = (int) batch.stream().filter(mutation -> mutation.user() != null).count();
+        return apply(batch)
+                .doOnSuccess(v -> {
+                    appliedSequence.set(batch.get(batch.size() - 1).sequence());
+                    queued.addAndGet(-batch.size());
+                    logger.debug("Flushed {} user mutations ({} creates)", batch.size(), creates);
+                });
+    }
+
+    /**
+     * Applies the mutations in order. A batch failing for a non-transient reason is applied again one
+     * mutation at a time, so only the mutations that still fail on their own are dead-lettered.
+     */
+    private Mono<Void> apply(List<Mutation> batch) {
+        return applyOnce(batch)
+                .onErrorResume(UserWriteBehindService::isNonTransient, e -> {
+                    if (batch.size() == 1) {
+                        return deadLetter(batch.get(0), e);
+                    }
+                    logger.warn("Batch of {} user mutations failed, applying them one by one: {}",
+                            batch.size(), e.getMessage());
+                    return Flux.fromIterable(batch)
+                            .concatMap(mutation -> apply(List.of(mutation)))
+                            .then();
+                });
+    }
+
+    private Mono<Void> applyOnce(List<Mutation> batch) {
+        return Flux.fromIterable(steps(batch))
+                .concatMap(step -> step)
+                .then()
+                // Every step is idempotent and the mutations are in the log, so transient failures are retried
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100))
+                        .maxBackoff(Duration.ofSeconds(5))
+                        .filter(e -> !isNonTransient(e))
+                        .doBeforeRetry(signal -> logger.warn("User flush failed, retrying: {}",
+                                signal.failure().getMessage())));
+    }
+
+    /**
+     * Failures a retry cannot fix: values rejected by the driver's bind or by a table constraint.
+     */
+    private static boolean isNonTransient(Throwable e) {
+        return e instanceof R2dbcNonTransientException
+                || e instanceof NonTransientDataAccessException
+                || e instanceof IllegalArgumentException
+                || e instanceof NullPointerException;
+    }
+
+    /**
+     * Skips a mutation the database refuses, so later mutations are not stuck behind it.
+     * A skipped create no longer shows in lookups, and the search index goes back to the stored user.
+     */
+    private Mono<Void> deadLetter(Mutation mutation, Throwable e) {
+        if (mutation.user() == null) {
+            logger.error("Dead-lettering delete of user {} at sequence {}", mutation.deleteId(), mutation.sequence(), e);
+            if (mutation.deleted() != null) {
+                mutation.deleted().error(e);
+            }
+            return Mono.empty();
+        }
+        User user = mutation.user();
+        logger.error("Dead-lettering create of {} at sequence {}", user, mutation.sequence(), e);
+        unflushed.remove(user.id(), user);
+        userSearchIndex.remove(user.id());
+        return userRepository.findById(user.id())
+                .doOnNext(userSearchIndex::add)
+                .then()
+                .onErrorResume(lookupError -> {
+                    logger.warn("Failed to restore user {} in the search index: {}", user.id(), lookupError.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Runs of consecutive creates become one batched upsert; deletes stay in order between them.
+     */
+    private List<Mono<?>> steps(List<Mutation> batch) {
+        List<Mono<?>> steps = new ArrayList<>();
+        List<UserRepository.Modification> run = new ArrayList<>();
+        for (Mutation mutation : batch) {
+            if (mutation.user() != null) {
+                run.add(new UserRepository.Modification(mutation.sequence(), mutation.user()));
+                continue;
+            }
+            if (!run.isEmpty()) {
+                steps.add(saveRun(run));
+                run = new ArrayList<>();
+            }
+            MonoSink<Boolean> deleted = mutation.deleted();
+            steps.add(userRepository.deleteById(mutation.deleteId(), mutation.sequence())
+                    .doOnNext(existed -> {
+                        if (deleted != null) {
+                            deleted.success(existed);
+                        }
+                    }));
+        }
+        if (!run.isEmpty()) {
+            steps.add(saveRun(run));
+        }
+        return steps;
+    }
+
+    private Mono<Long> saveRun(List<UserRepository.Modification> run) {
+        return userRepository.saveAll(run)
+                .doOnSuccess(rows -> run.forEach(modification ->
+                        unflushed.remove(modification.user().id(), modification.user())));
+    }
+}
@@ -0,0 +1,236 @@
+package io.will.webfluxdemo.sse;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.will.webfluxdemo.exception.DeadlineExceededException;
+import io.will.webfluxdemo.exception.ServiceUnavailableException;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps long-lived SSE responses healthy and bounded.
+ *
+ * - A comment heartbeat is sent every {@code heartbeat-interval}, so proxies don't drop
+ *   a stream that is waiting for a slow export.
+ * - A stream is closed after {@code idle-timeout} without data, or after {@code max-lifetime}.
+ *   Result streams are exempt from the idle timeout, since their deadline already bounds them;
+ *   one cut off by {@code max-lifetime} ends with a 504 {@code error} event (stage "stream"),
+ *   so the client can tell it from a finished one. {@code app.deadline.max-budget} may not
+ *   exceed {@code max-lifetime}.
+ * - At most {@code max-connections} streams are open at once; beyond that, and while
+ *   shutting down, new streams are rejected with 503.
+ * - On shutdown resumable streams are closed right away (clients reconnect elsewhere),
+ *   the rest get up to {@code drain-timeout} to finish.
+ * - A result stream that fails before anything was sent fails the request as usual (e.g. 504);
+ *   once a heartbeat has committed the 200, the failure is sent as an {@code error} event instead.
+ * - Open, rejected and closed streams are published as {@code sse.connections.*} metrics.
+ */
+@Component
+public class SseConnectionManager implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(SseConnectionManager.class);
+
+    @Value("${app.sse.heartbeat-interval:15s}")
+    private Duration heartbeatInterval;
+
+    @Value("${app.sse.idle-timeout:5m}")
+    private Duration idleTimeout;
+
+    @Value("${app.sse.max-lifetime:30m}")
+    private Duration maxLifetime;
+
+    @Value("${app.sse.max-connections:1000}")
+    private int maxConnections;
+
+    @Value("${app.sse.drain-timeout:20s}")
+    private Duration drainTimeout;
+
+    @Value("${app.deadline.max-budget:5m}")
+    private Duration maxBudget;
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger active = new AtomicInteger();
+    private final Sinks.Empty<Void> closeResumable = Sinks.empty();
+    private final Sinks.Empty<Void> closeAll = Sinks.empty();
+    private volatile boolean running;
+    private volatile boolean draining;
+
+    public SseConnectionManager(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("sse.connections.active", active, AtomicInteger::get)
+            .description("Open SSE streams")
+            .register(meterRegistry);
+    }
+
+    /**
+     * A stream carrying a single result, e.g. a long-running export.
+     * The data is the result, or the error body if the result fails after the response was committed.
+     */
+    public <T> Flux<ServerSentEvent<Object>> result(String stream, Mono<T> result) {
+        return stream(stream, result.map(value -> ServerSentEvent.<Object>builder(value).build()), false, true);
+    }
+
+    /**
+     * @param resumable whether clients can resume the stream elsewhere, so it can be closed at once on shutdown
+     */
+    public <T> Flux<ServerSentEvent<T>> events(String stream, Publisher<ServerSentEvent<T>> events, boolean resumable) {
+        return stream(stream, events, resumable, false);
+    }
+
+    /**
+     * @param result whether this is a single result, which skips the idle timeout and reports failures as events
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Flux<ServerSentEvent<T>> stream(String stream, Publisher<ServerSentEvent<T>> events,
+                                                 boolean resumable, boolean result) {
+        return Flux.defer(() -> {
+            admit(stream);
+            AtomicReference<String> closeReason = new AtomicReference<>("complete");
+            AtomicBoolean committed = new AtomicBoolean();
+            Mono<Boolean> shutdown = (resumable ? closeResumable : closeAll).asMono()
+                .thenReturn(true)
+                .doOnNext(closed -> closeReason.set("drain"));
+
+            Flux<ServerSentEvent<T>> data = Flux.from(events);
+            if (!result) {
+                data = data.timeout(idleTimeout)
+                    .onErrorResume(TimeoutException.class, e -> {
+                        closeReason.set("idle");
+                        return Mono.empty();
+                    });
+            }
+            data = data
+                .takeUntilOther(Mono.delay(maxLifetime).doOnNext(tick -> closeReason.set("lifetime")))
+                .concatWith(Mono.defer(() -> result && "lifetime".equals(closeReason.get())
+                    ? Mono.error(new DeadlineExceededException("stream", maxLifetime))
+                    : Mono.empty()))
+                .takeUntilOther(shutdown);
+
+            return data.publish(shared -> Flux.merge(shared, Flux.interval(heartbeatInterval)
+                    .map(tick -> ServerSentEvent.<T>builder().comment("heartbeat").build())
+                    .takeUntilOther(shared.then().thenReturn(true))))
+                .doOnNext(event -> committed.set(true))
+                .onErrorResume(error -> result && committed.get(), error -> {
+                    if (!"lifetime".equals(closeReason.get())) {
+                        closeReason.set("error");
+                    }
+                    logger.warn("SSE stream {} failed after the response was committed: {}", stream, error.toString());
+                    return Mono.just((ServerSentEvent<T>) errorEvent(error));
+                })
+                .doFinally(signal -> {
+                    active.decrementAndGet();
+                    String reason = switch (signal) {
+                        case CANCEL -> "cancel";
+                        case ON_ERROR -> "error";
+                        default -> closeReason.get();
+                    };
+                    Counter.builder("sse.connections.closed").tag("stream", stream).tag("reason", reason)
+                        .register(meterRegistry).increment();
+                    logger.debug("SSE stream {} closed: {}, {} still open", stream, reason, active.get());
+                });
+        });
+    }
+
+    /**
+     * The same body the exception handler would have returned, had the status still been open.
+     */
+    private static ServerSentEvent<Object> errorEvent(Throwable error) {
+        HttpStatus status = error instanceof DeadlineExceededException
+            ? HttpStatus.GATEWAY_TIMEOUT : HttpStatus.INTERNAL_SERVER_ERROR;
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", status.value());
+        body.put("error", status.getReasonPhrase());
+        body.put("message", error.getMessage());
+        if (error instanceof DeadlineExceededException deadlineExceeded) {
+            body.put("stage", deadlineExceeded.getStage());
+        }
+        return ServerSentEvent.<Object>builder(body).event("error").build();
+    }
+
+    public int activeConnections() {
+        return active.get();
+    }
+
+    private void admit(String stream) {
+        if (draining) {
+            reject(stream, "draining");
+            throw new ServiceUnavailableException("Server is shutting down");
+        }
+        if (active.incrementAndGet() > maxConnections) {
+            active.decrementAndGet();
+            reject(stream, "limit");
+            throw new ServiceUnavailableException("Too many open event streams (limit " + maxConnections + ")");
+        }
+        Counter.builder("sse.connections.opened").tag("stream", stream).register(meterRegistry).increment();
+    }
+
+    private void reject(String stream, String reason) {
+        Counter.builder("sse.connections.rejected").tag("stream", stream).tag("reason", reason)
+            .register(meterRegistry).increment();
+    }
+
+    @Override
+    public void start() {
+        // A result stream must be able to outlive its deadline, or the deadline never reaches the client
+        if (maxBudget.compareTo(maxLifetime) > 0) {
+            throw new IllegalStateException("app.deadline.max-budget (" + maxBudget
+                + ") must not exceed app.sse.max-lifetime (" + maxLifetime + ")");
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        stop(() -> { });
+    }
+
+    /**
+     * Runs before the web server shuts down (default phase), so the server's own graceful
+     * shutdown isn't held up by streams that would never end.
+     */
+    @Override
+    public void stop(Runnable callback) {
+        draining = true;
+        running = false;
+        logger.info("Draining {} open SSE streams, waiting up to {}", active.get(), drainTimeout);
+        closeResumable.tryEmitEmpty();
+        Mono.firstWithSignal(allClosed(), Mono.delay(drainTimeout).then())
+            .then(Mono.fromRunnable(closeAll::tryEmitEmpty))
+            .then(allClosed().timeout(Duration.ofSeconds(1), Mono.empty()))
+            .doFinally(signal -> {
+                logger.info("SSE drain finished, {} streams still open", active.get());
+                callback.run();
+            })
+            .subscribe();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private Mono<Void> allClosed() {
+        return Flux.interval(Duration.ZERO, Duration.ofMillis(50))
+            .filter(tick -> active.get() == 0)
+            .next()
+            .then();
+    }
+}
@@ -0,0 +1,100 @@
+package io.will.webfluxdemo.tracing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Keeps timings of export stages for the most recent requests, for /api/debug/traces.
+ *
+ * - A stage is timed from subscription to completion, error or cancellation, and is filed
+ *   under the request id found in the Reactor {@code Context}; without one nothing is recorded.
+ * - The thread that finished the stage is kept too, to show scheduler hops.
+ * - Only the last {@code buffer-size} requests are kept, oldest dropped first.
+ */
+@Component
+public class ExportTraceRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportTraceRecorder.class);
+
+    public record Span(String stage, String thread, Instant startedAt, long durationMillis, String outcome) {
+    }
+
+    public record Trace(String requestId, Instant startedAt, List<Span> spans) {
+    }
+
+    @Value("${app.tracing.buffer-size:200}")
+    private int bufferSize;
+
+    private final LinkedHashMap<String, List<Span>> traces = new LinkedHashMap<>();
+
+    /**
+     * Use with {@code mono.transform(traceRecorder.span("query"))}.
+     */
+    public <T> Function<Mono<T>, Mono<T>> span(String stage) {
+        return mono -> mono.transformDeferredContextual((source, context) -> {
+            Optional<String> requestId = context.getOrEmpty(RequestIdThreadLocalAccessor.KEY);
+            if (requestId.isEmpty()) {
+                return source;
+            }
+            Instant startedAt = Instant.now();
+            long start = System.nanoTime();
+            AtomicBoolean finished = new AtomicBoolean();
+            Consumer<String> finish = outcome -> {
+                if (finished.compareAndSet(false, true)) {
+                    record(requestId.get(), new Span(stage, Thread.currentThread().getName(), startedAt,
+                            Duration.ofNanos(System.nanoTime() - start).toMillis(), outcome));
+                }
+            };
+            // Recorded before the signal travels on (unlike doFinally), so a caller that has
+            // the result can already see the span
+            return source
+                    .doOnSuccess(value -> finish.accept("complete"))
+                    .doOnError(e -> finish.accept("error"))
+                    .doOnCancel(() -> finish.accept("cancel"));
+        });
+    }
+
+    public List<Trace> traces(int limit) {
+        synchronized (traces) {
+            return traces.sequencedEntrySet().reversed().stream()
+                    .limit(limit)
+                    .map(entry -> toTrace(entry.getKey(), entry.getValue()))
+                    .toList();
+        }
+    }
+
+    public Optional<Trace> trace(String requestId) {
+        synchronized (traces) {
+            return Optional.ofNullable(traces.get(requestId)).map(spans -> toTrace(requestId, spans));
+        }
+    }
+
+    private void record(String requestId, Span span) {
+        logger.debug("Export stage {} took {}ms ({})", span.stage(), span.durationMillis(), span.outcome());
+        synchronized (traces) {
+            traces.computeIfAbsent(requestId, id -> new ArrayList<>()).add(span);
+            if (traces.size() > bufferSize) {
+                traces.pollFirstEntry();
+            }
+        }
+    }
+
+    private static Trace toTrace(String requestId, List<Span> spans) {
+        List<Span> ordered = new ArrayList<>(spans);
+        ordered.sort((a, b) -> a.startedAt().compareTo(b.startedAt()));
+        return new Trace(requestId, ordered.get(0).startedAt(), List.copyOf(ordered));
+    }
+}
@@ -0,0 +1,36 @@
+package io.will.webfluxdemo.tracing;
+
+import io.micrometer.context.ThreadLocalAccessor;
+import org.slf4j.MDC;
+
+/**
+ * Copies the request id between the Reactor {@code Context} and the logging MDC.
+ *
+ * Registered through META-INF/services, so with {@code spring.reactor.context-propagation=auto}
+ * Reactor restores it on every thread an operator runs on, including scheduler hops.
+ * Log lines then carry {@code %X{requestId}} without any code passing the id around.
+ */
+public class RequestIdThreadLocalAccessor implements ThreadLocalAccessor<String> {
+
+    public static final String KEY = "requestId";
+
+    @Override
+    public Object key() {
+        return KEY;
+    }
+
+    @Override
+    public String getValue() {
+        return MDC.get(KEY);
+    }
+
+    @Override
+    public void setValue(String value) {
+        MDC.put(KEY, value);
+    }
+
+    @Override
+    public void setValue() {
+        MDC.remove(KEY);
+    }
+}
@@ -0,0 +1,11 @@
+package io.will.webfluxdemo.websocket;
+
+/**
+ * Client frame on {@code /ws/exports}.
+ *
+ * - {@code {"type":"submit","jobId":"j1","mode":"parallel","format":"csv"}} starts an export;
+ *   {@code consumer} is required for the incremental mode.
+ * - {@code {"type":"cancel","jobId":"j1"}} cancels a queued or running export.
+ */
+public record ExportJobCommand(String type, String jobId, String mode, String format, String consumer) {
+}
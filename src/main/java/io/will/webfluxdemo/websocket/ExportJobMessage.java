@@ -0,0 +1,21 @@
+package io.will.webfluxdemo.websocket;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.will.webfluxdemo.model.ExportResult;
+
+/**
+ * Server frame on {@code /ws/exports}, one per job state change.
+ * A job goes QUEUED, STARTED, then COMPLETED, FAILED or CANCELLED; REJECTED and
+ * ERROR answer frames that could not be accepted.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ExportJobMessage(String type, String jobId, ExportResult result, String error) {
+
+    static ExportJobMessage of(String type, String jobId) {
+        return new ExportJobMessage(type, jobId, null, null);
+    }
+
+    static ExportJobMessage failure(String type, String jobId, String error) {
+        return new ExportJobMessage(type, jobId, null, error);
+    }
+}
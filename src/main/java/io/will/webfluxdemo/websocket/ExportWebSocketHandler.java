@@ -0,0 +1,282 @@
+package io.will.webfluxdemo.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.will.webfluxdemo.service.DataExportService;
+import io.will.webfluxdemo.service.ExportMode;
+import io.will.webfluxdemo.tracing.RequestIdThreadLocalAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs many exports over one WebSocket connection ({@code /ws/exports}).
+ *
+ * - Jobs are identified by a client-chosen {@code jobId}; every state change of every job
+ *   is sent as an {@link ExportJobMessage} on the same connection, in whatever order jobs finish.
+ * - Each connection runs at most {@code max-concurrent-jobs} exports at a time; further
+ *   submissions wait as QUEUED, and beyond {@code max-queued-jobs} they are REJECTED.
+ * - A job can be cancelled on its own; closing the connection cancels all of its jobs.
+ * - Each job's messages, and replies to frames about it, wait for the client in the job's own
+ *   buffer of {@code max-pending-replies} and are requested one at a time, so jobs don't hold
+ *   each other back. A job whose buffer overflows is cancelled and ends with FAILED; the
+ *   connection and its other jobs carry on.
+ * - Replies about no running job (malformed frames, unknown jobs, rejections) share a buffer of
+ *   the same size; a client that keeps sending such frames without reading overflows it and
+ *   is disconnected with 1008 (policy violation).
+ */
+@Component
+public class ExportWebSocketHandler implements WebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportWebSocketHandler.class);
+
+    @Lazy
+    @Autowired
+    private DataExportService dataExportService;
+
+    @Value("${app.export.websocket.max-concurrent-jobs:8}")
+    private int maxConcurrentJobs;
+
+    @Value("${app.export.websocket.max-queued-jobs:256}")
+    private int maxQueuedJobs;
+
+    @Value("${app.export.websocket.max-pending-replies:256}")
+    private int maxPendingReplies;
+
+    // Same Jackson setup as the WebFlux HTTP codecs, so results look alike on both transports
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final AtomicLong requestIds = new AtomicLong(System.currentTimeMillis());
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        Connection connection = new Connection(session);
+        Mono<Void> inbound = session.receive()
+            .map(WebSocketMessage::getPayloadAsText)
+            .doOnNext(connection::onFrame)
+            .then()
+            .doFinally(signal -> connection.close());
+
+        Flux<WebSocketMessage> outbound = connection.messages()
+            .map(message -> session.textMessage(toJson(message)));
+
+        logger.info("Export WebSocket {} opened", session.getId());
+        return Mono.zip(inbound, session.send(outbound)).then()
+            .doFinally(signal -> logger.info("Export WebSocket {} closed: {}", session.getId(), signal));
+    }
+
+    private String toJson(ExportJobMessage message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize export job message", e);
+        }
+    }
+
+    /**
+     * Per-connection state: the job queue, the jobs not yet finished, and the outgoing frames.
+     */
+    private class Connection {
+
+        private final WebSocketSession session;
+        private final String id;
+        // Replies about no running job
+        private final Sinks.Many<ExportJobMessage> control =
+            Sinks.many().unicast().onBackpressureBuffer(new ArrayBlockingQueue<>(maxPendingReplies));
+        // Accepted jobs, once for their messages and once to run them
+        private final Sinks.Many<Job> accepted = Sinks.many().unicast().onBackpressureBuffer();
+        private final Sinks.Many<Job> submissions = Sinks.many().unicast().onBackpressureBuffer();
+        private final Sinks.Empty<Void> closed = Sinks.empty();
+        private final Map<String, Job> pending = new ConcurrentHashMap<>();
+        // Jobs with messages not yet sent, finished or not
+        private final AtomicInteger undelivered = new AtomicInteger();
+
+        Connection(WebSocketSession session) {
+            this.session = session;
+            this.id = session.getId();
+        }
+
+        Flux<ExportJobMessage> messages() {
+            Flux<ExportJobMessage> jobMessages = accepted.asFlux()
+                .flatMap(job -> job.messages()
+                        .onErrorResume(e -> Mono.just(ExportJobMessage.failure("FAILED", job.command().jobId(), e.getMessage())))
+                        .doFinally(signal -> undelivered.decrementAndGet()),
+                    Integer.MAX_VALUE, 1);
+            Flux<ExportJobMessage> runs = submissions.asFlux()
+                .flatMap(this::run, maxConcurrentJobs)
+                .thenMany(Flux.empty());
+            return Flux.merge(1, control.asFlux(), jobMessages, runs)
+                .takeUntilOther(closed.asMono().thenReturn(true));
+        }
+
+        /**
+         * Frames arrive one at a time on the receive thread, so emissions here are serialized.
+         */
+        void onFrame(String frame) {
+            ExportJobCommand command;
+            try {
+                command = objectMapper.readValue(frame, ExportJobCommand.class);
+            } catch (JsonProcessingException e) {
+                reply(ExportJobMessage.failure("ERROR", null, "Malformed frame: " + e.getOriginalMessage()));
+                return;
+            }
+            if (command.jobId() == null || command.jobId().isBlank()) {
+                reply(ExportJobMessage.failure("ERROR", null, "jobId is required"));
+                return;
+            }
+            switch (command.type() == null ? "" : command.type()) {
+                case "submit" -> submit(command);
+                case "cancel" -> cancel(command.jobId());
+                default -> reply(ExportJobMessage.failure("ERROR", command.jobId(), "Unknown frame type: " + command.type()));
+            }
+        }
+
+        void close() {
+            closed.tryEmitEmpty();
+            submissions.tryEmitComplete();
+            accepted.tryEmitComplete();
+            pending.values().forEach(Job::cancel);
+        }
+
+        private void submit(ExportJobCommand command) {
+            if (pending.containsKey(command.jobId())) {
+                reply(ExportJobMessage.failure("REJECTED", command.jobId(), "Job id already in use"));
+                return;
+            }
+            if (undelivered.get() >= maxConcurrentJobs + maxQueuedJobs) {
+                reply(ExportJobMessage.failure("REJECTED", command.jobId(), "Too many jobs on this connection"));
+                return;
+            }
+            try {
+                ExportMode.fromString(command.mode());
+            } catch (IllegalArgumentException e) {
+                reply(ExportJobMessage.failure("REJECTED", command.jobId(), e.getMessage()));
+                return;
+            }
+            Job job = new Job(command, maxPendingReplies);
+            pending.put(command.jobId(), job);
+            undelivered.incrementAndGet();
+            job.emit(ExportJobMessage.of("QUEUED", command.jobId()));
+            accepted.tryEmitNext(job);
+            submissions.tryEmitNext(job);
+        }
+
+        private void cancel(String jobId) {
+            Job job = pending.get(jobId);
+            if (job == null) {
+                reply(ExportJobMessage.failure("ERROR", jobId, "No such job"));
+                return;
+            }
+            job.cancel();
+        }
+
+        private Mono<Void> run(Job job) {
+            String jobId = job.command().jobId();
+            if (job.cancelRequested) {
+                // Cancelled while still queued: the export never starts
+                pending.remove(jobId);
+                job.emit(ExportJobMessage.of("CANCELLED", jobId));
+                job.complete();
+                return Mono.empty();
+            }
+            long requestId = requestIds.incrementAndGet();
+            ExportJobCommand command = job.command();
+            Mono<ExportJobMessage> export = Mono.defer(() -> dataExportService.export(
+                    ExportMode.fromString(command.mode()), requestId, command.format(), command.consumer()))
+                .map(result -> new ExportJobMessage("COMPLETED", jobId, result, null))
+                .onErrorResume(e -> Mono.just(ExportJobMessage.failure("FAILED", jobId, e.getMessage())))
+                // Jobs share the handshake's request id; suffix it so each job is traced on its own
+                .contextWrite(context -> context.put(RequestIdThreadLocalAccessor.KEY,
+                    context.getOrDefault(RequestIdThreadLocalAccessor.KEY, id) + "/" + jobId));
+            Mono<ExportJobMessage> cancelled = job.cancelled().asMono()
+                .thenReturn(ExportJobMessage.of("CANCELLED", jobId));
+
+            logger.debug("Export job {} on connection {} started as request {}", jobId, id, requestId);
+            return Flux.concat(
+                    Mono.just(ExportJobMessage.of("STARTED", jobId)),
+                    Mono.firstWithSignal(export, cancelled))
+                .doOnNext(job::emit)
+                .doFinally(signal -> {
+                    pending.remove(jobId);
+                    job.complete();
+                })
+                .then();
+        }
+
+        /**
+         * Sends a reply to a frame: about a running job in that job's buffer, otherwise in the connection's.
+         */
+        private void reply(ExportJobMessage message) {
+            Job job = message.jobId() != null ? pending.get(message.jobId()) : null;
+            if (job != null) {
+                job.emit(message);
+            } else if (control.tryEmitNext(message) == Sinks.EmitResult.FAIL_OVERFLOW) {
+                logger.warn("Export WebSocket {} has {} unread replies, closing it", id, maxPendingReplies);
+                close();
+                session.close(CloseStatus.POLICY_VIOLATION.withReason("Too many unread replies")).subscribe();
+            }
+        }
+    }
+
+    private static final class Job {
+
+        private final ExportJobCommand command;
+        private final Sinks.Many<ExportJobMessage> messages;
+        private final Sinks.Empty<Void> cancelled = Sinks.empty();
+        private volatile boolean cancelRequested;
+
+        Job(ExportJobCommand command, int maxPendingMessages) {
+            this.command = command;
+            this.messages = Sinks.many().unicast().onBackpressureBuffer(new ArrayBlockingQueue<>(maxPendingMessages));
+        }
+
+        ExportJobCommand command() {
+            return command;
+        }
+
+        Flux<ExportJobMessage> messages() {
+            return messages.asFlux();
+        }
+
+        Sinks.Empty<Void> cancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Both the receive thread and the job's run emit, so emissions are serialized here.
+         * Overflowing the buffer cancels the job and ends its messages with FAILED.
+         */
+        synchronized void emit(ExportJobMessage message) {
+            if (messages.tryEmitNext(message) == Sinks.EmitResult.FAIL_OVERFLOW) {
+                messages.tryEmitError(new IllegalStateException("Too many unread messages for this job"));
+                cancel();
+            }
+        }
+
+        synchronized void complete() {
+            messages.tryEmitComplete();
+        }
+
+        void cancel() {
+            cancelRequested = true;
+            cancelled.tryEmitEmpty();
+        }
+    }
+}
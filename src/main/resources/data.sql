@@ -0,0 +1,8 @@
+-- Seed users only into an empty table so deletions survive restarts
+INSERT INTO users (id, name, email)
+SELECT * FROM (VALUES
+    (1, 'Alice', 'alice@example.com'),
+    (2, 'Bob', 'bob@example.com'),
+    (3, 'Charlie', 'charlie@example.com')
+) AS seed(id, name, email)
+WHERE NOT EXISTS (SELECT 1 FROM users);
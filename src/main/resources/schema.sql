@@ -0,0 +1,21 @@
+CREATE TABLE IF NOT EXISTS users (
+    id    BIGINT       PRIMARY KEY,
+    name  VARCHAR(255) NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    -- Write-ahead log sequence of the create that last wrote the row (0 for seed rows)
+    modified_seq BIGINT NOT NULL DEFAULT 0
+);
+
+-- Tables created before incremental exports followed modifications
+ALTER TABLE users ADD COLUMN IF NOT EXISTS modified_seq BIGINT NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS users_modified_seq ON users (modified_seq);
+
+-- Users deleted, kept as tombstones so incremental exports can pass the deletes on
+CREATE TABLE IF NOT EXISTS user_deletions (
+    id           BIGINT PRIMARY KEY,
+    -- Write-ahead log sequence of the last delete of the user
+    modified_seq BIGINT NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS user_deletions_modified_seq ON user_deletions (modified_seq);
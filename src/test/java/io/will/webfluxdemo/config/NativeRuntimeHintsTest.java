@@ -0,0 +1,31 @@
+package io.will.webfluxdemo.config;
+
+import io.will.webfluxdemo.model.ExportResult;
+import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.service.ExportJobTracker;
+import io.will.webfluxdemo.websocket.ExportJobCommand;
+import io.will.webfluxdemo.websocket.ExportJobMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NativeRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    void registerHints_ShouldCoverJsonModelsAndErrorBodies() {
+        new NativeRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(User.class, "email").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(ExportResult.class, "completedAt").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(ExportJobTracker.PendingExport.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(ExportJobCommand.class, "mode").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(ExportJobMessage.class, "result").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(HashMap.class).test(hints));
+    }
+}
@@ -1,8 +1,14 @@
 package io.will.webfluxdemo.controller;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.will.webfluxdemo.config.SecurityConfig;
 import io.will.webfluxdemo.model.ExportResult;
+import io.will.webfluxdemo.repository.UserRepository;
+import io.will.webfluxdemo.search.UserSearchIndex;
 import io.will.webfluxdemo.service.DataExportService;
+import io.will.webfluxdemo.service.UserChangeFeed;
+import io.will.webfluxdemo.service.UserWriteBehindService;
+import io.will.webfluxdemo.sse.SseConnectionManager;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
@@ -14,13 +20,14 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
-import java.time.LocalDateTime;
+import java.time.Instant;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(UserController.class)
-@Import(SecurityConfig.class)
+@Import({SecurityConfig.class, SseConnectionManager.class, SimpleMeterRegistry.class})
 @ActiveProfiles("test")
 public class LongRunningOperationEndpointsTest {
 
@@ -30,6 +37,18 @@ public class LongRunningOperationEndpointsTest {
     @MockBean
     private DataExportService dataExportService;
 
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private UserWriteBehindService userWriteBehindService;
+
+    @MockBean
+    private UserSearchIndex userSearchIndex;
+
+    @MockBean
+    private UserChangeFeed userChangeFeed;
+
     @Test
     @WithMockUser(roles = "ADMIN")
     void exportUsers_ShouldReturnExportResult() {
@@ -40,11 +59,11 @@ public class LongRunningOperationEndpointsTest {
             "/api/downloads/user_export_123_1634567890.csv",
             10L,
             "COMPLETED",
-            LocalDateTime.now(),
+            Instant.now(),
             500L
         );
 
-        when(dataExportService.exportAsync(any(Long.class)))
+        when(dataExportService.exportAsync(any(Long.class), eq("csv")))
             .thenReturn(Mono.just(expectedResult).delayElement(Duration.ofSeconds(2)));
 
         webTestClient.get()
@@ -55,10 +74,10 @@ public class LongRunningOperationEndpointsTest {
                 .hasSize(1)
                 .value(results -> {
                     ExportResult result = results.get(0);
-                    assert result.getTaskId().equals(requestId);
-                    assert result.getFileName().equals("user_export_123_1634567890.csv");
-                    assert result.getStatus().equals("COMPLETED");
-                    assert result.getTotalRecords().equals(10L);
+                    assert result.taskId() == requestId;
+                    assert result.fileName().equals("user_export_123_1634567890.csv");
+                    assert result.status().equals("COMPLETED");
+                    assert result.totalRecords() == 10L;
                 });
     }
 
@@ -72,11 +91,11 @@ public class LongRunningOperationEndpointsTest {
             "/api/downloads/user_export_reactive_456_1634567890.csv",
             10L,
             "COMPLETED",
-            LocalDateTime.now(),
+            Instant.now(),
             500L
         );
 
-        when(dataExportService.exportAsyncReactive(any(Long.class)))
+        when(dataExportService.exportAsyncReactive(any(Long.class), eq("csv")))
             .thenReturn(Mono.just(expectedResult));
 
         webTestClient.get()
@@ -87,10 +106,10 @@ public class LongRunningOperationEndpointsTest {
                 .hasSize(1)
                 .value(results -> {
                     ExportResult result = results.get(0);
-                    assert result.getTaskId().equals(requestId);
-                    assert result.getFileName().equals("user_export_reactive_456_1634567890.csv");
-                    assert result.getStatus().equals("COMPLETED");
-                    assert result.getTotalRecords().equals(10L);
+                    assert result.taskId() == requestId;
+                    assert result.fileName().equals("user_export_reactive_456_1634567890.csv");
+                    assert result.status().equals("COMPLETED");
+                    assert result.totalRecords() == 10L;
                 });
     }
 
@@ -104,11 +123,11 @@ public class LongRunningOperationEndpointsTest {
             "/api/downloads/batch_export_789_1634567890.csv",
             10L,
             "COMPLETED",
-            LocalDateTime.now(),
+            Instant.now(),
             750L
         );
 
-        when(dataExportService.exportWithProgress(any(Long.class)))
+        when(dataExportService.exportWithProgress(any(Long.class), eq("csv")))
             .thenReturn(Mono.just(expectedResult));
 
         webTestClient.get()
@@ -119,11 +138,70 @@ public class LongRunningOperationEndpointsTest {
                 .hasSize(1)
                 .value(results -> {
                     ExportResult result = results.get(0);
-                    assert result.getTaskId().equals(requestId);
-                    assert result.getFileName().equals("batch_export_789_1634567890.csv");
-                    assert result.getStatus().equals("COMPLETED");
-                    assert result.getTotalRecords().equals(10L);
-                    assert result.getFileSizeBytes().equals(750L);
+                    assert result.taskId() == requestId;
+                    assert result.fileName().equals("batch_export_789_1634567890.csv");
+                    assert result.status().equals("COMPLETED");
+                    assert result.totalRecords() == 10L;
+                    assert result.fileSizeBytes() == 750L;
+                });
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void exportUsersParallel_ShouldPassPartitionCount() {
+        Long requestId = 321L;
+        ExportResult expectedResult = new ExportResult(
+            requestId,
+            "parallel_export_321_1634567890.csv",
+            "/api/downloads/parallel_export_321_1634567890.csv",
+            10L,
+            "COMPLETED",
+            Instant.now(),
+            420L
+        );
+
+        when(dataExportService.exportParallel(any(Long.class), eq(4), eq("csv")))
+            .thenReturn(Mono.just(expectedResult));
+
+        webTestClient.get()
+                .uri("/api/users/export-parallel/" + requestId + "?partitions=4")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ExportResult.class)
+                .hasSize(1)
+                .value(results -> {
+                    ExportResult result = results.get(0);
+                    assert result.taskId() == requestId;
+                    assert result.fileName().equals("parallel_export_321_1634567890.csv");
+                    assert result.fileSizeBytes() == 420L;
+                });
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void exportUsersBatch_ShouldPassRequestedFormat() {
+        Long requestId = 654L;
+        ExportResult expectedResult = new ExportResult(
+            requestId,
+            "batch_export_654_1634567890.wfxc",
+            "/api/downloads/batch_export_654_1634567890.wfxc",
+            10L,
+            "COMPLETED",
+            Instant.now(),
+            300L
+        );
+
+        when(dataExportService.exportWithProgress(any(Long.class), eq("columnar")))
+            .thenReturn(Mono.just(expectedResult));
+
+        webTestClient.get()
+                .uri("/api/users/export-batch/" + requestId + "?format=columnar")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ExportResult.class)
+                .hasSize(1)
+                .value(results -> {
+                    assert results.get(0).fileName().endsWith(".wfxc");
                 });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package io.will.webfluxdemo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+@SpringBootTest(properties = {
+        "app.rate-limit.capacity=3",
+        "app.rate-limit.refill-per-second=0.01"
+})
+@AutoConfigureWebTestClient
+@ActiveProfiles("test")
+class RateLimitSecurityTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void badCredentials_OverLimit_ShouldBeThrottledBeforeAuthentication() {
+        for (int i = 0; i < 3; i++) {
+            webTestClient.get()
+                    .uri("/api/auth/protected")
+                    .headers(headers -> headers.setBasicAuth("user", "wrong-password"))
+                    .exchange()
+                    .expectStatus().isUnauthorized();
+        }
+
+        webTestClient.get()
+                .uri("/api/auth/protected")
+                .headers(headers -> headers.setBasicAuth("user", "wrong-password"))
+                .exchange()
+                .expectStatus().isEqualTo(429)
+                .expectHeader().exists("Retry-After");
+    }
+}
@@ -1,7 +1,13 @@
 package io.will.webfluxdemo.controller;
 
 import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.model.UserChangeEvent;
+import io.will.webfluxdemo.repository.UserRepository;
+import io.will.webfluxdemo.search.UserSearchIndex;
 import io.will.webfluxdemo.service.DataExportService;
+import io.will.webfluxdemo.service.UserChangeFeed;
+import io.will.webfluxdemo.service.UserWriteBehindService;
+import io.will.webfluxdemo.sse.SseConnectionManager;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
@@ -10,10 +16,20 @@ import org.springframework.context.annotation.Import;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.will.webfluxdemo.config.SecurityConfig;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
 
 @WebFluxTest(UserController.class)
-@Import(SecurityConfig.class)
+@Import({SecurityConfig.class, SseConnectionManager.class, SimpleMeterRegistry.class})
 @ActiveProfiles("test")
 class UserControllerTest {
 
@@ -23,9 +39,26 @@ class UserControllerTest {
     @MockBean
     private DataExportService dataExportService;
 
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private UserWriteBehindService userWriteBehindService;
+
+    @MockBean
+    private UserSearchIndex userSearchIndex;
+
+    @MockBean
+    private UserChangeFeed userChangeFeed;
+
     @Test
     @WithMockUser(roles = "USER")
     void getAllUsers_ShouldReturnFluxOfUsers() {
+        when(userRepository.findAll()).thenReturn(Flux.just(
+            new User(1L, "Alice", "alice@example.com"),
+            new User(2L, "Bob", "bob@example.com"),
+            new User(3L, "Charlie", "charlie@example.com")));
+
         webTestClient.get()
                 .uri("/api/users")
                 .exchange()
@@ -37,6 +70,8 @@ class UserControllerTest {
     @Test
     @WithMockUser(roles = "USER")
     void getUserById_ShouldReturnMonoOfUser() {
+        when(userWriteBehindService.findById(1L)).thenReturn(Mono.just(new User(1L, "Alice", "alice@example.com")));
+
         webTestClient.get()
                 .uri("/api/users/1")
                 .exchange()
@@ -49,6 +84,7 @@ class UserControllerTest {
     @WithMockUser(roles = "USER")
     void createUser_ShouldReturnMonoOfCreatedUser() {
         User newUser = new User(4L, "David", "david@example.com");
+        when(userWriteBehindService.create(any(User.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
         
         webTestClient.post()
                 .uri("/api/users")
@@ -58,4 +94,48 @@ class UserControllerTest {
                 .expectBody(User.class)
                 .isEqualTo(newUser);
     }
-} 
\ No newline at end of file
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void searchUsers_ShouldReturnRankedMatches() {
+        when(userSearchIndex.search("ali", 20)).thenReturn(List.of(
+            new User(1L, "Alice", "alice@example.com")));
+
+        webTestClient.get()
+                .uri("/api/users/search?q=ali")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .hasSize(1)
+                .contains(new User(1L, "Alice", "alice@example.com"));
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void searchUsers_WithInvalidLimit_ShouldReturnBadRequest() {
+        webTestClient.get()
+                .uri("/api/users/search?q=ali&limit=0")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void streamChanges_ShouldResumeFromLastEventIdAsServerSentEvents() {
+        UserChangeEvent created = new UserChangeEvent(8L, UserChangeEvent.Type.CREATED, 4L,
+            new User(4L, "David", "david@example.com"), Instant.now());
+        when(userChangeFeed.subscribe(7L, UserChangeFeed.Overflow.LATEST)).thenReturn(Flux.just(created));
+
+        webTestClient.get()
+                .uri("/api/users/changes?overflow=latest")
+                .header("Last-Event-ID", "7")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> {
+                    assertTrue(body.contains("id:8"));
+                    assertTrue(body.contains("event:CREATED"));
+                    assertTrue(body.contains("\"name\":\"David\""));
+                });
+    }
+}
@@ -0,0 +1,87 @@
+package io.will.webfluxdemo.controller;
+
+import io.will.webfluxdemo.exception.ServiceUnavailableException;
+import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.repository.UserRepository;
+import io.will.webfluxdemo.service.UserWriteBehindService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserRSocketControllerTest {
+
+    private UserRepository userRepository;
+
+    private UserWriteBehindService userWriteBehindService;
+
+    private UserRSocketController controller;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        userWriteBehindService = mock(UserWriteBehindService.class);
+        controller = new UserRSocketController();
+        ReflectionTestUtils.setField(controller, "userRepository", userRepository);
+        ReflectionTestUtils.setField(controller, "userWriteBehindService", userWriteBehindService);
+        ReflectionTestUtils.setField(controller, "ingestConcurrency", 2);
+    }
+
+    @Test
+    void streamUsers_ShouldHonourDownstreamDemand() {
+        AtomicInteger requested = new AtomicInteger();
+        when(userRepository.findAll()).thenReturn(Flux.range(1, 100)
+                .map(id -> new User((long) id, "User " + id, "user" + id + "@example.com"))
+                .doOnRequest(n -> requested.addAndGet((int) Math.min(n, Integer.MAX_VALUE))));
+
+        StepVerifier.create(controller.streamUsers(), 3)
+                .expectNextCount(3)
+                .thenCancel()
+                .verify();
+        assertEquals(3, requested.get());
+    }
+
+    @Test
+    void ingestUsers_ShouldKeepOrderAndBoundInFlightCreates() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(userWriteBehindService.create(any())).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            return Mono.just(user)
+                    .doOnSubscribe(s -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+                    .delayElement(Duration.ofMillis(50 - user.id() * 5))
+                    .doOnNext(u -> inFlight.decrementAndGet());
+        });
+
+        StepVerifier.create(controller.ingestUsers(Flux.range(1, 6)
+                        .map(id -> new User((long) id, "User " + id, "user" + id + "@example.com")))
+                        .map(User::id))
+                .expectNext(1L, 2L, 3L, 4L, 5L, 6L)
+                .verifyComplete();
+        assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    void ingestUsers_WhenWriteBufferIsFull_ShouldRetryInsteadOfFailing() {
+        User user = new User(7L, "Grace", "grace@example.com");
+        AtomicInteger attempts = new AtomicInteger();
+        when(userWriteBehindService.create(any())).thenReturn(Mono.defer(() -> attempts.incrementAndGet() < 3
+                ? Mono.error(new ServiceUnavailableException("User write buffer is full"))
+                : Mono.just(user)));
+
+        StepVerifier.create(controller.ingestUsers(Flux.just(user)))
+                .expectNext(user)
+                .verifyComplete();
+        assertEquals(3, attempts.get());
+    }
+}
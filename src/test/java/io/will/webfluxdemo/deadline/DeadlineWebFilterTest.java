@@ -0,0 +1,49 @@
+package io.will.webfluxdemo.deadline;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineWebFilterTest {
+
+    private final DeadlineWebFilter filter = new DeadlineWebFilter(Duration.ofMinutes(1));
+
+    private final AtomicReference<Optional<Deadline>> seen = new AtomicReference<>();
+
+    private final WebFilterChain chain = exchange -> Mono.deferContextual(context -> {
+        seen.set(Deadline.from(context));
+        return Mono.empty();
+    });
+
+    private Optional<Deadline> deadlineFor(String path, String header) {
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get(path)
+                .header(DeadlineWebFilter.HEADER, header)), chain).block();
+        return seen.get();
+    }
+
+    @Test
+    void filter_ShouldParseBudgetAndCapIt() {
+        assertEquals(Duration.ofMillis(1500), deadlineFor("/api/users/1", "1500").orElseThrow().budget());
+        assertEquals(Duration.ofSeconds(30), deadlineFor("/api/users/1", "30s").orElseThrow().budget());
+        Deadline capped = deadlineFor("/api/users/export/1", "2h").orElseThrow();
+        assertEquals(Duration.ofMinutes(1), capped.budget());
+        assertTrue(capped.remaining().compareTo(Duration.ofMinutes(1)) <= 0);
+    }
+
+    @Test
+    void filter_ShouldIgnoreMalformedBudgetsAndNonApiPaths() {
+        assertTrue(deadlineFor("/api/users/1", "soon").isEmpty());
+        assertTrue(deadlineFor("/api/users/1", "0").isEmpty());
+        assertTrue(deadlineFor("/api/users/1", "-5s").isEmpty());
+        assertTrue(deadlineFor("/ws/exports", "5s").isEmpty());
+    }
+}
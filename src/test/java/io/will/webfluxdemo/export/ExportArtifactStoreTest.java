@@ -0,0 +1,122 @@
+package io.will.webfluxdemo.export;
+
+import io.will.webfluxdemo.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportArtifactStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private ExportArtifactStore store;
+
+    private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        store = new ExportArtifactStore();
+        ReflectionTestUtils.setField(store, "exportDirectory", directory.toString());
+        ReflectionTestUtils.setField(store, "quota", DataSize.ofBytes(250));
+        ReflectionTestUtils.setField(store, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(store, "reuseWindow", Duration.ofMinutes(10));
+        advanceClock(Duration.ZERO);
+    }
+
+    @Test
+    void register_OverQuota_ShouldEvictLeastRecentlyUsed() throws Exception {
+        Path first = file("user_export_1_1.csv", 100);
+        Path second = file("user_export_2_2.csv", 100);
+        store.register(1L, first, null);
+        store.register(2L, second, null);
+
+        store.find(1L); // first becomes most recently used
+        store.register(3L, file("user_export_3_3.csv", 100), null);
+
+        assertTrue(Files.exists(first));
+        assertFalse(Files.exists(second));
+        assertTrue(store.find(2L).isEmpty());
+        ExportArtifactStore.Stats stats = store.stats();
+        assertEquals(2, stats.artifactCount());
+        assertEquals(200, stats.totalBytes());
+        assertEquals(1, stats.evictions());
+    }
+
+    @Test
+    void sweep_ShouldDeleteArtifactsOlderThanTtl() throws Exception {
+        Path old = file("user_export_1_1.csv", 10);
+        store.register(1L, old, null);
+        advanceClock(Duration.ofMinutes(90));
+        Path fresh = file("user_export_2_2.csv", 10);
+        store.register(2L, fresh, null);
+
+        store.sweep();
+
+        assertFalse(Files.exists(old));
+        assertTrue(Files.exists(fresh));
+    }
+
+    @Test
+    void reuse_ShouldOnlyMatchSameFingerprintWithinWindow() throws Exception {
+        store.register(1L, file("user_export_1_1.csv", 10), "abc");
+
+        assertEquals("user_export_1_1.csv", store.reuse(2L, "abc").orElseThrow().fileName());
+        assertEquals("user_export_1_1.csv", store.find(2L).orElseThrow().fileName());
+        assertTrue(store.reuse(3L, "other").isEmpty());
+
+        advanceClock(Duration.ofMinutes(11));
+        assertTrue(store.reuse(4L, "abc").isEmpty());
+
+        ExportArtifactStore.Stats stats = store.stats();
+        assertEquals(1, stats.reuseHits());
+        assertEquals(2, stats.reuseMisses());
+    }
+
+    @Test
+    void start_ShouldIndexFilesFromPreviousRun() throws Exception {
+        file("user_export_7_1700000000000.csv", 40);
+        file("parallel_export_8_1700000000001.csv.part0", 40);
+
+        ReflectionTestUtils.invokeMethod(store, "indexExistingFiles");
+
+        assertEquals(40, store.stats().totalBytes());
+        assertTrue(store.find(7L).isPresent());
+    }
+
+    @Test
+    void fingerprint_ShouldDependOnFormatAndData() {
+        List<User> users = List.of(new User(1L, "Alice", "alice@example.com"));
+        CsvExportFormat csv = new CsvExportFormat();
+
+        assertEquals(ExportArtifactStore.fingerprint(csv, users), ExportArtifactStore.fingerprint(csv, List.copyOf(users)));
+        assertNotEquals(ExportArtifactStore.fingerprint(csv, users),
+            ExportArtifactStore.fingerprint(new NdjsonExportFormat(), users));
+        assertNotEquals(ExportArtifactStore.fingerprint(csv, users),
+            ExportArtifactStore.fingerprint(csv, List.of(new User(1L, "Alice", "alice@example.org"))));
+    }
+
+    private void advanceClock(Duration duration) {
+        now = now.plus(duration);
+        ReflectionTestUtils.setField(store, "clock", Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private Path file(String name, int size) throws Exception {
+        return Files.write(directory.resolve(name), new byte[size]);
+    }
+}
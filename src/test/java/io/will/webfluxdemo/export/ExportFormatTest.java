@@ -0,0 +1,76 @@
+package io.will.webfluxdemo.export;
+
+import io.will.webfluxdemo.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportFormatTest {
+
+    private final List<User> users = List.of(
+        new User(1L, "Alice", "shared@example.com"),
+        new User(2L, "Bob, Jr.", "shared@example.com"),
+        new User(5L, "Alice", "alice@example.com")
+    );
+
+    @Test
+    void csv_ShouldEscapeFieldsContainingSeparators() {
+        String csv = new String(new CsvExportFormat().encode(users), StandardCharsets.UTF_8);
+
+        assertEquals("1,Alice,shared@example.com\n"
+            + "2,\"Bob, Jr.\",shared@example.com\n"
+            + "5,Alice,alice@example.com\n", csv);
+    }
+
+    @Test
+    void ndjson_ShouldWriteOneObjectPerLine() {
+        String ndjson = new String(new NdjsonExportFormat().encode(users), StandardCharsets.UTF_8);
+
+        String[] lines = ndjson.split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("{\"id\":1,\"name\":\"Alice\",\"email\":\"shared@example.com\"}", lines[0]);
+    }
+
+    @Test
+    void columnar_ShouldRoundTripMultipleRowGroups() {
+        ColumnarExportFormat format = new ColumnarExportFormat();
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.writeBytes(format.header());
+        file.writeBytes(format.encode(users.subList(0, 2)));
+        file.writeBytes(format.encode(List.of()));
+        file.writeBytes(format.encode(users.subList(2, 3)));
+        file.writeBytes(format.footer());
+
+        assertEquals(users, ColumnarExportFormat.decode(file.toByteArray()));
+    }
+
+    @Test
+    void columnar_ShouldBeSmallerThanCsvForRepeatedValues() {
+        List<User> repeated = LongStream.rangeClosed(1, 1000)
+            .mapToObj(id -> new User(id, "Same Name", "same@example.com"))
+            .toList();
+
+        int columnarSize = new ColumnarExportFormat().encode(repeated).length;
+        int csvSize = new CsvExportFormat().encode(repeated).length;
+
+        assertTrue(columnarSize * 5 < csvSize, "columnar=" + columnarSize + " csv=" + csvSize);
+    }
+
+    @Test
+    void resolve_ShouldDefaultToCsvAndRejectUnknownFormats() {
+        CsvExportFormat csv = new CsvExportFormat();
+        ExportFormats formats = new ExportFormats(List.of(csv, new NdjsonExportFormat()));
+
+        assertSame(csv, formats.resolve(null));
+        assertSame(csv, formats.resolve("CSV"));
+        assertThrows(IllegalArgumentException.class, () -> formats.resolve("parquet"));
+    }
+}
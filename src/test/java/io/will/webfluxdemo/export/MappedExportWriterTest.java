@@ -0,0 +1,75 @@
+package io.will.webfluxdemo.export;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedExportWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void write_AcrossSeveralRegions_ShouldProduceExactContent() throws Exception {
+        Path file = directory.resolve("nested/export.csv");
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+        try (MappedExportWriter writer = new MappedExportWriter(file, 16, MappedExportWriter.Durability.PER_BATCH)) {
+            for (int i = 0; i < 20; i++) {
+                byte[] line = ("line " + i + "\n").getBytes(StandardCharsets.UTF_8);
+                writer.write(line);
+                expected.writeBytes(line);
+                writer.endBatch();
+            }
+            assertEquals(expected.size(), writer.size());
+        }
+
+        // The last region is mapped past the data; close trims it back
+        assertEquals(expected.size(), Files.size(file));
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file));
+    }
+
+    @Test
+    void endBatch_WithBatchSpanningRegions_ShouldProduceExactContent() throws Exception {
+        Path file = directory.resolve("spanning.csv");
+        byte[] header = "id,name\n".getBytes(StandardCharsets.UTF_8);
+        byte[] batch = "1,a\n2,b\n3,c\n4,d\n5,e\n6,f\n7,g\n8,h\n9,i\n".getBytes(StandardCharsets.UTF_8);
+
+        try (MappedExportWriter writer = new MappedExportWriter(file, 16, MappedExportWriter.Durability.PER_BATCH)) {
+            writer.write(header);
+            writer.endBatch();
+            // 36 bytes starting halfway into the first region: forced in three parts
+            writer.write(batch);
+            writer.endBatch();
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.writeBytes(header);
+        expected.writeBytes(batch);
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file));
+    }
+
+    @Test
+    void close_WithoutWrites_ShouldLeaveEmptyFile() throws Exception {
+        Path file = directory.resolve("empty.csv");
+
+        new MappedExportWriter(file, 1024, MappedExportWriter.Durability.NEVER).close();
+
+        assertEquals(0, Files.size(file));
+    }
+
+    @Test
+    void durability_ShouldParseConfigurationValues() {
+        assertEquals(MappedExportWriter.Durability.PER_BATCH, MappedExportWriter.Durability.fromString("per-batch"));
+        assertEquals(MappedExportWriter.Durability.PER_FILE, MappedExportWriter.Durability.fromString("PER_FILE"));
+        assertThrows(IllegalArgumentException.class, () -> MappedExportWriter.Durability.fromString("always"));
+    }
+}
@@ -0,0 +1,161 @@
+package io.will.webfluxdemo.priority;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrioritySchedulersTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private PrioritySchedulers prioritySchedulers;
+
+    private PrioritySchedulers prioritySchedulers(int slots, int interactiveReserved) {
+        prioritySchedulers = new PrioritySchedulers(meterRegistry);
+        ReflectionTestUtils.setField(prioritySchedulers, "slots", slots);
+        ReflectionTestUtils.setField(prioritySchedulers, "interactiveReserved", interactiveReserved);
+        ReflectionTestUtils.setField(prioritySchedulers, "interactiveWeight", 3);
+        ReflectionTestUtils.setField(prioritySchedulers, "batchWeight", 1);
+        ReflectionTestUtils.setField(prioritySchedulers, "backgroundWeight", 1);
+        ReflectionTestUtils.setField(prioritySchedulers, "interactiveThreads", 2);
+        ReflectionTestUtils.setField(prioritySchedulers, "batchThreads", 2);
+        ReflectionTestUtils.setField(prioritySchedulers, "backgroundThreads", 1);
+        prioritySchedulers.init();
+        return prioritySchedulers;
+    }
+
+    @AfterEach
+    void tearDown() {
+        prioritySchedulers.shutdown();
+    }
+
+    private static <T> Mono<T> as(PriorityClass priorityClass, Mono<T> work) {
+        return work.contextWrite(Context.of(PriorityClass.CONTEXT_KEY, priorityClass));
+    }
+
+    @Test
+    void schedule_ShouldKeepReservedSlotsForInteractiveWork() throws InterruptedException {
+        PrioritySchedulers schedulers = prioritySchedulers(3, 1);
+        Sinks.Empty<Void> exports = Sinks.empty();
+        CountDownLatch released = new CountDownLatch(1);
+        as(PriorityClass.BATCH, schedulers.schedule(exports.asMono())).subscribe(null, null, released::countDown);
+        as(PriorityClass.BACKGROUND, schedulers.schedule(exports.asMono())).subscribe();
+        as(PriorityClass.BATCH, schedulers.schedule(exports.asMono())).subscribe();
+
+        assertEquals(1, schedulers.running(PriorityClass.BATCH));
+        assertEquals(1, schedulers.queued(PriorityClass.BATCH));
+        assertEquals(1.0, meterRegistry.get("priority.queued").tag("class", "batch").gauge().value());
+
+        String thread = as(PriorityClass.INTERACTIVE,
+            schedulers.schedule(Mono.fromCallable(() -> Thread.currentThread().getName())))
+            .block(Duration.ofSeconds(5));
+        assertTrue(thread.startsWith("priority-interactive"), thread);
+
+        exports.tryEmitEmpty();
+        // The slot is released before completion reaches the subscriber
+        assertTrue(released.await(5, TimeUnit.SECONDS));
+        assertEquals(0, schedulers.queued(PriorityClass.BATCH));
+    }
+
+    @Test
+    void schedule_WhenContended_ShouldGiveFreedSlotsByWeight() throws InterruptedException {
+        PrioritySchedulers schedulers = prioritySchedulers(1, 0);
+        Sinks.Empty<Void> holder = Sinks.empty();
+        as(PriorityClass.BATCH, schedulers.schedule(holder.asMono())).subscribe();
+
+        List<PriorityClass> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(8);
+        for (PriorityClass priorityClass : List.of(PriorityClass.BACKGROUND, PriorityClass.INTERACTIVE)) {
+            for (int i = 0; i < 4; i++) {
+                as(priorityClass, schedulers.schedule(Mono.fromRunnable(() -> order.add(priorityClass))))
+                    .subscribe(null, null, done::countDown);
+            }
+        }
+        assertEquals(4, schedulers.queued(PriorityClass.INTERACTIVE));
+
+        holder.tryEmitEmpty();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // Weights 3:1, interleaved rather than one class first
+        assertEquals(List.of(PriorityClass.INTERACTIVE, PriorityClass.INTERACTIVE, PriorityClass.BACKGROUND,
+            PriorityClass.INTERACTIVE, PriorityClass.INTERACTIVE, PriorityClass.BACKGROUND,
+            PriorityClass.BACKGROUND, PriorityClass.BACKGROUND), order);
+        assertEquals(4, meterRegistry.get("priority.queue.wait").tag("class", "background").timer().count());
+    }
+
+    @Test
+    void schedule_WhenCancelledWhileWaiting_ShouldGiveUpItsPlace() throws InterruptedException {
+        PrioritySchedulers schedulers = prioritySchedulers(1, 0);
+        Sinks.Empty<Void> holder = Sinks.empty();
+        CountDownLatch released = new CountDownLatch(1);
+        as(PriorityClass.INTERACTIVE, schedulers.schedule(holder.asMono())).subscribe(null, null, released::countDown);
+
+        as(PriorityClass.BATCH, schedulers.schedule(Mono.just("waiting"))).subscribe().dispose();
+        assertEquals(0, schedulers.queued(PriorityClass.BATCH));
+
+        holder.tryEmitEmpty();
+        assertTrue(released.await(5, TimeUnit.SECONDS));
+        assertEquals(0, schedulers.running(PriorityClass.INTERACTIVE));
+        assertEquals(0, schedulers.running(PriorityClass.BATCH));
+    }
+
+    @Test
+    void schedulePages_ShouldReadEveryPageInOrderOnTheCallersScheduler() {
+        PrioritySchedulers schedulers = prioritySchedulers(1, 0);
+        List<Integer> rows = IntStream.rangeClosed(1, 7).boxed().toList();
+        List<String> threads = new CopyOnWriteArrayList<>();
+
+        StepVerifier.create(schedulers.schedulePages(0,
+                    after -> Flux.fromIterable(rows).filter(row -> row > after).take(3)
+                        .doOnSubscribe(subscription -> threads.add(Thread.currentThread().getName())),
+                    row -> row, 3)
+                .contextWrite(Context.of(PriorityClass.CONTEXT_KEY, PriorityClass.BACKGROUND)))
+            .expectNextSequence(rows)
+            .verifyComplete();
+        assertEquals(3, threads.size());
+        assertTrue(threads.stream().allMatch(thread -> thread.startsWith("priority-background")), threads::toString);
+    }
+
+    @Test
+    void schedulePages_WithSlowConsumers_ShouldLeaveSlotsForPointLookups() {
+        PrioritySchedulers schedulers = prioritySchedulers(2, 0);
+        List<BaseSubscriber<Integer>> slowConsumers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            // Takes one row and never asks for more, like a stalled streaming client
+            BaseSubscriber<Integer> consumer = new BaseSubscriber<>() {
+                @Override
+                protected void hookOnSubscribe(Subscription subscription) {
+                    subscription.request(1);
+                }
+            };
+            schedulers.schedulePages(0, after -> Flux.range(after + 1, 100), row -> row, 100)
+                .contextWrite(Context.of(PriorityClass.CONTEXT_KEY, PriorityClass.INTERACTIVE))
+                .subscribe(consumer);
+            slowConsumers.add(consumer);
+        }
+
+        StepVerifier.create(as(PriorityClass.INTERACTIVE, schedulers.schedule(Mono.just("user"))))
+            .expectNext("user")
+            .expectComplete()
+            .verify(Duration.ofSeconds(2));
+        slowConsumers.forEach(BaseSubscriber::dispose);
+    }
+}
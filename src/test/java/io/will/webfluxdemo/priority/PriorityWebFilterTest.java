@@ -0,0 +1,51 @@
+package io.will.webfluxdemo.priority;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PriorityWebFilterTest {
+
+    private final PriorityWebFilter filter = new PriorityWebFilter();
+
+    private final AtomicReference<PriorityClass> seen = new AtomicReference<>();
+
+    private final WebFilterChain chain = exchange -> Mono.deferContextual(context -> {
+        seen.set(PriorityClass.from(context));
+        return Mono.empty();
+    });
+
+    private PriorityClass classOf(String path, String header) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get(path);
+        if (header != null) {
+            request.header(PriorityWebFilter.HEADER, header);
+        }
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, chain).block();
+        assertEquals(seen.get(), exchange.getAttribute(PriorityClass.CONTEXT_KEY));
+        return seen.get();
+    }
+
+    @Test
+    void filter_ShouldAssignClassByRoute() {
+        assertEquals(PriorityClass.INTERACTIVE, classOf("/api/users/1", null));
+        assertEquals(PriorityClass.INTERACTIVE, classOf("/api/users/search", null));
+        assertEquals(PriorityClass.BATCH, classOf("/api/users/export/1", null));
+        assertEquals(PriorityClass.BATCH, classOf("/api/users/export-parallel/1", null));
+        assertEquals(PriorityClass.BATCH, classOf("/ws/exports", null));
+    }
+
+    @Test
+    void filter_HeaderMayLowerButNotRaiseTheClass() {
+        assertEquals(PriorityClass.BACKGROUND, classOf("/api/users/export/1", "background"));
+        assertEquals(PriorityClass.BATCH, classOf("/api/users/1", "BATCH"));
+        assertEquals(PriorityClass.BATCH, classOf("/api/users/export/1", "interactive"));
+        assertEquals(PriorityClass.INTERACTIVE, classOf("/api/users/1", "urgent"));
+    }
+}
@@ -0,0 +1,67 @@
+package io.will.webfluxdemo.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitWebFilterTest {
+
+    private final RateLimitWebFilter filter = new RateLimitWebFilter(
+            new TokenBucketRateLimiter(2, 0.5, Duration.ofMinutes(1)));
+
+    private final AtomicInteger passed = new AtomicInteger();
+
+    private final WebFilterChain chain = exchange -> {
+        passed.incrementAndGet();
+        return Mono.empty();
+    };
+
+    @Test
+    void filter_OverLimit_ShouldReturn429WithRateLimitHeaders() {
+        MockServerWebExchange first = exchange("/api/users", "10.0.0.1");
+        filter.filter(first, chain).block();
+        assertEquals("2", first.getResponse().getHeaders().getFirst("X-RateLimit-Limit"));
+        assertEquals("1", first.getResponse().getHeaders().getFirst("X-RateLimit-Remaining"));
+        filter.filter(exchange("/api/users/1", "10.0.0.1"), chain).block();
+
+        MockServerWebExchange rejected = exchange("/api/users", "10.0.0.1");
+        filter.filter(rejected, chain).block();
+
+        assertEquals(2, passed.get());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getResponse().getStatusCode());
+        assertEquals("0", rejected.getResponse().getHeaders().getFirst("X-RateLimit-Remaining"));
+        assertEquals("2", rejected.getResponse().getHeaders().getFirst("Retry-After"));
+        assertTrue(rejected.getResponse().getBodyAsString().block().contains("\"status\":429"));
+    }
+
+    @Test
+    void filter_ShouldLimitEachClientSeparatelyAndOnlyApiPaths() {
+        for (int i = 0; i < 3; i++) {
+            filter.filter(exchange("/api/users", "10.0.0.1"), chain).block();
+        }
+        MockServerWebExchange otherClient = exchange("/api/users", "10.0.0.2");
+        filter.filter(otherClient, chain).block();
+        MockServerWebExchange health = exchange("/actuator/health", "10.0.0.1");
+        filter.filter(health, chain).block();
+
+        assertNull(otherClient.getResponse().getStatusCode());
+        assertNull(health.getResponse().getHeaders().getFirst("X-RateLimit-Limit"));
+        assertEquals(4, passed.get());
+    }
+
+    private static MockServerWebExchange exchange(String path, String address) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path)
+                .remoteAddress(new InetSocketAddress(address, 40000)));
+    }
+}
@@ -0,0 +1,80 @@
+package io.will.webfluxdemo.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void tryAcquire_ShouldAllowBurstThenRefillAtRate() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, 10, Duration.ofMinutes(1), clock::get);
+
+        assertEquals(2, limiter.tryAcquire("a").remaining());
+        assertEquals(1, limiter.tryAcquire("a").remaining());
+        assertEquals(0, limiter.tryAcquire("a").remaining());
+        TokenBucketRateLimiter.Decision rejected = limiter.tryAcquire("a");
+        assertFalse(rejected.allowed());
+        assertEquals(Duration.ofMillis(100), rejected.retryAfter());
+        // Other clients have their own bucket
+        assertTrue(limiter.tryAcquire("b").allowed());
+
+        clock.addAndGet(Duration.ofMillis(100).toNanos());
+        assertTrue(limiter.tryAcquire("a").allowed());
+        assertFalse(limiter.tryAcquire("a").allowed());
+
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertEquals(2, limiter.tryAcquire("a").remaining());
+    }
+
+    @Test
+    void tryAcquire_ShouldEvictBucketsIdleLongerThanTimeout() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(5, 1, Duration.ofSeconds(30), clock::get);
+        limiter.tryAcquire("idle");
+        clock.addAndGet(Duration.ofSeconds(20).toNanos());
+        limiter.tryAcquire("active");
+        assertEquals(2, limiter.size());
+
+        clock.addAndGet(Duration.ofSeconds(15).toNanos());
+        limiter.tryAcquire("active");
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void tryAcquire_FromManyThreads_ShouldNeverAdmitMoreThanCapacity() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1000, 0.001, Duration.ofMinutes(1));
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < 500; i++) {
+                    if (limiter.tryAcquire("shared").allowed()) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1000, allowed.get());
+    }
+}
@@ -0,0 +1,166 @@
+package io.will.webfluxdemo.repository;
+
+import io.will.webfluxdemo.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserWriteAheadLogTest {
+
+    private static final Path WAL_DIRECTORY = Paths.get("target/test-data/users-wal-test");
+
+    private UserWriteAheadLog log;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileSystemUtils.deleteRecursively(WAL_DIRECTORY);
+        log = open(DataSize.ofMegabytes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(log, "close");
+    }
+
+    @Test
+    void replay_AfterReopen_ShouldReturnMutationsInSequenceOrder() {
+        User alice = new User(1L, "Alice", "alice@example.com");
+        assertEquals(1L, log.appendCreate(alice).block(Duration.ofSeconds(5)));
+        assertEquals(2L, log.appendDelete(1L).block(Duration.ofSeconds(5)));
+
+        reopen(DataSize.ofMegabytes(1));
+
+        List<UserWriteAheadLog.Entry> entries = log.replay();
+        assertEquals(List.of(
+            new UserWriteAheadLog.Entry(1L, UserWriteAheadLog.Operation.CREATE, alice, 1L),
+            new UserWriteAheadLog.Entry(2L, UserWriteAheadLog.Operation.DELETE, null, 1L)), entries);
+        assertEquals(3L, log.appendDelete(2L).block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void checkpoint_ShouldDropCoveredSegmentsAndReplayOnlyTheTail() throws Exception {
+        reopen(DataSize.ofBytes(200));
+        Flux.range(1, 20)
+            .concatMap(i -> log.appendCreate(new User((long) i, "User " + i, "user" + i + "@example.com")))
+            .blockLast(Duration.ofSeconds(5));
+        long segmentsBefore = segmentCount();
+
+        log.checkpoint(15).block(Duration.ofSeconds(5));
+        reopen(DataSize.ofBytes(200));
+
+        assertTrue(segmentCount() < segmentsBefore);
+        assertEquals(List.of(16L, 17L, 18L, 19L, 20L),
+            log.replay().stream().map(UserWriteAheadLog.Entry::sequence).toList());
+        assertEquals(21L, log.appendDelete(1L).block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void replay_WithCorruptTail_ShouldStopAtLastValidRecord() throws Exception {
+        log.appendCreate(new User(1L, "Alice", "alice@example.com")).block(Duration.ofSeconds(5));
+        log.appendCreate(new User(2L, "Bob", "bob@example.com")).block(Duration.ofSeconds(5));
+        ReflectionTestUtils.invokeMethod(log, "close");
+
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // Flip a byte inside the last record's payload
+            channel.write(ByteBuffer.wrap(new byte[] {'#'}), channel.size() - 3);
+        }
+        log = open(DataSize.ofMegabytes(1));
+
+        assertEquals(List.of(1L), log.replay().stream().map(UserWriteAheadLog.Entry::sequence).toList());
+        assertEquals(2L, log.appendDelete(1L).block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void replay_WithCorruptRecordBeforeLastSegment_ShouldQuarantineLaterSegments() throws Exception {
+        reopen(DataSize.ofBytes(200));
+        Flux.range(1, 20)
+            .concatMap(i -> log.appendCreate(new User((long) i, "User " + i, "user" + i + "@example.com")))
+            .blockLast(Duration.ofSeconds(5));
+        ReflectionTestUtils.invokeMethod(log, "close");
+
+        List<Path> segments = segments();
+        assertTrue(segments.size() > 2);
+        try (FileChannel channel = FileChannel.open(segments.get(0), StandardOpenOption.WRITE)) {
+            // Flip a byte inside the first segment's last record
+            channel.write(ByteBuffer.wrap(new byte[] {'#'}), channel.size() - 3);
+        }
+        log = open(DataSize.ofBytes(200));
+
+        List<Long> replayed = log.replay().stream().map(UserWriteAheadLog.Entry::sequence).toList();
+        long lastReplayed = replayed.get(replayed.size() - 1);
+        assertEquals(LongStream.rangeClosed(1, lastReplayed).boxed().toList(), replayed);
+        assertTrue(lastReplayed < 20);
+        assertEquals(List.of(segments.get(0)), segments());
+        for (Path quarantined : segments) {
+            assertEquals(1, quarantined(quarantined).size());
+        }
+        // Sequences of the quarantined mutations may already be in the database or the change feed
+        assertEquals(21L, log.appendDelete(1L).block(Duration.ofSeconds(5)));
+
+        // Quarantined segments stay out of the log on later startups
+        reopen(DataSize.ofBytes(200));
+        assertEquals(lastReplayed + 1, log.replay().size());
+
+        // A second incident keeps the evidence of the first
+        Flux.range(22, 10).concatMap(i -> log.appendDelete((long) i)).blockLast(Duration.ofSeconds(5));
+        ReflectionTestUtils.invokeMethod(log, "close");
+        assertTrue(segments().size() > 1);
+        try (FileChannel channel = FileChannel.open(segments.get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'#'}), channel.size() - 3);
+        }
+        log = open(DataSize.ofBytes(200));
+        assertEquals(2, quarantined(segments.get(0)).size());
+        assertEquals(32L, log.appendDelete(2L).block(Duration.ofSeconds(5)));
+    }
+
+    private void reopen(DataSize segmentSize) {
+        ReflectionTestUtils.invokeMethod(log, "close");
+        log = open(segmentSize);
+    }
+
+    private UserWriteAheadLog open(DataSize segmentSize) {
+        UserWriteAheadLog opened = new UserWriteAheadLog();
+        ReflectionTestUtils.setField(opened, "walDirectory", WAL_DIRECTORY.toString());
+        ReflectionTestUtils.setField(opened, "segmentSize", segmentSize);
+        ReflectionTestUtils.invokeMethod(opened, "open");
+        return opened;
+    }
+
+    private List<Path> quarantined(Path segment) throws Exception {
+        try (Stream<Path> files = Files.list(WAL_DIRECTORY)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(segment.getFileName() + ".corrupt-"))
+                .toList();
+        }
+    }
+
+    private long segmentCount() throws Exception {
+        return segments().size();
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(WAL_DIRECTORY)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-"))
+                .filter(file -> file.getFileName().toString().endsWith(".wal"))
+                .sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.will.webfluxdemo.search;
+
+import io.will.webfluxdemo.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserSearchIndexTest {
+
+    private UserSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new UserSearchIndex();
+        index.load(Flux.just(
+            new User(1L, "Alice Smith", "alice@example.com"),
+            new User(2L, "Bob Alison", "bob@example.com"),
+            new User(3L, "Charlie Brown", "charlie@alicorp.io"))).block();
+    }
+
+    @Test
+    void search_ShouldRankExactNameAbovePrefixAndEmailMatches() {
+        List<Long> ids = index.search("ali", 10).stream().map(User::id).toList();
+        assertEquals(List.of(1L, 2L, 3L), ids);
+
+        assertEquals(List.of(1L), index.search("alice", 10).stream().map(User::id).toList().subList(0, 1));
+    }
+
+    @Test
+    void search_ShouldRequireEveryTokenAndRespectLimit() {
+        assertEquals(List.of(3L), index.search("charlie ali", 10).stream().map(User::id).toList());
+        assertTrue(index.search("alice nobody", 10).isEmpty());
+        assertEquals(1, index.search("example", 1).size());
+        assertTrue(index.search("  @@ ", 10).isEmpty());
+    }
+
+    @Test
+    void search_ShouldOnlyPrefixMatchTheLastToken() {
+        assertTrue(index.search("ali smith", 10).isEmpty());
+        assertEquals(List.of(1L), index.search("smith ali", 10).stream().map(User::id).toList());
+        assertEquals(List.of(2L), index.search("bob example ali", 10).stream().map(User::id).toList());
+    }
+
+    @Test
+    void search_WithShortPrefix_ShouldFindEveryMatchingToken() {
+        for (long id = 100; id < 1600; id++) {
+            index.add(new User(id, "Q" + id, "q" + id + "@example.com"));
+        }
+
+        assertEquals(1500, index.search("q", 2000).size());
+        // Both the name and the email token start with the prefix, the user is still listed once
+        assertEquals(List.of(100L, 101L), index.search("q", 2).stream().map(User::id).toList());
+    }
+
+    @Test
+    void search_WithEnoughExactMatches_ShouldSkipLongerTokens() {
+        for (long id = 100; id < 110; id++) {
+            index.add(new User(id, "Q", "other" + id + "@example.com"));
+        }
+        for (long id = 200; id < 1200; id++) {
+            index.add(new User(id, "Q" + id, "q" + id + "@example.com"));
+        }
+        // The exact token is scanned first and fills the results, the longer tokens are never examined
+        ReflectionTestUtils.setField(index, "maxCandidates", 10);
+        assertEquals(List.of(100L, 101L, 102L), index.search("q", 3).stream().map(User::id).toList());
+    }
+
+    @Test
+    void search_WithExactEmailMatches_ShouldStillExamineLongerTokensThatTie() {
+        index.add(new User(10L, "Za", "za@example.com"));
+        index.add(new User(20L, "Y", "z@example.com"));
+        index.add(new User(21L, "Y", "z@example.com"));
+
+        // An exact email match scores no higher than a prefix name match, so the lower id wins
+        assertEquals(List.of(10L, 20L), index.search("z", 2).stream().map(User::id).toList());
+    }
+
+    @Test
+    void search_WithMoreCandidatesThanTheCap_ShouldExamineNoMore() {
+        for (long id = 100; id < 200; id++) {
+            index.add(new User(id, "Q" + id, "q" + id + "@example.com"));
+        }
+        ReflectionTestUtils.setField(index, "maxCandidates", 20);
+
+        assertEquals(20, index.search("q", 50).size());
+    }
+
+    @Test
+    void addAndRemove_ShouldUpdateIndexIncrementally() {
+        index.add(new User(4L, "Alicia Keys", "ak@example.com"));
+        assertTrue(index.search("alicia", 10).stream().anyMatch(user -> user.id() == 4L));
+
+        index.add(new User(1L, "Alison Smith", "alison@example.com"));
+        assertTrue(index.search("alice", 10).isEmpty());
+
+        index.remove(4L);
+        assertTrue(index.search("alicia", 10).isEmpty());
+        assertEquals(3, index.size());
+    }
+}
@@ -0,0 +1,132 @@
+package io.will.webfluxdemo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.will.webfluxdemo.deadline.Deadline;
+import io.will.webfluxdemo.exception.DeadlineExceededException;
+import io.will.webfluxdemo.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit, int maxQueued) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(meterRegistry);
+        ReflectionTestUtils.setField(limiter, "initialLimit", initialLimit);
+        ReflectionTestUtils.setField(limiter, "minLimit", 1);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 20);
+        ReflectionTestUtils.setField(limiter, "maxQueued", maxQueued);
+        ReflectionTestUtils.setField(limiter, "smoothing", 0.2);
+        ReflectionTestUtils.setField(limiter, "longWindow", 100);
+        ReflectionTestUtils.setField(limiter, "backoffRatio", 0.9);
+        limiter.init();
+        return limiter;
+    }
+
+    @Test
+    void limit_ShouldQueueBeyondLimitAndRejectBeyondMaxQueued() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1);
+        Sinks.Empty<Void> first = Sinks.empty();
+        Sinks.Empty<Void> second = Sinks.empty();
+        AtomicBoolean thirdStarted = new AtomicBoolean();
+
+        limiter.limit(first.asMono()).subscribe();
+        limiter.limit(second.asMono()).subscribe();
+        limiter.limit(Mono.fromRunnable(() -> thirdStarted.set(true))).subscribe();
+        assertEquals(2, limiter.inFlight());
+        assertEquals(1, limiter.queued());
+        assertFalse(thirdStarted.get());
+
+        StepVerifier.create(limiter.limit(Mono.just("fourth")))
+            .expectError(ServiceUnavailableException.class)
+            .verify(Duration.ofSeconds(1));
+        assertEquals(1.0, meterRegistry.get("export.concurrency.rejected").counter().count());
+
+        first.tryEmitEmpty();
+        assertTrue(thirdStarted.get());
+        assertEquals(1, limiter.inFlight());
+        assertEquals(0, limiter.queued());
+    }
+
+    @Test
+    void limit_WhenCancelledWhileWaiting_ShouldGiveUpItsPlace() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 10);
+        Sinks.Empty<Void> running = Sinks.empty();
+        limiter.limit(running.asMono()).subscribe();
+
+        limiter.limit(Mono.just("waiting")).subscribe().dispose();
+        assertEquals(0, limiter.queued());
+
+        running.tryEmitEmpty();
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void limit_WhenDeadlinePassesWhileWaiting_ShouldFailWithQueueStage() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 10);
+        Sinks.Empty<Void> running = Sinks.empty();
+        limiter.limit(running.asMono()).subscribe();
+
+        StepVerifier.create(limiter.limit(Mono.just("waiting"))
+                .contextWrite(Context.of(Deadline.CONTEXT_KEY, Deadline.after(Duration.ofMillis(100)))))
+            .expectErrorSatisfies(error -> assertEquals("queue", ((DeadlineExceededException) error).getStage()))
+            .verify(Duration.ofSeconds(5));
+        assertEquals(0, limiter.queued());
+        running.tryEmitEmpty();
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void onSample_ShouldGrowWhileLatencyIsStableAndShrinkWhenItRises() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 10);
+        for (int i = 0; i < 50; i++) {
+            // Keep the limit saturated, otherwise samples are ignored
+            ReflectionTestUtils.setField(limiter, "inFlight", limiter.limit());
+            limiter.onSample(Duration.ofMillis(10).toNanos());
+        }
+        assertEquals(20, limiter.limit());
+
+        for (int i = 0; i < 20; i++) {
+            ReflectionTestUtils.setField(limiter, "inFlight", limiter.limit());
+            limiter.onSample(Duration.ofMillis(100).toNanos());
+        }
+        assertTrue(limiter.limit() < 10, "limit should shrink, was " + limiter.limit());
+    }
+
+    @Test
+    void onSample_WhenMostlyIdle_ShouldNotGrow() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8, 10);
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(Duration.ofMillis(10).toNanos());
+        }
+        assertEquals(8, limiter.limit());
+    }
+
+    @Test
+    void limit_ShouldBackOffOnFailuresButNotOnBadRequests() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10, 10);
+
+        StepVerifier.create(limiter.limit(Mono.error(new RuntimeException("disk full"))))
+            .expectError(RuntimeException.class)
+            .verify(Duration.ofSeconds(1));
+        assertEquals(9, limiter.limit());
+
+        StepVerifier.create(limiter.limit(Mono.error(new IllegalArgumentException("Unknown format"))))
+            .expectError(IllegalArgumentException.class)
+            .verify(Duration.ofSeconds(1));
+        assertEquals(9, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+}
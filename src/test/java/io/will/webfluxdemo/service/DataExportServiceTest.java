@@ -0,0 +1,474 @@
+package io.will.webfluxdemo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.will.webfluxdemo.deadline.Deadline;
+import io.will.webfluxdemo.exception.DeadlineExceededException;
+import io.will.webfluxdemo.export.ColumnarExportFormat;
+import io.will.webfluxdemo.export.ExportArtifactStore;
+import io.will.webfluxdemo.export.CsvExportFormat;
+import io.will.webfluxdemo.export.ExportFormats;
+import io.will.webfluxdemo.export.ExportWatermarkStore;
+import io.will.webfluxdemo.export.NdjsonExportFormat;
+import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.priority.PrioritySchedulers;
+import io.will.webfluxdemo.repository.UserRepository;
+import io.will.webfluxdemo.tracing.ExportTraceRecorder;
+import io.will.webfluxdemo.tracing.RequestIdThreadLocalAccessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DataExportServiceTest {
+
+    private static final List<User> USERS = List.of(
+        new User(1L, "Alice Johnson", "alice.johnson@example.com"),
+        new User(2L, "Bob Smith", "bob.smith@example.com"),
+        new User(3L, "Charlie Brown", "charlie.brown@example.com"),
+        new User(4L, "Diana Prince", "diana.prince@example.com"),
+        new User(5L, "Edward Wilson", "edward.wilson@example.com"),
+        new User(6L, "Fiona Davis", "fiona.davis@example.com"),
+        new User(7L, "George Miller", "george.miller@example.com"),
+        new User(8L, "Helen Taylor", "helen.taylor@example.com"),
+        new User(9L, "Ivan Rodriguez", "ivan.rodriguez@example.com"),
+        new User(10L, "Julia Anderson", "julia.anderson@example.com")
+    );
+
+    @TempDir
+    Path exportDirectory;
+
+    private DataExportService dataExportService;
+
+    private ExportWatermarkStore watermarkStore;
+
+    private ExportTraceRecorder traceRecorder;
+
+    private ExportJobTracker exportJobTracker;
+
+    private List<UserRepository.Modification> modifications;
+
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        dataExportService = new DataExportService();
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findAll()).thenAnswer(invocation -> Flux.fromIterable(USERS));
+        when(userRepository.findByIdRange(anyLong(), anyLong())).thenAnswer(invocation -> Flux.fromIterable(USERS)
+            .filter(user -> user.id() > invocation.<Long>getArgument(0) && user.id() <= invocation.<Long>getArgument(1)));
+        when(userRepository.findBounds()).thenReturn(Mono.just(new UserRepository.Bounds(1L, 10L, 10L, 10L)));
+        // Each seed user was last written by the log entry with its id as sequence
+        modifications = new ArrayList<>(USERS.stream()
+            .map(user -> new UserRepository.Modification(user.id(), user))
+            .toList());
+        when(userRepository.findModifiedAfter(anyLong())).thenAnswer(invocation -> Flux.fromIterable(modifications)
+            .filter(modification -> modification.sequence() > invocation.<Long>getArgument(0)));
+        ReflectionTestUtils.setField(dataExportService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(dataExportService, "writerBatchSize", 4);
+        ReflectionTestUtils.setField(dataExportService, "writerDurability", "never");
+        ReflectionTestUtils.setField(dataExportService, "writerGrowthChunk", DataSize.ofKilobytes(64));
+        ReflectionTestUtils.setField(dataExportService, "maxPartitions", 4);
+        ReflectionTestUtils.setField(dataExportService, "exportTimeout", Duration.ofMinutes(2));
+        ReflectionTestUtils.setField(dataExportService, "exportDirectory", exportDirectory.toString());
+        ReflectionTestUtils.setField(dataExportService, "exportFormats", new ExportFormats(List.of(
+            new CsvExportFormat(), new NdjsonExportFormat(), new ColumnarExportFormat(), new FailingLastUserFormat())));
+        watermarkStore = new ExportWatermarkStore();
+        ReflectionTestUtils.setField(watermarkStore, "watermarkFile",
+            exportDirectory.resolve("watermarks.properties").toString());
+        ReflectionTestUtils.setField(dataExportService, "watermarkStore", watermarkStore);
+        ExportArtifactStore artifactStore = new ExportArtifactStore();
+        ReflectionTestUtils.setField(artifactStore, "quota", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(artifactStore, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(artifactStore, "reuseWindow", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(dataExportService, "artifactStore", artifactStore);
+        traceRecorder = new ExportTraceRecorder();
+        ReflectionTestUtils.setField(traceRecorder, "bufferSize", 10);
+        ReflectionTestUtils.setField(dataExportService, "traceRecorder", traceRecorder);
+        AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(concurrencyLimiter, "initialLimit", 4);
+        ReflectionTestUtils.setField(concurrencyLimiter, "minLimit", 1);
+        ReflectionTestUtils.setField(concurrencyLimiter, "maxLimit", 32);
+        ReflectionTestUtils.setField(concurrencyLimiter, "maxQueued", 100);
+        ReflectionTestUtils.setField(concurrencyLimiter, "smoothing", 0.2);
+        ReflectionTestUtils.setField(concurrencyLimiter, "longWindow", 100);
+        ReflectionTestUtils.setField(concurrencyLimiter, "backoffRatio", 0.9);
+        concurrencyLimiter.init();
+        ReflectionTestUtils.setField(dataExportService, "concurrencyLimiter", concurrencyLimiter);
+        PrioritySchedulers prioritySchedulers = new PrioritySchedulers(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(prioritySchedulers, "slots", 10);
+        ReflectionTestUtils.setField(prioritySchedulers, "interactiveReserved", 3);
+        ReflectionTestUtils.setField(prioritySchedulers, "interactiveWeight", 8);
+        ReflectionTestUtils.setField(prioritySchedulers, "batchWeight", 3);
+        ReflectionTestUtils.setField(prioritySchedulers, "backgroundWeight", 1);
+        ReflectionTestUtils.setField(prioritySchedulers, "interactiveThreads", 4);
+        ReflectionTestUtils.setField(prioritySchedulers, "batchThreads", 4);
+        ReflectionTestUtils.setField(prioritySchedulers, "backgroundThreads", 2);
+        ReflectionTestUtils.invokeMethod(prioritySchedulers, "init");
+        ReflectionTestUtils.setField(dataExportService, "prioritySchedulers", prioritySchedulers);
+        exportJobTracker = new ExportJobTracker();
+        ReflectionTestUtils.setField(exportJobTracker, "gracePeriod", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(exportJobTracker, "pendingFile", exportDirectory.resolve("pending.json").toString());
+        ReflectionTestUtils.setField(exportJobTracker, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(dataExportService, "exportJobTracker", exportJobTracker);
+    }
+
+    @Test
+    void exportParallel_ShouldRecordStageSpansForTheRequestInContext() {
+        StepVerifier.create(dataExportService.exportParallel(20L, 2, "csv")
+                .contextWrite(Context.of(RequestIdThreadLocalAccessor.KEY, "trace-20")))
+            .expectNextCount(1)
+            .verifyComplete();
+
+        List<String> stages = traceRecorder.trace("trace-20").orElseThrow().spans().stream()
+            .map(ExportTraceRecorder.Span::stage)
+            .toList();
+        assertEquals("query", stages.get(0));
+        assertTrue(stages.containsAll(List.of("process-1", "process-2")));
+        assertEquals("generate", stages.get(stages.size() - 1));
+    }
+
+    @Test
+    void exportAsyncReactive_PastDeadline_ShouldFailNamingTheStage() {
+        // Processing takes 3s, the caller allows 1s
+        StepVerifier.create(dataExportService.exportAsyncReactive(21L, "csv")
+                .contextWrite(Context.of(RequestIdThreadLocalAccessor.KEY, "trace-21",
+                    Deadline.CONTEXT_KEY, Deadline.after(Duration.ofSeconds(1)))))
+                .expectErrorSatisfies(error -> assertEquals("process", ((DeadlineExceededException) error).getStage()))
+                .verify(Duration.ofSeconds(5));
+
+        List<ExportTraceRecorder.Span> spans = traceRecorder.trace("trace-21").orElseThrow().spans();
+        assertEquals("query", spans.get(0).stage());
+        assertEquals("process", spans.get(1).stage());
+        assertEquals("error", spans.get(1).outcome());
+    }
+
+    @Test
+    void partitionByIdRange_ShouldSplitIntoContiguousOpenEndedRanges() {
+        List<DataExportService.IdRange> ranges = DataExportService.partitionByIdRange(1L, 10L, 2);
+
+        assertEquals(List.of(
+            new DataExportService.IdRange(Long.MIN_VALUE, 5L),
+            new DataExportService.IdRange(5L, Long.MAX_VALUE)), ranges);
+        assertEquals(List.of(new DataExportService.IdRange(Long.MIN_VALUE, Long.MAX_VALUE)),
+            DataExportService.partitionByIdRange(0L, 0L, 1));
+    }
+
+    @Test
+    void partitionByIdRange_ShouldRejectNonPositivePartitions() {
+        assertThrows(IllegalArgumentException.class,
+            () -> DataExportService.partitionByIdRange(1L, 10L, 0));
+    }
+
+    @Test
+    void exportParallel_ShouldWriteAllUsersInIdOrder() {
+        StepVerifier.create(dataExportService.exportParallel(42L, 3, "csv"))
+                .assertNext(result -> {
+                    Path file = exportDirectory.resolve(result.fileName());
+                    List<String> lines = readLines(file);
+                    assertEquals("id,name,email", lines.get(0));
+                    assertEquals(11, lines.size());
+                    for (int i = 1; i < lines.size(); i++) {
+                        assertTrue(lines.get(i).startsWith(i + ","), "Unexpected line order: " + lines);
+                    }
+                    assertEquals(10L, result.totalRecords());
+                    assertEquals(fileSize(file), result.fileSizeBytes());
+                })
+                .verifyComplete();
+
+        // Only the concatenated file remains, segments are cleaned up
+        assertEquals(1, exportDirectory.toFile().list((dir, name) -> name.startsWith("parallel_export_")).length);
+
+        // Each partition reads only its own id range, the table is never loaded as a whole
+        verify(userRepository, never()).findAll();
+        verify(userRepository).findByIdRange(Long.MIN_VALUE, 4L);
+        verify(userRepository).findByIdRange(4L, 8L);
+        verify(userRepository).findByIdRange(8L, Long.MAX_VALUE);
+    }
+
+    @Test
+    void exportParallel_CancelledWhileWritingSegments_ShouldLeaveNoFilesOnceWritesReturn() throws InterruptedException {
+        BlockingFormat format = new BlockingFormat();
+        ReflectionTestUtils.setField(dataExportService, "exportFormats", new ExportFormats(List.of(format)));
+        Disposable export = dataExportService.exportParallel(50L, 3, "blocking").subscribe(result -> { }, error -> { });
+
+        assertTrue(format.entered.await(5, TimeUnit.SECONDS));
+        export.dispose();
+        format.release.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (exportDirectory.toFile().list((dir, name) -> name.startsWith("parallel_export_")).length > 0
+                && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        // Give a write that returned after the discard the chance to bring its segment back
+        Thread.sleep(200);
+        assertEquals(0, exportDirectory.toFile().list((dir, name) -> name.startsWith("parallel_export_")).length);
+    }
+
+    @Test
+    void exportParallel_WithColumnarFormat_ShouldRoundTrip() {
+        StepVerifier.create(dataExportService.exportParallel(43L, 4, "columnar"))
+                .assertNext(result -> {
+                    assertTrue(result.fileName().endsWith(".wfxc"));
+                    List<User> users = ColumnarExportFormat.decode(readBytes(exportDirectory.resolve(result.fileName())));
+                    assertEquals(10, users.size());
+                    assertEquals(new User(1L, "Alice Johnson", "alice.johnson@example.com"), users.get(0));
+                    assertEquals(10L, users.get(9).id());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void exportParallel_WithUnchangedData_ShouldReuseRecentFile() {
+        String fileName = dataExportService.exportParallel(47L, 2, "csv").block().fileName();
+
+        StepVerifier.create(dataExportService.exportParallel(48L, 4, "csv"))
+                .assertNext(result -> {
+                    assertEquals("REUSED", result.status());
+                    assertEquals(48L, result.taskId());
+                    assertEquals(fileName, result.fileName());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void exportParallel_WithUnknownFormat_ShouldFail() {
+        StepVerifier.create(dataExportService.exportParallel(44L, 2, "xml"))
+                .expectError(IllegalArgumentException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void exportParallel_WithMorePartitionsThanAllowed_ShouldFail() {
+        StepVerifier.create(dataExportService.exportParallel(45L, 5, "csv"))
+                .expectErrorMessage("Partition count must be between 1 and 4")
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void exportParallel_WhenAPartitionFails_ShouldDeleteItsSegments() {
+        StepVerifier.create(dataExportService.exportParallel(46L, 3, "failing"))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(0, exportDirectory.toFile().list((dir, name) -> name.startsWith("parallel_export_")).length);
+    }
+
+    @Test
+    void exportAsync_WhenWritingFails_ShouldDeleteThePartialFile() {
+        StepVerifier.create(dataExportService.exportAsync(47L, "failing"))
+                .expectError(RuntimeException.class)
+                .verify(Duration.ofSeconds(10));
+
+        assertEquals(0, exportDirectory.toFile().list((dir, name) -> name.startsWith("user_export_")).length);
+    }
+
+    @Test
+    void exportAsync_CancelledWhileWriting_ShouldDeleteTheFileOnceWritten() throws InterruptedException {
+        BlockingFormat format = new BlockingFormat();
+        ReflectionTestUtils.setField(dataExportService, "exportFormats", new ExportFormats(List.of(format)));
+        CountDownLatch terminated = new CountDownLatch(1);
+        Disposable export = dataExportService.exportAsync(48L, "blocking")
+            .doFinally(signal -> terminated.countDown())
+            .subscribe(result -> { }, error -> { });
+
+        // Unless the simulated failure ends the export before anything is written
+        boolean writing = format.entered.await(10, TimeUnit.SECONDS);
+        export.dispose();
+        format.release.countDown();
+
+        if (writing) {
+            assertTrue(terminated.await(5, TimeUnit.SECONDS));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (exportDirectory.toFile().list((dir, name) -> name.startsWith("user_export_")).length > 0
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+        }
+        assertEquals(0, exportDirectory.toFile().list((dir, name) -> name.startsWith("user_export_")).length);
+    }
+
+    @Test
+    void exportWithProgress_ShouldEncodeAllStreamedBatches() {
+        StepVerifier.create(dataExportService.exportWithProgress(49L, "csv"))
+                .assertNext(result -> {
+                    assertEquals(10L, result.totalRecords());
+                    assertEquals(new CsvExportFormat().header().length
+                        + new CsvExportFormat().encode(USERS).length, result.fileSizeBytes());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void exportIncremental_ShouldOnlyExportUsersAfterWatermark() {
+        watermarkStore.advance("nightly", 7L);
+
+        StepVerifier.create(dataExportService.exportIncremental(45L, "nightly", "ndjson"))
+                .assertNext(result -> {
+                    assertEquals("COMPLETED", result.status());
+                    assertEquals(3L, result.totalRecords());
+                    List<String> lines = readLines(exportDirectory.resolve(result.fileName()));
+                    assertTrue(lines.get(0).startsWith("{\"id\":8,"));
+                })
+                .verifyComplete();
+
+        assertEquals(10L, watermarkStore.get("nightly"));
+
+        StepVerifier.create(dataExportService.exportIncremental(46L, "nightly", "ndjson"))
+                .assertNext(result -> {
+                    assertEquals("NO_CHANGES", result.status());
+                    assertEquals(0L, result.totalRecords());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void exportIncremental_ShouldExportUpdatesAndLowIdInsertsAfterWatermark() {
+        dataExportService.exportIncremental(50L, "audit", "csv").block();
+        assertEquals(10L, watermarkStore.get("audit"));
+
+        // Written after the watermark: an update of an existing user, and a user with a lower id than most
+        modifications.removeIf(modification -> modification.user().id() == 3L);
+        modifications.add(new UserRepository.Modification(11L, new User(3L, "Charlie Brown", "charlie@example.org")));
+        modifications.add(new UserRepository.Modification(12L, new User(0L, "Zero Cool", "zero@example.com")));
+
+        StepVerifier.create(dataExportService.exportIncremental(51L, "audit", "csv"))
+                .assertNext(result -> {
+                    assertEquals(2L, result.totalRecords());
+                    assertEquals(List.of("id,name,email", "3,Charlie Brown,charlie@example.org", "0,Zero Cool,zero@example.com"),
+                        readLines(exportDirectory.resolve(result.fileName())));
+                })
+                .verifyComplete();
+        assertEquals(12L, watermarkStore.get("audit"));
+    }
+
+    @Test
+    void exportIncremental_ShouldExportDeletesAfterWatermarkInSequenceOrder() {
+        // Deletes from before a consumer's first export are not passed on
+        modifications.add(new UserRepository.Modification(11L, new User(9L, null, null), true));
+        dataExportService.exportIncremental(52L, "mirror", "csv").block();
+        assertEquals(11L, watermarkStore.get("mirror"));
+
+        modifications.removeIf(modification -> modification.user().id() == 4L);
+        modifications.add(new UserRepository.Modification(12L, new User(4L, null, null), true));
+        modifications.add(new UserRepository.Modification(13L, new User(5L, "Eve Again", "eve@example.org")));
+
+        StepVerifier.create(dataExportService.exportIncremental(53L, "mirror", "csv"))
+                .assertNext(result -> {
+                    assertEquals(2L, result.totalRecords());
+                    assertEquals(List.of("id,name,email", "4,,", "5,Eve Again,eve@example.org"),
+                        readLines(exportDirectory.resolve(result.fileName())));
+                })
+                .verifyComplete();
+        assertEquals(13L, watermarkStore.get("mirror"));
+    }
+
+    @Test
+    void watermarks_ShouldSurviveReload() {
+        watermarkStore.advance("reporting", 4L);
+        watermarkStore.advance("reporting", 2L);
+
+        ExportWatermarkStore reloaded = new ExportWatermarkStore();
+        ReflectionTestUtils.setField(reloaded, "watermarkFile",
+            exportDirectory.resolve("watermarks.properties").toString());
+        ReflectionTestUtils.invokeMethod(reloaded, "load");
+
+        assertEquals(4L, reloaded.get("reporting"));
+        assertEquals(ExportWatermarkStore.NEVER_EXPORTED, reloaded.get("unknown"));
+        assertThrows(IllegalArgumentException.class, () -> reloaded.get("../etc"));
+    }
+
+    private static byte[] readBytes(Path file) {
+        try {
+            return Files.readAllBytes(file);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<String> readLines(Path file) {
+        try {
+            return Files.readAllLines(file);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static long fileSize(Path file) {
+        try {
+            return Files.size(file);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * CSV that fails, after the other partitions have been written, on the partition holding the last user.
+     */
+    private static final class BlockingFormat extends CsvExportFormat {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String name() {
+            return "blocking";
+        }
+
+        @Override
+        public byte[] encode(List<User> users) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.encode(users);
+        }
+    }
+
+    private static final class FailingLastUserFormat extends CsvExportFormat {
+
+        @Override
+        public String name() {
+            return "failing";
+        }
+
+        @Override
+        public byte[] encode(List<User> users) {
+            if (users.stream().anyMatch(user -> user.id() == 10L)) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("Encoding failed");
+            }
+            return super.encode(users);
+        }
+    }
+}
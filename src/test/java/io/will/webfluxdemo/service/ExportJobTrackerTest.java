@@ -0,0 +1,140 @@
+package io.will.webfluxdemo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.will.webfluxdemo.exception.ServiceUnavailableException;
+import io.will.webfluxdemo.priority.PriorityClass;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ExportJobTrackerTest {
+
+    @TempDir
+    Path directory;
+
+    private ExportJobTracker tracker(Duration gracePeriod) {
+        ExportJobTracker tracker = new ExportJobTracker();
+        ReflectionTestUtils.setField(tracker, "gracePeriod", gracePeriod);
+        ReflectionTestUtils.setField(tracker, "pendingFile", directory.resolve("pending.json").toString());
+        ReflectionTestUtils.setField(tracker, "objectMapper", new ObjectMapper());
+        tracker.load();
+        tracker.start();
+        return tracker;
+    }
+
+    private static ExportJobTracker.PendingExport job(ExportMode mode, long requestId) {
+        return new ExportJobTracker.PendingExport(mode, requestId, "csv", null);
+    }
+
+    @Test
+    void stop_ShouldSaveExportsUnfinishedAfterGracePeriodForNextStartup() throws InterruptedException {
+        ExportJobTracker tracker = tracker(Duration.ofMillis(200));
+        Sinks.Empty<Void> finishesInTime = Sinks.empty();
+        tracker.track(job(ExportMode.PARALLEL, 1), finishesInTime.asMono()).subscribe();
+        tracker.track(job(ExportMode.ASYNC, 2), Mono.never()).subscribe();
+        // Its stream is closed by the shutdown
+        Disposable cancelledByShutdown = tracker.track(job(ExportMode.PARALLEL, 3), Mono.never()).subscribe();
+        // Its client went away before the shutdown
+        tracker.track(job(ExportMode.INCREMENTAL, 4), Mono.never()).subscribe().dispose();
+        assertEquals(3, tracker.inFlight());
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        tracker.stop(stopped::countDown);
+        finishesInTime.tryEmitEmpty();
+        cancelledByShutdown.dispose();
+        StepVerifier.create(tracker.track(job(ExportMode.ASYNC, 5), Mono.just("late")))
+            .expectError(ServiceUnavailableException.class)
+            .verify(Duration.ofSeconds(1));
+
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertTrue(Files.exists(directory.resolve("pending.json")));
+
+        ExportJobTracker restarted = tracker(Duration.ofMillis(200));
+        List<ExportJobTracker.PendingExport> pending = restarted.takePending();
+        assertEquals(List.of(2L, 3L), pending.stream().map(ExportJobTracker.PendingExport::requestId).sorted().toList());
+        assertFalse(Files.exists(directory.resolve("pending.json")));
+        assertTrue(restarted.takePending().isEmpty());
+    }
+
+    @Test
+    void stop_ShouldNotSaveExportsThatDontWriteAFile() throws InterruptedException {
+        ExportJobTracker tracker = tracker(Duration.ofMillis(100));
+        tracker.track(job(ExportMode.BATCH, 1), Mono.never()).subscribe();
+        tracker.track(job(ExportMode.REACTIVE, 2), Mono.never()).subscribe();
+        tracker.track(job(ExportMode.ASYNC, 3), Mono.never()).subscribe();
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        tracker.stop(stopped::countDown);
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+
+        List<ExportJobTracker.PendingExport> pending = tracker(Duration.ofMillis(100)).takePending();
+        assertEquals(List.of(3L), pending.stream().map(ExportJobTracker.PendingExport::requestId).toList());
+    }
+
+    @Test
+    void resumePending_ShouldSkipSavedExportsThatDontWriteAFile() throws Exception {
+        Files.writeString(directory.resolve("pending.json"),
+            "[{\"mode\":\"BATCH\",\"requestId\":60,\"format\":\"csv\",\"consumerId\":null}]");
+        ExportJobTracker tracker = tracker(Duration.ofSeconds(1));
+        DataExportService dataExportService = mock(DataExportService.class);
+        ReflectionTestUtils.setField(tracker, "dataExportService", dataExportService);
+
+        tracker.resumePending();
+
+        verifyNoInteractions(dataExportService);
+        assertFalse(Files.exists(directory.resolve("pending.json")));
+    }
+
+    @Test
+    void resumePending_ShouldRunSavedExportsAsBackgroundWork() throws Exception {
+        Files.writeString(directory.resolve("pending.json"),
+            "[{\"mode\":\"INCREMENTAL\",\"requestId\":50,\"format\":\"csv\",\"consumerId\":\"nightly\"}]");
+        ExportJobTracker tracker = tracker(Duration.ofSeconds(1));
+        DataExportService dataExportService = mock(DataExportService.class);
+        ReflectionTestUtils.setField(tracker, "dataExportService", dataExportService);
+        AtomicReference<PriorityClass> priorityClass = new AtomicReference<>();
+        when(dataExportService.export(ExportMode.INCREMENTAL, 50L, "csv", "nightly"))
+            .thenReturn(Mono.deferContextual(context -> {
+                priorityClass.set(PriorityClass.from(context));
+                return Mono.empty();
+            }));
+
+        tracker.resumePending();
+
+        verify(dataExportService).export(ExportMode.INCREMENTAL, 50L, "csv", "nightly");
+        assertEquals(PriorityClass.BACKGROUND, priorityClass.get());
+        assertFalse(Files.exists(directory.resolve("pending.json")));
+    }
+
+    @Test
+    void stop_WhenExportsFinishWithinGracePeriod_ShouldSaveNothing() throws InterruptedException {
+        ExportJobTracker tracker = tracker(Duration.ofSeconds(10));
+        tracker.track(job(ExportMode.ASYNC, 1), Mono.delay(Duration.ofMillis(100))).subscribe();
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        tracker.stop(stopped::countDown);
+        // Well before the 10s grace period
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertFalse(Files.exists(directory.resolve("pending.json")));
+    }
+}
@@ -0,0 +1,127 @@
+package io.will.webfluxdemo.service;
+
+import io.will.webfluxdemo.model.ExportResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScheduledExportRunnerTest {
+
+    private DataExportService dataExportService;
+
+    private ScheduledExportRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        dataExportService = mock(DataExportService.class);
+        ExportScheduleProperties properties = new ExportScheduleProperties(false, Duration.ZERO, 10, List.of(
+            new ExportScheduleProperties.Job("nightly", "0 0 2 * * *", ExportMode.INCREMENTAL, "csv", null)));
+
+        runner = new ScheduledExportRunner();
+        ReflectionTestUtils.setField(runner, "dataExportService", dataExportService);
+        ReflectionTestUtils.setField(runner, "properties", properties);
+        runner.start();
+    }
+
+    @Test
+    void runNow_WhileRunning_ShouldCoalesceIntoSingleFollowUpRun() {
+        Sinks.One<ExportResult> firstRun = Sinks.one();
+        when(dataExportService.export(eq(ExportMode.INCREMENTAL), any(Long.class), eq("csv"), eq("nightly")))
+            .thenReturn(firstRun.asMono(), Mono.just(result("COMPLETED")));
+
+        assertTrue(runner.runNow("nightly"));
+        assertFalse(runner.runNow("nightly"));
+        assertFalse(runner.runNow("nightly"));
+
+        firstRun.tryEmitValue(result("COMPLETED"));
+
+        verify(dataExportService, times(2)).export(eq(ExportMode.INCREMENTAL), any(Long.class), eq("csv"), eq("nightly"));
+        ScheduledExportRunner.JobStatus status = runner.jobStatuses().get(0);
+        assertFalse(status.running());
+        assertEquals(List.of("COALESCED", "COALESCED", "COMPLETED", "COMPLETED"),
+            status.history().stream().map(ExportRun::status).toList());
+        assertEquals("coalesced", status.history().get(3).trigger());
+    }
+
+    @Test
+    void runNow_RacingTheEndOfARun_ShouldNeverLoseTheFollowUpRun() throws Exception {
+        AtomicInteger exports = new AtomicInteger();
+        AtomicReference<Sinks.One<ExportResult>> firstRun = new AtomicReference<>();
+        // The first run of each round waits to be finished, the second one completes at once
+        when(dataExportService.export(any(), any(Long.class), any(), any())).thenAnswer(invocation -> {
+            if (exports.incrementAndGet() % 2 == 0) {
+                return Mono.just(result("COMPLETED"));
+            }
+            firstRun.set(Sinks.one());
+            return firstRun.get().asMono();
+        });
+
+        ExecutorService finisher = Executors.newSingleThreadExecutor();
+        try {
+            for (int round = 1; round <= 500; round++) {
+                assertTrue(runner.runNow("nightly"));
+                Sinks.One<ExportResult> run = firstRun.get();
+                CyclicBarrier go = new CyclicBarrier(2);
+                Future<?> finished = finisher.submit(() -> {
+                    go.await();
+                    return run.tryEmitValue(result("COMPLETED"));
+                });
+                go.await();
+                // Either starts a run right after the first one or is coalesced into a follow-up
+                runner.runNow("nightly");
+                finished.get(5, TimeUnit.SECONDS);
+
+                assertEquals(2 * round, exports.get());
+                assertFalse(runner.jobStatuses().get(0).running());
+            }
+        } finally {
+            finisher.shutdownNow();
+        }
+    }
+
+    @Test
+    void runNow_WhenExportFails_ShouldRecordFailureAndRelease() {
+        when(dataExportService.export(any(), any(Long.class), any(), any()))
+            .thenReturn(Mono.error(new RuntimeException("disk full")));
+
+        assertTrue(runner.runNow("nightly"));
+        assertTrue(runner.runNow("nightly"));
+
+        ExportRun run = runner.jobStatuses().get(0).history().get(0);
+        assertEquals("FAILED", run.status());
+        assertEquals("disk full", run.error());
+    }
+
+    @Test
+    void runNow_WithUnknownJob_ShouldFail() {
+        assertThrows(IllegalArgumentException.class, () -> runner.runNow("missing"));
+    }
+
+    private static ExportResult result(String status) {
+        return new ExportResult(1L, "file.csv", "/api/downloads/file.csv", 1L, status, Instant.now(), 10L);
+    }
+}
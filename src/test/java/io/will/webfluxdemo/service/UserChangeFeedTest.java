@@ -0,0 +1,104 @@
+package io.will.webfluxdemo.service;
+
+import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.model.UserChangeEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UserChangeFeedTest {
+
+    private UserChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        feed = new UserChangeFeed();
+        ReflectionTestUtils.setField(feed, "replaySize", 3);
+        ReflectionTestUtils.setField(feed, "subscriberBuffer", 2);
+        feed.startAfter(10);
+    }
+
+    @Test
+    void subscribe_ShouldFanOutLiveChangesToEverySubscriber() {
+        StepVerifier first = StepVerifier.create(feed.subscribe(null, UserChangeFeed.Overflow.DROP))
+            .expectNextMatches(event -> event.sequence() == 11 && event.type() == UserChangeEvent.Type.CREATED)
+            .expectNextMatches(event -> event.sequence() == 12 && event.type() == UserChangeEvent.Type.DELETED)
+            .thenCancel()
+            .verifyLater();
+        StepVerifier second = StepVerifier.create(feed.subscribe(null, UserChangeFeed.Overflow.DROP))
+            .expectNextCount(2)
+            .thenCancel()
+            .verifyLater();
+
+        feed.publishCreated(11, new User(4L, "David", "david@example.com"));
+        feed.publishDeleted(12, 4L);
+
+        first.verify(Duration.ofSeconds(2));
+        second.verify(Duration.ofSeconds(2));
+        assertEquals(0, feed.subscriberCount());
+    }
+
+    @Test
+    void subscribe_WithLastEventId_ShouldReplayMissedChangesOrResync() {
+        for (long sequence = 11; sequence <= 15; sequence++) {
+            feed.publishDeleted(sequence, sequence);
+        }
+
+        StepVerifier.create(feed.subscribe(13L, UserChangeFeed.Overflow.DROP).take(2))
+            .expectNextMatches(event -> event.sequence() == 14)
+            .expectNextMatches(event -> event.sequence() == 15)
+            .verifyComplete();
+
+        // 11 and 12 fell out of the ring buffer
+        StepVerifier.create(feed.subscribe(11L, UserChangeFeed.Overflow.DROP).take(4))
+            .expectNextMatches(event -> event.type() == UserChangeEvent.Type.RESYNC && event.sequence() == 12)
+            .expectNextMatches(event -> event.sequence() == 13)
+            .expectNextCount(2)
+            .verifyComplete();
+    }
+
+    @Test
+    void subscribe_WithLastEventIdFromBeforeStartup_ShouldResync() {
+        StepVerifier.create(feed.subscribe(5L, UserChangeFeed.Overflow.DROP).take(1))
+            .expectNextMatches(event -> event.type() == UserChangeEvent.Type.RESYNC && event.sequence() == 10)
+            .verifyComplete();
+    }
+
+    @Test
+    void subscribe_WhenSubscriberIsSlow_ShouldApplyOverflowPolicy() {
+        for (long sequence = 11; sequence <= 13; sequence++) {
+            feed.publishDeleted(sequence, sequence);
+        }
+
+        StepVerifier.create(feed.subscribe(10L, UserChangeFeed.Overflow.LATEST), 0)
+            .thenAwait(Duration.ofMillis(50))
+            .thenRequest(2)
+            .assertNext(event -> assertEquals(12L, event.sequence()))
+            .assertNext(event -> assertEquals(13L, event.sequence()))
+            .thenCancel()
+            .verify(Duration.ofSeconds(2));
+
+        StepVerifier.create(feed.subscribe(10L, UserChangeFeed.Overflow.DROP), 0)
+            .thenAwait(Duration.ofMillis(50))
+            .thenRequest(2)
+            .assertNext(event -> assertEquals(11L, event.sequence()))
+            .assertNext(event -> assertEquals(12L, event.sequence()))
+            .thenCancel()
+            .verify(Duration.ofSeconds(2));
+        assertEquals(2, feed.droppedEvents());
+    }
+
+    @Test
+    void overflowFromString_ShouldRejectUnknownPolicy() {
+        assertEquals(List.of(UserChangeFeed.Overflow.DROP, UserChangeFeed.Overflow.LATEST),
+            List.of(UserChangeFeed.Overflow.fromString("drop"), UserChangeFeed.Overflow.fromString(" Latest ")));
+        assertThrows(IllegalArgumentException.class, () -> UserChangeFeed.Overflow.fromString("block"));
+    }
+}
@@ -0,0 +1,219 @@
+package io.will.webfluxdemo.service;
+
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import io.will.webfluxdemo.exception.ServiceUnavailableException;
+import io.will.webfluxdemo.model.User;
+import io.will.webfluxdemo.repository.UserRepository;
+import io.will.webfluxdemo.repository.UserRepository.Modification;
+import io.will.webfluxdemo.repository.UserWriteAheadLog;
+import io.will.webfluxdemo.search.UserSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserWriteBehindServiceTest {
+
+    private static final Path WAL_DIRECTORY = Paths.get("target/test-data/write-behind/users-wal");
+
+    private UserRepository userRepository;
+
+    private UserWriteAheadLog writeAheadLog;
+
+    private UserWriteBehindService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileSystemUtils.deleteRecursively(WAL_DIRECTORY);
+        userRepository = mock(UserRepository.class);
+        when(userRepository.saveAll(anyList())).thenAnswer(invocation -> Mono.just((long) invocation.<List<?>>getArgument(0).size()));
+        when(userRepository.deleteById(any(), anyLong())).thenReturn(Mono.just(true));
+        when(userRepository.checkpoint()).thenReturn(Mono.empty());
+        when(userRepository.findAll()).thenReturn(Flux.empty());
+        writeAheadLog = openLog();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (service != null) {
+            ReflectionTestUtils.invokeMethod(service, "stop");
+        }
+        ReflectionTestUtils.invokeMethod(writeAheadLog, "close");
+    }
+
+    @Test
+    void create_ShouldAcknowledgeBeforeFlushAndWriteOneBatch() {
+        startService(10, 100, Duration.ofMillis(300));
+
+        List<User> users = Flux.range(1, 5)
+            .flatMap(i -> service.create(new User((long) i, "User " + i, "user" + i + "@example.com")))
+            .collectList()
+            .block(Duration.ofSeconds(5));
+
+        assertEquals(5, users.size());
+        assertEquals("User 3", service.findById(3L).block().name());
+        verify(userRepository, never()).findById(3L);
+
+        verify(userRepository, timeout(2000)).saveAll(anyList());
+        awaitFlushed();
+    }
+
+    @Test
+    void create_WhenBufferIsFull_ShouldRejectWithServiceUnavailable() {
+        when(userRepository.saveAll(anyList())).thenReturn(Mono.never());
+        startService(2, 1, Duration.ofMillis(10));
+
+        service.create(new User(1L, "Alice", "alice@example.com")).block(Duration.ofSeconds(5));
+        service.create(new User(2L, "Bob", "bob@example.com")).block(Duration.ofSeconds(5));
+
+        assertThrows(ServiceUnavailableException.class,
+            () -> service.create(new User(3L, "Charlie", "charlie@example.com")).block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void create_WithoutNameOrEmail_ShouldRejectBeforeLogging() {
+        startService(10, 100, Duration.ofMillis(10));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> service.create(new User(9L, null, "nobody@example.com")).block(Duration.ofSeconds(5)));
+        assertThrows(IllegalArgumentException.class,
+            () -> service.create(new User(9L, "Nobody", " ")).block(Duration.ofSeconds(5)));
+        assertEquals(0, service.queuedMutations());
+        assertEquals(0, writeAheadLog.lastSequence());
+    }
+
+    @Test
+    void flush_WhenDatabaseRefusesAUser_ShouldDeadLetterItAndFlushTheRest() {
+        when(userRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Modification> run = invocation.getArgument(0);
+            return run.stream().anyMatch(modification -> modification.user().id() == 2L)
+                ? Mono.error(new R2dbcDataIntegrityViolationException("Unique index or primary key violation"))
+                : Mono.just((long) run.size());
+        });
+        when(userRepository.findById(2L)).thenReturn(Mono.empty());
+        startService(10, 100, Duration.ofMillis(100));
+
+        User alice = new User(1L, "Alice", "alice@example.com");
+        User bob = new User(2L, "Bob", "bob@example.com");
+        User charlie = new User(3L, "Charlie", "charlie@example.com");
+        Flux.just(alice, bob, charlie).concatMap(service::create).blockLast(Duration.ofSeconds(5));
+        awaitFlushed();
+
+        verify(userRepository).saveAll(List.of(new Modification(1L, alice)));
+        verify(userRepository).saveAll(List.of(new Modification(3L, charlie)));
+        assertNull(service.findById(2L).block(Duration.ofSeconds(5)));
+        // Later mutations are not stuck behind the refused one
+        assertTrue(service.delete(3L).block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void start_WhenLogHoldsARecordTheDatabaseRefuses_ShouldSkipItAndStart() throws Exception {
+        when(userRepository.saveAll(anyList())).thenAnswer(invocation ->
+            invocation.<List<Modification>>getArgument(0).stream().anyMatch(modification -> modification.user().name() == null)
+                ? Mono.error(new IllegalArgumentException("Value for parameter 1 must not be null"))
+                : Mono.just((long) invocation.<List<Modification>>getArgument(0).size()));
+        when(userRepository.findById(9L)).thenReturn(Mono.empty());
+        User grace = new User(7L, "Grace", "grace@example.com");
+        // Logged before creates were validated
+        writeAheadLog.appendCreate(new User(9L, null, null)).block(Duration.ofSeconds(5));
+        writeAheadLog.appendCreate(grace).block(Duration.ofSeconds(5));
+        ReflectionTestUtils.invokeMethod(writeAheadLog, "close");
+        writeAheadLog = openLog();
+
+        startService(10, 100, Duration.ofMillis(50));
+
+        verify(userRepository).saveAll(List.of(new Modification(2L, grace)));
+        verify(userRepository).checkpoint();
+    }
+
+    @Test
+    void start_ShouldReplayMutationsLeftInTheLogInOrder() throws Exception {
+        User grace = new User(7L, "Grace", "grace@example.com");
+        User heidi = new User(8L, "Heidi", "heidi@example.com");
+        writeAheadLog.appendCreate(grace).block(Duration.ofSeconds(5));
+        writeAheadLog.appendDelete(2L).block(Duration.ofSeconds(5));
+        writeAheadLog.appendCreate(heidi).block(Duration.ofSeconds(5));
+        ReflectionTestUtils.invokeMethod(writeAheadLog, "close");
+        writeAheadLog = openLog();
+
+        startService(10, 100, Duration.ofMillis(50));
+
+        InOrder inOrder = inOrder(userRepository);
+        inOrder.verify(userRepository).saveAll(List.of(new Modification(1L, grace)));
+        inOrder.verify(userRepository).deleteById(2L, 2L);
+        inOrder.verify(userRepository).saveAll(List.of(new Modification(3L, heidi)));
+        inOrder.verify(userRepository).checkpoint();
+
+        ReflectionTestUtils.invokeMethod(writeAheadLog, "close");
+        writeAheadLog = openLog();
+        assertTrue(writeAheadLog.replay().isEmpty());
+    }
+
+    @Test
+    void snapshot_ShouldCheckpointOnlyAfterNewFlushes() {
+        startService(10, 100, Duration.ofMillis(10));
+
+        service.create(new User(1L, "Alice", "alice@example.com")).block(Duration.ofSeconds(5));
+        assertTrue(service.delete(1L).block(Duration.ofSeconds(5)));
+        awaitFlushed();
+
+        service.snapshot().block(Duration.ofSeconds(5));
+        service.snapshot().block(Duration.ofSeconds(5));
+
+        verify(userRepository, times(1)).checkpoint();
+    }
+
+    private void awaitFlushed() {
+        Mono.fromCallable(service::queuedMutations)
+            .filter(queued -> queued == 0)
+            .repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(20)))
+            .block(Duration.ofSeconds(2));
+    }
+
+    private UserWriteAheadLog openLog() throws Exception {
+        UserWriteAheadLog log = new UserWriteAheadLog();
+        ReflectionTestUtils.setField(log, "walDirectory", WAL_DIRECTORY.toString());
+        ReflectionTestUtils.setField(log, "segmentSize", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.invokeMethod(log, "open");
+        return log;
+    }
+
+    private void startService(int capacity, int batchSize, Duration flushWindow) {
+        service = new UserWriteBehindService();
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+        ReflectionTestUtils.setField(service, "writeAheadLog", writeAheadLog);
+        ReflectionTestUtils.setField(service, "userSearchIndex", new UserSearchIndex());
+        ReflectionTestUtils.setField(service, "userChangeFeed", new UserChangeFeed());
+        ReflectionTestUtils.setField(service, "capacity", capacity);
+        ReflectionTestUtils.setField(service, "batchSize", batchSize);
+        ReflectionTestUtils.setField(service, "flushWindow", flushWindow);
+        ReflectionTestUtils.setField(service, "snapshotInterval", Duration.ofHours(1));
+        ReflectionTestUtils.setField(service, "shutdownTimeout", Duration.ofMillis(200));
+        ReflectionTestUtils.invokeMethod(service, "start");
+    }
+}
@@ -0,0 +1,164 @@
+package io.will.webfluxdemo.sse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.will.webfluxdemo.exception.DeadlineExceededException;
+import io.will.webfluxdemo.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SseConnectionManagerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SseConnectionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        manager = new SseConnectionManager(meterRegistry);
+        ReflectionTestUtils.setField(manager, "heartbeatInterval", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(manager, "idleTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(manager, "maxLifetime", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(manager, "maxConnections", 1);
+        ReflectionTestUtils.setField(manager, "drainTimeout", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(manager, "maxBudget", Duration.ofSeconds(5));
+        manager.start();
+    }
+
+    @Test
+    void result_WhileWaiting_ShouldSendHeartbeatsThenTheResult() {
+        StepVerifier.create(manager.result("export", Mono.just("done").delayElement(Duration.ofMillis(350))))
+            .expectNextMatches(event -> "heartbeat".equals(event.comment()))
+            .expectNextMatches(event -> "heartbeat".equals(event.comment()))
+            .expectNextMatches(event -> "heartbeat".equals(event.comment()))
+            .expectNextMatches(event -> "done".equals(event.data()))
+            .verifyComplete();
+        assertEquals(0, manager.activeConnections());
+        assertEquals(1.0, meterRegistry.counter("sse.connections.closed", "stream", "export", "reason", "complete").count());
+    }
+
+    @Test
+    void result_FailingBeforeFirstHeartbeat_ShouldFailTheRequest() {
+        StepVerifier.create(manager.result("export",
+                Mono.error(new DeadlineExceededException("process", Duration.ofMillis(50)))))
+            .expectError(DeadlineExceededException.class)
+            .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void result_DeadlineAfterHeartbeat_ShouldSendErrorEventWithStage() {
+        Mono<String> export = Mono.delay(Duration.ofMillis(250))
+            .then(Mono.error(new DeadlineExceededException("process", Duration.ofMillis(250))));
+
+        StepVerifier.create(manager.result("export", export))
+            .expectNextMatches(event -> "heartbeat".equals(event.comment()))
+            .expectNextMatches(event -> "heartbeat".equals(event.comment()))
+            .assertNext(event -> {
+                assertEquals("error", event.event());
+                Map<?, ?> body = (Map<?, ?>) event.data();
+                assertEquals(504, body.get("status"));
+                assertEquals("process", body.get("stage"));
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void result_WaitingLongerThanIdleTimeout_ShouldStillSendTheResult() {
+        ReflectionTestUtils.setField(manager, "idleTimeout", Duration.ofMillis(150));
+
+        StepVerifier.create(manager.result("export", Mono.just("done").delayElement(Duration.ofMillis(400)))
+                .filter(event -> event.data() != null))
+            .expectNextMatches(event -> "done".equals(event.data()))
+            .verifyComplete();
+    }
+
+    @Test
+    void result_CutOffByMaxLifetime_ShouldSendErrorEvent() {
+        ReflectionTestUtils.setField(manager, "maxLifetime", Duration.ofMillis(250));
+
+        StepVerifier.create(manager.result("export", Mono.never()).filter(event -> event.data() != null))
+            .assertNext(event -> {
+                assertEquals("error", event.event());
+                Map<?, ?> body = (Map<?, ?>) event.data();
+                assertEquals(504, body.get("status"));
+                assertEquals("stream", body.get("stage"));
+            })
+            .expectComplete()
+            .verify(Duration.ofSeconds(2));
+        assertEquals(1.0, meterRegistry.counter("sse.connections.closed", "stream", "export", "reason", "lifetime").count());
+    }
+
+    @Test
+    void start_WithMaxBudgetAboveMaxLifetime_ShouldFail() {
+        SseConnectionManager misconfigured = new SseConnectionManager(meterRegistry);
+        ReflectionTestUtils.setField(misconfigured, "maxLifetime", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(misconfigured, "maxBudget", Duration.ofMinutes(10));
+
+        assertThrows(IllegalStateException.class, misconfigured::start);
+    }
+
+    @Test
+    void events_WithoutDataForIdleTimeout_ShouldClose() {
+        ReflectionTestUtils.setField(manager, "idleTimeout", Duration.ofMillis(150));
+
+        StepVerifier.create(manager.events("changes", Flux.<ServerSentEvent<String>>never(), true)
+                .filter(event -> event.data() != null))
+            .expectComplete()
+            .verify(Duration.ofSeconds(2));
+        assertEquals(1.0, meterRegistry.counter("sse.connections.closed", "stream", "changes", "reason", "idle").count());
+    }
+
+    @Test
+    void events_AboveConnectionLimit_ShouldBeRejected() {
+        Disposable first = manager.result("export", Mono.never()).subscribe();
+
+        StepVerifier.create(manager.result("export", Mono.just("second")))
+            .expectError(ServiceUnavailableException.class)
+            .verify(Duration.ofSeconds(1));
+        assertEquals(1.0, meterRegistry.counter("sse.connections.rejected", "stream", "export", "reason", "limit").count());
+        assertEquals(1.0, meterRegistry.get("sse.connections.active").gauge().value());
+
+        first.dispose();
+        assertEquals(0, manager.activeConnections());
+        assertEquals(1.0, meterRegistry.counter("sse.connections.closed", "stream", "export", "reason", "cancel").count());
+    }
+
+    @Test
+    void stop_ShouldCloseResumableStreamsAtOnceAndOthersAfterDrainTimeout() throws Exception {
+        ReflectionTestUtils.setField(manager, "maxConnections", 10);
+        StepVerifier changes = StepVerifier.create(manager.events("changes", Flux.<ServerSentEvent<String>>never(), true)
+                .filter(event -> event.data() != null))
+            .expectComplete()
+            .verifyLater();
+        StepVerifier export = StepVerifier.create(manager.result("export", Mono.<String>never())
+                .filter(event -> event.data() != null))
+            .expectComplete()
+            .verifyLater();
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        manager.stop(stopped::countDown);
+
+        changes.verify(Duration.ofMillis(150));
+        StepVerifier.create(manager.result("export", Mono.just("late")))
+            .expectError(ServiceUnavailableException.class)
+            .verify(Duration.ofSeconds(1));
+        export.verify(Duration.ofSeconds(2));
+        assertTrue(stopped.await(2, TimeUnit.SECONDS));
+        assertEquals(1.0, meterRegistry.counter("sse.connections.closed", "stream", "export", "reason", "drain").count());
+    }
+}
@@ -0,0 +1,79 @@
+package io.will.webfluxdemo.tracing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportTraceRecorderTest {
+
+    private ExportTraceRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        recorder = new ExportTraceRecorder();
+        ReflectionTestUtils.setField(recorder, "bufferSize", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Hooks.disableAutomaticContextPropagation();
+    }
+
+    @Test
+    void span_ShouldRecordStagesUnderTheRequestIdInContext() {
+        Mono.just("rows")
+            .delayElement(Duration.ofMillis(50))
+            .transform(recorder.span("query"))
+            .flatMap(rows -> Mono.<String>error(new IllegalStateException("disk full"))
+                .transform(recorder.span("generate")))
+            .onErrorResume(e -> Mono.empty())
+            .contextWrite(Context.of(RequestIdThreadLocalAccessor.KEY, "req-1"))
+            .block();
+        Mono.just("untraced").transform(recorder.span("query")).block();
+
+        ExportTraceRecorder.Trace trace = recorder.trace("req-1").orElseThrow();
+        assertEquals(List.of("query", "generate"), trace.spans().stream().map(ExportTraceRecorder.Span::stage).toList());
+        assertTrue(trace.spans().get(0).durationMillis() >= 50);
+        assertEquals("complete", trace.spans().get(0).outcome());
+        assertEquals("error", trace.spans().get(1).outcome());
+        assertEquals(1, recorder.traces(10).size());
+    }
+
+    @Test
+    void traces_ShouldKeepOnlyTheMostRecentRequests() {
+        for (String requestId : List.of("a", "b", "c")) {
+            Mono.just(requestId)
+                .transform(recorder.span("query"))
+                .contextWrite(Context.of(RequestIdThreadLocalAccessor.KEY, requestId))
+                .block();
+        }
+
+        assertEquals(List.of("c", "b"), recorder.traces(10).stream().map(ExportTraceRecorder.Trace::requestId).toList());
+        assertTrue(recorder.trace("a").isEmpty());
+    }
+
+    @Test
+    void requestId_ShouldReachTheMdcAfterSchedulerHops() {
+        Hooks.enableAutomaticContextPropagation();
+
+        String seen = Mono.just("x")
+            .publishOn(Schedulers.boundedElastic())
+            .map(value -> MDC.get(RequestIdThreadLocalAccessor.KEY) + "@" + Thread.currentThread().getName())
+            .contextWrite(Context.of(RequestIdThreadLocalAccessor.KEY, "req-2"))
+            .block();
+
+        assertTrue(seen.startsWith("req-2@boundedElastic"), seen);
+    }
+}
@@ -0,0 +1,274 @@
+package io.will.webfluxdemo.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.will.webfluxdemo.model.ExportResult;
+import io.will.webfluxdemo.service.DataExportService;
+import io.will.webfluxdemo.service.ExportMode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExportWebSocketHandlerTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    private final Sinks.Many<String> inbound = Sinks.many().unicast().onBackpressureBuffer();
+
+    private final BlockingQueue<ExportJobMessage> outbound = new LinkedBlockingQueue<>();
+
+    private DataExportService dataExportService;
+
+    private ExportWebSocketHandler handler;
+
+    private Disposable connection;
+
+    @BeforeEach
+    void setUp() {
+        dataExportService = mock(DataExportService.class);
+        handler = new ExportWebSocketHandler();
+        ReflectionTestUtils.setField(handler, "dataExportService", dataExportService);
+        ReflectionTestUtils.setField(handler, "maxConcurrentJobs", 1);
+        ReflectionTestUtils.setField(handler, "maxQueuedJobs", 1);
+        ReflectionTestUtils.setField(handler, "maxPendingReplies", 16);
+    }
+
+    @Test
+    void submit_ShouldReportEachJobWithItsResult() throws Exception {
+        when(dataExportService.export(eq(ExportMode.PARALLEL), anyLong(), eq("csv"), isNull()))
+            .thenAnswer(invocation -> Mono.just(result(invocation.getArgument(1))));
+        connect();
+
+        send("{\"type\":\"submit\",\"jobId\":\"a\",\"mode\":\"parallel\",\"format\":\"csv\"}");
+        send("{\"type\":\"submit\",\"jobId\":\"b\",\"mode\":\"parallel\",\"format\":\"csv\"}");
+
+        assertNext("QUEUED", "a");
+        assertNext("STARTED", "a");
+        ExportJobMessage first = assertNext("COMPLETED", "a");
+        assertNext("QUEUED", "b");
+        assertNext("STARTED", "b");
+        ExportJobMessage second = assertNext("COMPLETED", "b");
+        assertEquals(first.result().taskId() + 1, second.result().taskId());
+        connection.dispose();
+    }
+
+    @Test
+    void submit_BeyondConcurrencyLimit_ShouldQueueThenRejectThenStartAfterCancel() throws Exception {
+        AtomicBoolean firstCancelled = new AtomicBoolean();
+        when(dataExportService.export(any(), anyLong(), anyString(), any()))
+            .thenReturn(Mono.<ExportResult>never().doOnCancel(() -> firstCancelled.set(true)))
+            .thenAnswer(invocation -> Mono.just(result(invocation.getArgument(1))));
+        connect();
+
+        send("{\"type\":\"submit\",\"jobId\":\"a\",\"mode\":\"batch\",\"format\":\"csv\"}");
+        assertNext("QUEUED", "a");
+        assertNext("STARTED", "a");
+        send("{\"type\":\"submit\",\"jobId\":\"b\",\"mode\":\"batch\",\"format\":\"csv\"}");
+        assertNext("QUEUED", "b");
+        send("{\"type\":\"submit\",\"jobId\":\"c\",\"mode\":\"batch\",\"format\":\"csv\"}");
+        assertNext("REJECTED", "c");
+        assertNull(outbound.poll(200, TimeUnit.MILLISECONDS));
+
+        send("{\"type\":\"cancel\",\"jobId\":\"a\"}");
+        assertNext("CANCELLED", "a");
+        assertTrue(firstCancelled.get());
+        assertNext("STARTED", "b");
+        assertNext("COMPLETED", "b");
+        connection.dispose();
+    }
+
+    @Test
+    void submit_WithInvalidFrames_ShouldAnswerWithoutClosing() throws Exception {
+        connect();
+
+        send("not json");
+        assertEquals("ERROR", next().type());
+        send("{\"type\":\"submit\",\"jobId\":\"a\",\"mode\":\"bogus\",\"format\":\"csv\"}");
+        ExportJobMessage rejected = assertNext("REJECTED", "a");
+        assertEquals("Unsupported export mode: bogus", rejected.error());
+        send("{\"type\":\"cancel\",\"jobId\":\"missing\"}");
+        assertNext("ERROR", "missing");
+        connection.dispose();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reply_WhenClientStopsReading_ShouldCloseWithPolicyViolation() {
+        ReflectionTestUtils.setField(handler, "maxPendingReplies", 2);
+        WebSocketSession session = session();
+        // The client never reads, so nothing is requested from the reply buffer
+        when(session.send(any())).thenAnswer(invocation -> {
+            ((Publisher<WebSocketMessage>) invocation.getArgument(0)).subscribe(new BaseSubscriber<>() {
+                @Override
+                protected void hookOnSubscribe(Subscription subscription) {
+                }
+            });
+            return Mono.never();
+        });
+        connection = handler.handle(session).subscribe();
+
+        send("not json");
+        send("not json");
+        verify(session, never()).close(any());
+        send("not json");
+
+        verify(session).close(argThat(status -> status.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
+        connection.dispose();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reply_WhenAJobsMessagesGoUnread_ShouldFailOnlyThatJob() throws Exception {
+        ReflectionTestUtils.setField(handler, "maxPendingReplies", 2);
+        AtomicBoolean firstCancelled = new AtomicBoolean();
+        when(dataExportService.export(any(), anyLong(), anyString(), any()))
+            .thenReturn(Mono.<ExportResult>never().doOnCancel(() -> firstCancelled.set(true)))
+            .thenAnswer(invocation -> Mono.just(result(invocation.getArgument(1))));
+        WebSocketSession session = session();
+        // The client doesn't read until told to
+        BaseSubscriber<WebSocketMessage> client = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+            }
+
+            @Override
+            protected void hookOnNext(WebSocketMessage message) {
+                outbound.add(read(message.getPayloadAsText()));
+            }
+        };
+        when(session.send(any())).thenAnswer(invocation -> {
+            ((Publisher<WebSocketMessage>) invocation.getArgument(0)).subscribe(client);
+            return Mono.never();
+        });
+        connection = handler.handle(session).subscribe();
+
+        send("{\"type\":\"submit\",\"jobId\":\"a\",\"mode\":\"batch\",\"format\":\"csv\"}");
+        send("{\"type\":\"submit\",\"jobId\":\"b\",\"mode\":\"batch\",\"format\":\"csv\"}");
+        // Replies about job a pile up in its buffer until it overflows
+        for (int i = 0; i < 5; i++) {
+            send("{\"type\":\"submit\",\"jobId\":\"a\",\"mode\":\"batch\",\"format\":\"csv\"}");
+        }
+
+        assertTrue(firstCancelled.get());
+        verify(session, never()).close(any());
+        // Job b took the freed slot and ran
+        verify(dataExportService, times(2)).export(any(), anyLong(), anyString(), any());
+
+        client.request(Long.MAX_VALUE);
+        List<ExportJobMessage> messages = new ArrayList<>();
+        outbound.drainTo(messages);
+        ExportJobMessage failed = messages.stream().filter(message -> "a".equals(message.jobId())).reduce((first, last) -> last).orElseThrow();
+        assertEquals("FAILED", failed.type());
+        assertEquals("Too many unread messages for this job", failed.error());
+        assertEquals(List.of("QUEUED", "STARTED", "COMPLETED"), messages.stream()
+            .filter(message -> "b".equals(message.jobId())).map(ExportJobMessage::type).toList());
+        connection.dispose();
+    }
+
+    @Test
+    void close_ShouldCancelRunningJobs() throws Exception {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        when(dataExportService.export(any(), anyLong(), anyString(), any()))
+            .thenReturn(Mono.<ExportResult>never().doOnCancel(() -> cancelled.set(true)));
+        connect();
+
+        send("{\"type\":\"submit\",\"jobId\":\"a\",\"mode\":\"async\",\"format\":\"csv\"}");
+        assertNext("QUEUED", "a");
+        assertNext("STARTED", "a");
+        inbound.tryEmitComplete();
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!cancelled.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(cancelled.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void connect() {
+        WebSocketSession session = session();
+        when(session.send(any())).thenAnswer(invocation -> Flux.from((Publisher<WebSocketMessage>) invocation.getArgument(0))
+            .doOnNext(message -> outbound.add(read(message.getPayloadAsText())))
+            .then());
+        connection = handler.handle(session).subscribe();
+    }
+
+    private WebSocketSession session() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("test");
+        when(session.receive()).thenReturn(inbound.asFlux()
+            .map(text -> new WebSocketMessage(WebSocketMessage.Type.TEXT,
+                bufferFactory.wrap(text.getBytes(StandardCharsets.UTF_8)))));
+        when(session.textMessage(anyString())).thenAnswer(invocation -> new WebSocketMessage(WebSocketMessage.Type.TEXT,
+            bufferFactory.wrap(((String) invocation.getArgument(0)).getBytes(StandardCharsets.UTF_8))));
+        when(session.close(any())).thenReturn(Mono.empty());
+        return session;
+    }
+
+    private void send(String frame) {
+        inbound.tryEmitNext(frame);
+    }
+
+    private ExportJobMessage next() throws InterruptedException {
+        ExportJobMessage message = outbound.poll(2, TimeUnit.SECONDS);
+        assertTrue(message != null, "Expected another frame");
+        return message;
+    }
+
+    private ExportJobMessage assertNext(String type, String jobId) throws InterruptedException {
+        ExportJobMessage message = next();
+        assertEquals(type, message.type(), () -> "Unexpected frame " + message);
+        assertEquals(jobId, message.jobId());
+        return message;
+    }
+
+    private ExportJobMessage read(String json) {
+        try {
+            return objectMapper.readValue(json, ExportJobMessage.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ExportResult result(long taskId) {
+        return new ExportResult(taskId, "users_" + taskId + ".csv", "/downloads/users_" + taskId + ".csv",
+            3L, "COMPLETED", Instant.now(), 100L);
+    }
+}